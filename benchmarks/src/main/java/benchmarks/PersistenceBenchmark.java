@@ -0,0 +1,76 @@
+package benchmarks;
+
+import database.DatabaseHandler;
+import database.StorageEngine;
+import database.Utils;
+import models.MenuItem;
+import models.Order;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load and save round-trips of the orders journal at different history sizes.
+ * The data directory is a scratch directory set through cafe.data.dir.
+ *
+ * The history is written straight to disk; only saveOrders keeps it in memory,
+ * as the list it rewrites. The largest size needs the heap set below.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Dcafe.data.dir=target/bench-data"})
+public class PersistenceBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int orderCount;
+
+    private List<Order> orders;
+    private Order template;
+    private int nextOrder;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) throws IOException {
+        Utils.ensureDirectoriesExist();
+        SyntheticData data = new SyntheticData(42);
+        List<MenuItem> menu = data.menu(200);
+        DatabaseHandler.saveOrders(new ArrayList<>());
+        StorageEngine.checkpoint();
+        data.writeJournal(orderCount, menu);
+        if (params.getBenchmark().endsWith(".saveOrders")) {
+            orders = DatabaseHandler.loadOrders();
+        }
+        template = data.order(orderCount, menu);
+        nextOrder = orderCount;
+    }
+
+    @Benchmark
+    public List<Order> loadOrders() {
+        return DatabaseHandler.loadOrders();
+    }
+
+    @Benchmark
+    public void saveOrders() throws IOException {
+        DatabaseHandler.saveOrders(orders);
+        StorageEngine.checkpoint();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void appendOrder() {
+        // A new order each time, so the journal only grows by real appends
+        DatabaseHandler.appendOrder(new Order(String.format("ORD-20250101-%08d", nextOrder++),
+                template.getCustomerName(), template.getTableNumber(), template.getStaffName(),
+                template.getStatus(), template.getOrderItems()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        StorageEngine.checkpoint();
+    }
+}
@@ -0,0 +1,34 @@
+package benchmarks;
+
+import database.ReceiptGenerator;
+import models.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receipt rendering for a rotating set of orders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dcafe.data.dir=target/bench-data")
+public class ReceiptBenchmark {
+    private List<Order> orders;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticData data = new SyntheticData(42);
+        orders = data.orders(1024, data.menu(200));
+    }
+
+    @Benchmark
+    public String generateReceipt() {
+        Order order = orders.get(next++ & 1023);
+        return ReceiptGenerator.generateReceipt(order, 10.0);
+    }
+}
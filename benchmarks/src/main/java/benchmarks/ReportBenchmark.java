@@ -0,0 +1,76 @@
+package benchmarks;
+
+import database.OrderLineTable;
+import database.ReportGenerator;
+import models.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report aggregations over an in-memory order history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Dcafe.data.dir=target/bench-data"})
+public class ReportBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int orderCount;
+
+    private List<Order> orders;
+    private OrderLineTable table;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticData data = new SyntheticData(42);
+        orders = data.orders(orderCount, data.menu(200));
+        table = OrderLineTable.of(orders);
+    }
+
+    @Benchmark
+    public double totalRevenue() {
+        return ReportGenerator.calculateTotalRevenue(orders);
+    }
+
+    @Benchmark
+    public String topSellingItem() {
+        return ReportGenerator.getTopSellingItem(orders);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Integer>> itemSalesRanking() {
+        return ReportGenerator.getAllItemSalesRanking(orders);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Long>> topTenItems() {
+        return ReportGenerator.getTopSellingItems(orders, 10);
+    }
+
+    @Benchmark
+    public String completedTopSellingItem() {
+        return ReportGenerator.findTopSellingItem(orders);
+    }
+
+    // The same queries straight over the columnar table
+
+    @Benchmark
+    public long tableTotalRevenueCents() {
+        return table.revenueCents();
+    }
+
+    @Benchmark
+    public long[] tableItemQuantities() {
+        return table.itemQuantities(false);
+    }
+
+    @Benchmark
+    public long[] tableCompletedItemQuantities() {
+        return table.itemQuantities(true);
+    }
+}
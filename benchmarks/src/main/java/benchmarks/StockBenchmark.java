@@ -0,0 +1,59 @@
+package benchmarks;
+
+import database.DatabaseHandler;
+import database.MenuCatalog;
+import database.StockLedger;
+import database.Utils;
+import models.MenuItem;
+import models.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock reservation and persisted stock updates, single and multi-threaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dcafe.data.dir=target/bench-data")
+public class StockBenchmark {
+    private List<Order> orders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Utils.ensureDirectoriesExist();
+        SyntheticData data = new SyntheticData(42);
+        List<MenuItem> menu = data.menu(200);
+        DatabaseHandler.saveMenuItems(menu);
+        MenuCatalog.reload();
+        orders = data.orders(1024, menu);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    // Reserve and release: the in-memory CAS path only
+    @Benchmark
+    @Threads(4)
+    public boolean reserveAndRelease(Cursor cursor) {
+        StockLedger.Reservation reservation =
+                StockLedger.reserve(orders.get(cursor.next++ & 1023).getOrderItems());
+        if (reservation == null) {
+            return false;
+        }
+        reservation.release();
+        return true;
+    }
+
+    // Reserve and commit: includes appending the delta line to stock.txt
+    @Benchmark
+    public boolean updateStockForOrder(Cursor cursor) {
+        return DatabaseHandler.updateStockForOrder(orders.get(cursor.next++ & 1023));
+    }
+}
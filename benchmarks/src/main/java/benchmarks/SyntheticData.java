@@ -0,0 +1,81 @@
+package benchmarks;
+
+import database.OrderJournal;
+import database.OrderStore;
+import models.MenuItem;
+import models.Order;
+import models.OrderItem;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic menu and order data for the benchmarks.
+ * The same seed always produces the same history.
+ */
+public class SyntheticData {
+    private static final String[] CATEGORIES = {"Coffee", "Tea", "Bakery", "Sandwich", "Dessert"};
+    private static final String[] STAFF = {"Rocky", "Maya", "Omar", "Lina", "Tariq"};
+    private static final String[] CUSTOMERS = {"Abir", "Faraz", "Fardin", "Nadia", "Sami", "Rhea"};
+
+    private final Random random;
+
+    public SyntheticData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    // A menu with ids 100, 101, ... and plenty of stock
+    public List<MenuItem> menu(int size) {
+        List<MenuItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String category = CATEGORIES[i % CATEGORIES.length];
+            double price = (50 + random.nextInt(950)) / 100.0;
+            items.add(new MenuItem(String.valueOf(100 + i), category + " " + i, price, category, 1_000_000));
+        }
+        return items;
+    }
+
+    // Orders with one to four lines each, drawn from the given menu
+    public List<Order> orders(int count, List<MenuItem> menu) {
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(order(i, menu));
+        }
+        return orders;
+    }
+
+    /**
+     * Write orders straight into the journal of the current month, one at a
+     * time, so even very large histories are never held in memory. Replaces
+     * that journal file.
+     */
+    public void writeJournal(int count, List<MenuItem> menu) throws IOException {
+        Order first = order(0, menu);
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(OrderStore.partitionFile(OrderStore.monthOf(first))))) {
+            out.write(OrderJournal.formatOrder(first));
+            out.newLine();
+            for (int i = 1; i < count; i++) {
+                out.write(OrderJournal.formatOrder(order(i, menu)));
+                out.newLine();
+            }
+        }
+    }
+
+    public Order order(int sequence, List<MenuItem> menu) {
+        Order order = new Order(String.format("ORD-20250101-%08d", sequence),
+                CUSTOMERS[random.nextInt(CUSTOMERS.length)], 1 + random.nextInt(50),
+                STAFF[random.nextInt(STAFF.length)]);
+        int lines = 1 + random.nextInt(4);
+        for (int j = 0; j < lines; j++) {
+            MenuItem item = menu.get(random.nextInt(menu.size()));
+            order.addItem(new OrderItem(item.getId(), item.getName(), 1 + random.nextInt(3), item.getPrice()));
+        }
+        order.setStatus(random.nextInt(10) == 0 ? "PENDING" : "COMPLETED");
+        return order;
+    }
+}
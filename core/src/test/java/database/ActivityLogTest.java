@@ -0,0 +1,191 @@
+package database;
+
+import database.ActivityLog.Event;
+import database.ActivityLog.EventType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityLogTest {
+    private static final String[] USERS = {"alice", "bob", "carol", "dave"};
+    private static final long START = 1_700_000_000_000L;
+
+    private static Path dir;
+
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        dir = TestData.useDirectory("activity-log");
+    }
+
+    // An event as appended, to compare with what the log returns
+    private static class Expected {
+        final long time;
+        final EventType type;
+        final String user;
+        final long value;
+        final String detail;
+
+        Expected(long time, EventType type, String user, long value, String detail) {
+            this.time = time;
+            this.type = type;
+            this.user = user;
+            this.value = value;
+            this.detail = detail;
+        }
+
+        boolean matches(String user, Set<EventType> types, long from, long to) {
+            return time >= from && time <= to && (user == null || user.equals(this.user))
+                    && (types == null || types.contains(type));
+        }
+
+        String describe() {
+            return time + " " + type + " " + user + " " + value + " " + detail;
+        }
+    }
+
+    @Test
+    void queriesMatchAFilterOverEveryEvent() throws Exception {
+        Path file = dir.resolve("queries.log");
+        ActivityLog log = ActivityLog.open(file);
+        List<Expected> appended = appendEvents(log, 2_000, new Random(1));
+        assertQueriesMatch(log, appended);
+        // In order of first appearance
+        assertEquals(appended.stream().map(event -> event.user).filter(user -> user != null).distinct().toList(),
+                log.users());
+
+        // Reopened from the block summaries
+        log.flush();
+        assertQueriesMatch(ActivityLog.open(file), appended);
+    }
+
+    @Test
+    void missingSummariesAreRebuilt() throws Exception {
+        Path file = dir.resolve("summaries.log");
+        ActivityLog log = ActivityLog.open(file);
+        List<Expected> appended = appendEvents(log, 1_000, new Random(2));
+        log.flush();
+        Files.delete(Paths.get(file + ".blocks"));
+
+        ActivityLog reopened = ActivityLog.open(file);
+        assertQueriesMatch(reopened, appended);
+        appended.addAll(appendEvents(reopened, 300, new Random(3)));
+        reopened.flush();
+        assertQueriesMatch(ActivityLog.open(file), appended);
+    }
+
+    @Test
+    void recordCutOffByACrashIsDropped() throws Exception {
+        Path file = dir.resolve("torn.log");
+        ActivityLog log = ActivityLog.open(file);
+        List<Expected> appended = appendEvents(log, 600, new Random(4));
+        log.append(START, EventType.LOGIN, "alice", 0, "a detail long enough to be cut in the middle");
+        log.flush();
+        truncate(file, Files.size(file) - 10);
+
+        ActivityLog reopened = ActivityLog.open(file);
+        assertQueriesMatch(reopened, appended);
+        // The next record follows the last complete one
+        reopened.append(START + 5, EventType.LOGOUT, "erin", 42, "after the crash");
+        appended.add(new Expected(START + 5, EventType.LOGOUT, "erin", 42, "after the crash"));
+        reopened.flush();
+        assertQueriesMatch(ActivityLog.open(file), appended);
+    }
+
+    @Test
+    void logCutShortKeepsTheEventsBeforeTheCut() throws Exception {
+        Path file = dir.resolve("short.log");
+        ActivityLog log = ActivityLog.open(file);
+        List<Expected> appended = appendEvents(log, 1_500, new Random(5));
+        log.flush();
+        // Summaries of blocks past the cut are left behind in the .blocks file
+        truncate(file, Files.size(file) / 2);
+
+        List<Event> kept = ActivityLog.open(file).query(null, (Set<EventType>) null, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertTrue(kept.size() > ActivityLog.BLOCK_RECORDS, "kept " + kept.size());
+        assertTrue(kept.size() < appended.size());
+        assertEvents(appended.subList(0, kept.size()), kept);
+    }
+
+    @Test
+    void otherFilesAreNotTakenForALog() throws Exception {
+        Path file = dir.resolve("foreign.log");
+        Files.writeString(file, "not an activity log");
+        assertThrows(IOException.class, () -> ActivityLog.open(file));
+
+        // A header cut off before it was complete starts a new log
+        Path empty = dir.resolve("header.log");
+        Files.write(empty, new byte[]{0x41, 0x4C});
+        ActivityLog log = ActivityLog.open(empty);
+        log.append(START, EventType.LOGIN, "alice", 0, "");
+        log.flush();
+        assertEquals(1, ActivityLog.open(empty).query("alice", EventType.LOGIN, START, START).size());
+    }
+
+    private static List<Expected> appendEvents(ActivityLog log, int count, Random random) {
+        List<Expected> appended = new ArrayList<>();
+        long time = START;
+        for (int i = 0; i < count; i++) {
+            // Mostly forward, sometimes back as a clock is corrected
+            time += random.nextInt(10) == 0 ? -random.nextInt(5_000) : random.nextInt(60_000);
+            EventType type = EventType.values()[random.nextInt(3)];
+            String user = random.nextInt(20) == 0 ? null : USERS[random.nextInt(USERS.length)];
+            long value = type == EventType.LOGOUT ? random.nextInt(3_600_000) : 0;
+            String detail = i % 7 == 0 ? "till-" + i % 3 + " é" : "";
+            log.append(time, type, user, value, detail);
+            appended.add(new Expected(time, type, user, value, detail));
+        }
+        return appended;
+    }
+
+    private static void assertQueriesMatch(ActivityLog log, List<Expected> appended) throws IOException {
+        long last = appended.stream().mapToLong(event -> event.time).max().orElse(START);
+        long[][] ranges = {{Long.MIN_VALUE, Long.MAX_VALUE}, {START, START + (last - START) / 3}, {last - 100_000, last}};
+        List<String> users = new ArrayList<>(List.of(USERS));
+        users.add(null);
+        List<Set<EventType>> typeSets = List.of(EnumSet.of(EventType.LOGIN),
+                EnumSet.of(EventType.LOGOUT, EventType.LOGIN_FAILED));
+        for (long[] range : ranges) {
+            for (String user : users) {
+                for (Set<EventType> types : typeSets) {
+                    List<Expected> expected = new ArrayList<>();
+                    for (Expected event : appended) {
+                        if (event.matches(user, types, range[0], range[1])) {
+                            expected.add(event);
+                        }
+                    }
+                    assertEvents(expected, log.query(user, types, range[0], range[1]));
+                }
+            }
+        }
+        assertEvents(appended, log.query(null, (Set<EventType>) null, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertTrue(log.query("nobody", (Set<EventType>) null, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    private static void assertEvents(List<Expected> expected, List<Event> actual) {
+        List<String> expectedText = new ArrayList<>();
+        expected.forEach(event -> expectedText.add(event.describe()));
+        List<String> actualText = new ArrayList<>();
+        actual.forEach(event -> actualText.add(event.getTime() + " " + event.getType() + " " + event.getUser()
+                + " " + event.getValue() + " " + event.getDetail()));
+        assertEquals(expectedText, actualText);
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+}
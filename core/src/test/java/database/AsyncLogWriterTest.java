@@ -0,0 +1,116 @@
+package database;
+
+import database.AsyncLogWriter.BackpressurePolicy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLogWriterTest {
+    private static Path dir;
+
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        dir = TestData.useDirectory("async-log");
+    }
+
+    @Test
+    void everyLineIsWrittenInOrderPerProducer() throws Exception {
+        // A small ring, so the producers keep waiting for room
+        AsyncLogWriter writer = new AsyncLogWriter(16, 64, 5, BackpressurePolicy.BLOCK);
+        Path first = dir.resolve("first.log");
+        Path second = dir.resolve("second.log");
+        Set<String> flushed = ConcurrentHashMap.newKeySet();
+        writer.setFlushListener(flushed::add);
+
+        ExecutorService producers = Executors.newFixedThreadPool(6);
+        List<Future<?>> done = new ArrayList<>();
+        for (int p = 0; p < 6; p++) {
+            int producer = p;
+            done.add(producers.submit(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    writer.write((producer % 2 == 0 ? first : second).toString(), producer + " " + i);
+                }
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get();
+        }
+        producers.shutdown();
+        writer.flush();
+
+        List<String> lines = new ArrayList<>(Files.readAllLines(first));
+        lines.addAll(Files.readAllLines(second));
+        assertEquals(12_000, lines.size());
+        Map<String, Integer> next = new HashMap<>();
+        for (String line : lines) {
+            String[] parts = line.split(" ");
+            int expected = next.getOrDefault(parts[0], 0);
+            assertEquals(expected, Integer.parseInt(parts[1]), "producer " + parts[0]);
+            next.put(parts[0], expected + 1);
+        }
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(Set.of(first.toString(), second.toString()), flushed);
+        writer.shutdown();
+    }
+
+    @Test
+    void fullRingDropsLinesUnderDrop() throws Exception {
+        AsyncLogWriter writer = new AsyncLogWriter(4, 1, 1, BackpressurePolicy.DROP);
+        String file = dir.resolve("drop.log").toString();
+        // Hold the writer thread in its first flush so the ring fills up
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        writer.setFlushListener(flushedFile -> {
+            if (flushing.getCount() > 0) {
+                flushing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        writer.write(file, "line 0");
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) {
+            writer.write(file, "line " + i);
+        }
+        assertEquals(6, writer.getDroppedCount());
+
+        release.countDown();
+        writer.flush();
+        assertEquals(List.of("line 0", "line 1", "line 2", "line 3", "line 4"), Files.readAllLines(Path.of(file)));
+        writer.shutdown();
+    }
+
+    @Test
+    void shutdownWritesWhatIsStillQueued() throws Exception {
+        // Only flushed by size, which these few lines never reach
+        AsyncLogWriter writer = new AsyncLogWriter(1024, 1_000_000, 60_000, BackpressurePolicy.CALLER_RUNS);
+        String file = dir.resolve("shutdown.log").toString();
+        for (int i = 0; i < 100; i++) {
+            writer.write(file, "line " + i);
+        }
+        writer.shutdown();
+        writer.shutdown();
+        List<String> lines = Files.readAllLines(Path.of(file));
+        assertEquals(100, lines.size());
+        assertEquals("line 99", lines.get(99));
+    }
+}
@@ -0,0 +1,78 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemIndexMapTest {
+    @Test
+    void sumsMatchAHashMapThroughGrowth() {
+        // Starts small so the keys and the table both grow several times
+        ItemIndexMap map = new ItemIndexMap(2);
+        Map<String, Long> longs = new HashMap<>();
+        Map<String, Integer> ints = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 50_000; i++) {
+            String key = "Item " + random.nextInt(3_000);
+            map.addLong(key, i);
+            longs.merge(key, (long) i, Long::sum);
+            if (i % 2 == 0) {
+                map.addInt(key, 1);
+                ints.merge(key, 1, Integer::sum);
+            }
+        }
+        assertEquals(longs.size(), map.size());
+        for (Map.Entry<String, Long> entry : longs.entrySet()) {
+            int index = map.indexOf(entry.getKey());
+            assertEquals(entry.getKey(), map.key(index));
+            assertEquals(entry.getValue(), map.getLong(index));
+            assertEquals(ints.getOrDefault(entry.getKey(), 0), map.getInt(index));
+            // Never written, so the column reads as zero
+            assertEquals(0.0, map.getDouble(index));
+        }
+        assertEquals(-1, map.indexOf("Item 3000"));
+    }
+
+    @Test
+    void keysWithTheSameHashCodeStayApart() {
+        ItemIndexMap map = new ItemIndexMap();
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        int aa = map.add("Aa");
+        int bb = map.add("BB");
+        assertNotEquals(aa, bb);
+        assertEquals(aa, map.add(new String("Aa")));
+        map.addDouble("BB", 1.5);
+        assertEquals(0.0, map.getDouble(aa));
+        assertEquals(1.5, map.getDouble(map.indexOf("BB")));
+    }
+
+    @Test
+    void maxLongIndexIgnoresValuesThatAreNotPositive() {
+        ItemIndexMap map = new ItemIndexMap();
+        assertEquals(-1, map.maxLongIndex());
+        map.addLong("Tea", -4);
+        assertEquals(-1, map.maxLongIndex());
+        map.addLong("Cake", 2);
+        map.setLong(map.add("Scone"), 7);
+        assertEquals("Scone", map.key(map.maxLongIndex()));
+    }
+
+    @Test
+    void clearKeepsNothingButCapacity() {
+        ItemIndexMap map = new ItemIndexMap();
+        for (int i = 0; i < 100; i++) {
+            map.addInt("Item " + i, i);
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.indexOf("Item 5"));
+        // Reused slots start from zero
+        int index = map.add("Item 99");
+        assertEquals(0, index);
+        assertEquals(0, map.getInt(index));
+    }
+}
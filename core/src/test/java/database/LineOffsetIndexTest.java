@@ -0,0 +1,126 @@
+package database;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineOffsetIndexTest {
+    private static Path dir;
+
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        dir = TestData.useDirectory("line-index");
+    }
+
+    @Test
+    void linesAreReadByRow() throws Exception {
+        Path log = dir.resolve("rows.log");
+        Files.writeString(log, "first\r\nsecond\nthird café\nunfinish", StandardCharsets.UTF_8);
+        LineOffsetIndex index = LineOffsetIndex.build(log);
+        assertEquals(4, index.lineCount());
+        assertEquals(List.of("second", "third café", "unfinish"), index.readLines(1, 10));
+        assertEquals("first", index.readLine(0));
+        assertNull(index.readLine(4));
+
+        Files.writeString(log, "ed\nfifth\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        assertEquals(1, index.update());
+        assertEquals(List.of("unfinished", "fifth"), index.readLines(3, 2));
+
+        // A cleared log is indexed again and the rows renumbered
+        Files.writeString(log, "new\n", StandardCharsets.UTF_8);
+        assertEquals(-1, index.update());
+        assertEquals(1, index.resetCount());
+        assertEquals(List.of("new"), index.readLines(0, 10));
+    }
+
+    @Test
+    void sidecarIsReusedAndExtended() throws Exception {
+        Path log = reopened("extended", lines(0, 500));
+        Files.writeString(log, String.join("\n", lines(500, 600)) + "\n", StandardOpenOption.APPEND);
+
+        LineOffsetIndex index = LineOffsetIndex.shared(log);
+        assertEquals(600, index.lineCount());
+        assertEquals(lines(495, 505), index.readLines(495, 10));
+        assertEquals(8 + 600 * 8, Files.size(sidecar(log)));
+    }
+
+    @Test
+    void sidecarOfAReplacedLogIsRebuilt() throws Exception {
+        // Same or greater length, but the lines end elsewhere
+        Path log = reopened("replaced", lines(0, 500));
+        List<String> replaced = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            replaced.add("replaced line " + i + " with more text");
+        }
+        Files.writeString(log, String.join("\n", replaced) + "\n");
+        assertRebuilt(log, replaced);
+    }
+
+    @Test
+    void sidecarLongerThanTheLogIsRebuilt() throws Exception {
+        Path log = reopened("shorter", lines(0, 500));
+        Files.writeString(log, String.join("\n", lines(0, 10)) + "\n");
+        assertRebuilt(log, lines(0, 10));
+    }
+
+    @Test
+    void damagedSidecarIsRebuilt() throws Exception {
+        // A torn last entry
+        Path torn = reopened("torn", lines(0, 300));
+        byte[] bytes = Files.readAllBytes(sidecar(torn));
+        Files.write(sidecar(torn), Arrays.copyOf(bytes, bytes.length - 3));
+        assertRebuilt(torn, lines(0, 300));
+
+        // Not an index at all
+        Path foreign = reopened("foreign", lines(0, 300));
+        ByteBuffer header = ByteBuffer.allocate(8).putLong(0, 0x1234L);
+        Files.write(sidecar(foreign), header.array(), StandardOpenOption.WRITE);
+        assertRebuilt(foreign, lines(0, 300));
+    }
+
+    /**
+     * Index a log with its sidecar under one name, then copy both to a new
+     * name, so opening that one reads the sidecar as it would after a restart.
+     */
+    private static Path reopened(String name, List<String> lines) throws Exception {
+        Path original = dir.resolve(name + "-original.log");
+        Files.writeString(original, String.join("\n", lines) + "\n");
+        assertEquals(lines.size(), LineOffsetIndex.shared(original).lineCount());
+        assertEquals(8 + lines.size() * 8L, Files.size(sidecar(original)));
+
+        Path log = dir.resolve(name + ".log");
+        Files.copy(original, log);
+        Files.copy(sidecar(original), sidecar(log));
+        return log;
+    }
+
+    private static void assertRebuilt(Path log, List<String> expected) throws Exception {
+        LineOffsetIndex index = LineOffsetIndex.shared(log);
+        assertEquals(expected.size(), index.lineCount());
+        assertEquals(expected, index.readLines(0, expected.size()));
+        assertEquals(8 + expected.size() * 8L, Files.size(sidecar(log)));
+    }
+
+    private static Path sidecar(Path log) {
+        return Paths.get(log + ".idx");
+    }
+
+    private static List<String> lines(int from, int to) {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            lines.add("line " + i);
+        }
+        return lines;
+    }
+}
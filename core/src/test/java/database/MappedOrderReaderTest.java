@@ -0,0 +1,71 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedOrderReaderTest {
+    private static Path dir;
+
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        dir = TestData.useDirectory("mapped-reader");
+    }
+
+    @Test
+    void parallelChunksMatchAStreamedRead() throws Exception {
+        // Well past the size that is split into parallel chunks
+        Path file = dir.resolve("large.txt");
+        StringBuilder text = new StringBuilder();
+        int count = 0;
+        while (text.length() < 4 * 1024 * 1024) {
+            Order order = TestData.order("M-" + count, count % 3 == 0 ? "COMPLETED" : "PENDING", 1_000_000L + count,
+                    new OrderItem("I" + count % 50, "Item " + count % 50, 1 + count % 4, 1.25));
+            text.append(OrderJournal.formatOrder(order)).append('\n');
+            count++;
+        }
+        Files.writeString(file, text, Charset.defaultCharset());
+
+        List<Order> mapped = MappedOrderReader.readRecords(file.toString());
+        List<Order> streamed;
+        try (InputStream in = Files.newInputStream(file)) {
+            streamed = new OrderLineParser().parseAll(in);
+        }
+        assertEquals(count, mapped.size());
+        assertEquals(streamed.size(), mapped.size());
+        for (int i = 0; i < count; i++) {
+            // Chunks are joined in file order
+            assertEquals("M-" + i, mapped.get(i).getOrderId());
+            assertEquals(streamed.get(i).calculateTotalCents(), mapped.get(i).calculateTotalCents());
+        }
+    }
+
+    @Test
+    void recordsNotCheckpointedYetFollowTheFile() throws Exception {
+        String file = dir.resolve("pending.txt").toString();
+        Files.writeString(Path.of(file), OrderJournal.formatOrder(TestData.order("P-1", "PENDING", 1)) + "\n");
+        StorageEngine.append(file, OrderJournal.formatOrder(TestData.order("P-2", "PENDING", 2)));
+        StorageEngine.append(file, OrderJournal.formatOrder(TestData.order("P-1", "COMPLETED", 1)));
+
+        List<Order> records = MappedOrderReader.readRecords(file);
+        assertEquals(3, records.size());
+        assertEquals("P-2", records.get(1).getOrderId());
+        assertEquals("COMPLETED", MappedOrderReader.readOrders(file).get(0).getStatus());
+        // Reading left the log alone
+        assertTrue(Files.size(dir.resolve("storage.wal")) > 0);
+    }
+
+    @Test
+    void missingFileHasNoRecords() throws Exception {
+        assertTrue(MappedOrderReader.readRecords(dir.resolve("missing.txt").toString()).isEmpty());
+    }
+}
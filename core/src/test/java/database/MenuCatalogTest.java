@@ -0,0 +1,89 @@
+package database;
+
+import models.MenuItem;
+import models.OrderItem;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MenuCatalogTest {
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        TestData.useDirectory("menu-catalog");
+        // Read when MenuCatalog is loaded
+        System.setProperty("cafe.stock.compactAfter", "3");
+    }
+
+    @BeforeEach
+    void writeMenu() {
+        DatabaseHandler.saveMenuItems(List.of(
+                new MenuItem("I1", "Tea", 1.50, "Drinks", 100),
+                new MenuItem("I2", "Cake", 3.00, "Food", 20),
+                new MenuItem("I3", "Coffee", 2.20, "Drinks", 50)));
+        MenuCatalog.reload();
+    }
+
+    @Test
+    void itemsAreFoundByIdAndCategory() {
+        assertEquals("Coffee", MenuCatalog.getItem("I3").getName());
+        assertNull(MenuCatalog.getItem("I9"));
+        assertEquals(List.of("Drinks", "Food"), MenuCatalog.getCategories());
+        assertEquals(List.of("I1", "I3"), ids(MenuCatalog.getItemsByCategory("Drinks")));
+        assertEquals(List.of("I1", "I2", "I3"), ids(MenuCatalog.getItemsByCategory("All")));
+        assertTrue(MenuCatalog.getItemsByCategory("Desserts").isEmpty());
+    }
+
+    @Test
+    void menuChangesAreWrittenThrough() {
+        MenuCatalog.addItem(new MenuItem("I4", "Scone", 2.80, "Food", 12));
+        MenuItem coffee = MenuCatalog.getItem("I3");
+        coffee.setCategory("Hot Drinks");
+        MenuCatalog.updateItem(coffee);
+        MenuCatalog.removeItem("I1");
+
+        MenuCatalog.reload();
+        assertEquals(List.of("I2", "I3", "I4"), ids(MenuCatalog.getAllItems()));
+        assertEquals(List.of("Food", "Hot Drinks"), MenuCatalog.getCategories());
+        assertEquals(List.of("I2", "I4"), ids(MenuCatalog.getItemsByCategory("Food")));
+        assertEquals(12, MenuCatalog.getItem("I4").getStock());
+    }
+
+    @Test
+    void stockChangesAreFoldedIntoTheMenuOnceEnoughPileUp() {
+        for (int i = 0; i < 2; i++) {
+            assertTrue(MenuCatalog.deductStock(TestData.order("S-" + i, "PENDING", 1, new OrderItem("I2", "Cake", 2, 3.00))));
+        }
+        assertEquals(2, DatabaseHandler.loadStockChanges(new HashMap<>()));
+
+        // The third change reaches cafe.stock.compactAfter
+        assertTrue(MenuCatalog.deductStock(TestData.order("S-2", "PENDING", 1, new OrderItem("I2", "Cake", 2, 3.00))));
+        assertEquals(0, DatabaseHandler.loadStockChanges(new HashMap<>()));
+        MenuCatalog.reload();
+        assertEquals(14, MenuCatalog.getItem("I2").getStock());
+
+        assertFalse(MenuCatalog.deductStock(TestData.order("S-3", "PENDING", 1, new OrderItem("I2", "Cake", 15, 3.00))));
+        assertEquals(14, MenuCatalog.getItem("I2").getStock());
+    }
+
+    @Test
+    void editingAnItemKeepsTheStockOrdersTook() {
+        assertTrue(MenuCatalog.deductStock(TestData.order("E-1", "PENDING", 1, new OrderItem("I1", "Tea", 5, 1.50))));
+        MenuItem tea = MenuCatalog.getItem("I1");
+        tea.setPrice(1.80);
+        MenuCatalog.updateItem(tea);
+
+        MenuCatalog.reload();
+        assertEquals(95, MenuCatalog.getItem("I1").getStock());
+        assertEquals(180, MenuCatalog.getItem("I1").getPriceCents());
+    }
+
+    private static List<String> ids(List<MenuItem> items) {
+        return items.stream().map(MenuItem::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,48 @@
+package database;
+
+import models.OrderItem;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderIdSequenceTest {
+    private static String prefix;
+
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        TestData.useDirectory("order-id-sequence");
+        prefix = "ORD-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")) + "-";
+    }
+
+    // One run of the application: print the next order id
+    public static class Run {
+        public static void main(String[] args) {
+            System.out.println(Utils.generateOrderId());
+        }
+    }
+
+    @Test
+    void idsAreNumberedPerDayAndSkipIdsTheJournalKnows() throws Exception {
+        // Given out at random before the sequence existed
+        assertTrue(OrderStore.append(TestData.order(prefix + "00002", "COMPLETED", System.currentTimeMillis(),
+                new OrderItem("I1", "Tea", 1, 1.50))));
+
+        assertEquals(prefix + "00001", Utils.generateOrderId());
+        assertEquals(prefix + "00003", Utils.generateOrderId());
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            assertTrue(ids.add(Utils.generateOrderId()));
+        }
+        assertEquals(prefix + "00504", Utils.generateOrderId());
+
+        // A restart continues after the last block reserved, never reusing a number
+        assertEquals(prefix + "00601", TestData.runJvm(Run.class));
+        assertEquals(prefix + "00701", TestData.runJvm(Run.class));
+    }
+}
@@ -0,0 +1,105 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderJournalTest {
+    // 2025-05-11, well before any month the other tests write to
+    private static final long TIME = 1_746_950_400_000L;
+
+    private static Path dir;
+
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        dir = TestData.useDirectory("order-journal");
+    }
+
+    @Test
+    void laterRecordsReplaceEarlierOnes() throws Exception {
+        Order first = TestData.order("J-1", "PENDING", TIME, new OrderItem("I1", "Tea", 2, 1.50));
+        Order second = TestData.order("J-2", "PENDING", TIME + 1000, new OrderItem("I2", "Cake", 1, 3.25));
+        Order firstDone = TestData.order("J-1", "COMPLETED", TIME, new OrderItem("I1", "Tea", 2, 1.50));
+        assertTrue(OrderStore.append(first));
+        assertTrue(OrderStore.append(second));
+        assertTrue(OrderStore.append(firstDone));
+
+        List<Order> orders = OrderStore.loadMonth(YearMonth.of(2025, 5));
+        assertEquals(2, orders.size());
+        // Kept where the order first appeared, with its latest status
+        assertEquals("J-1", orders.get(0).getOrderId());
+        assertEquals("COMPLETED", orders.get(0).getStatus());
+        assertEquals("J-2", orders.get(1).getOrderId());
+    }
+
+    @Test
+    void foldReturnsTheSameListWithoutDuplicates() {
+        List<Order> records = List.of(TestData.order("F-1", "PENDING", TIME), TestData.order("F-2", "PENDING", TIME));
+        assertSame(records, OrderJournal.fold(records));
+    }
+
+    @Test
+    void formattedRecordParsesBack() throws Exception {
+        Order order = TestData.order("P-1", "COMPLETED", TIME + 42,
+                new OrderItem("I1", "Flat White", 3, 3.10), new OrderItem("I9", "Scone", 1, 2.05));
+        String line = OrderJournal.formatOrder(order) + "\n";
+
+        List<Order> parsed = new OrderLineParser().parseAll(new ByteArrayInputStream(line.getBytes(Charset.defaultCharset())));
+        assertEquals(1, parsed.size());
+        Order back = parsed.get(0);
+        assertEquals("P-1", back.getOrderId());
+        assertEquals(order.getCustomerName(), back.getCustomerName());
+        assertEquals(4, back.getTableNumber());
+        assertEquals("COMPLETED", back.getStatus());
+        assertEquals(TIME + 42, back.getOrderTime().getTime());
+        assertEquals(2, back.getOrderItems().size());
+        assertEquals(930, back.getOrderItems().get(0).getTotalCents());
+        assertEquals(order.calculateTotalCents(), back.calculateTotalCents());
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveRecords() throws Exception {
+        String file = OrderStore.partitionFile(YearMonth.of(2025, 1));
+        long january = TIME - 120L * 24 * 60 * 60 * 1000;
+        List<Order> live = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Order order = TestData.order("C-" + i, "PENDING", january);
+            assertTrue(OrderStore.append(order));
+            order.setStatus("COMPLETED");
+            assertTrue(OrderStore.append(order));
+            live.add(order);
+        }
+        assertEquals(6, MappedOrderReader.readRecords(file).size());
+
+        OrderJournal.compact(file, live);
+        List<Order> records = MappedOrderReader.readRecords(file);
+        assertEquals(3, records.size());
+        for (Order order : records) {
+            assertEquals("COMPLETED", order.getStatus());
+        }
+    }
+
+    @Test
+    void recordCutOffByACrashIsSkipped() throws Exception {
+        Path file = dir.resolve("torn.txt");
+        Order order = TestData.order("T-1", "PENDING", TIME, new OrderItem("I1", "Tea", 1, 1.50));
+        Files.writeString(file, OrderJournal.formatOrder(order) + "\n" + "T-2|Customer T-2|4|sta",
+                Charset.defaultCharset(), StandardOpenOption.CREATE_NEW);
+
+        List<Order> records = MappedOrderReader.readRecords(file.toString());
+        assertEquals(1, records.size());
+        assertEquals("T-1", records.get(0).getOrderId());
+    }
+}
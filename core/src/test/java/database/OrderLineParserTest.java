@@ -0,0 +1,131 @@
+package database;
+
+import models.Money;
+import models.Order;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderLineParserTest {
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    private final OrderLineParser parser = new OrderLineParser();
+
+    @Test
+    void parsesAFullRecord() {
+        Order order = parse("ORD-1|Ann|7|bob|COMPLETED|I1:Tea:2:1.5;I2:Cake:1:3.25|1746950400000");
+        assertEquals("ORD-1", order.getOrderId());
+        assertEquals("Ann", order.getCustomerName());
+        assertEquals(7, order.getTableNumber());
+        assertEquals("bob", order.getStaffName());
+        assertEquals("COMPLETED", order.getStatus());
+        assertEquals(2, order.getOrderItems().size());
+        assertEquals("Cake", order.getOrderItems().get(1).getItemName());
+        assertEquals(150, order.getOrderItems().get(0).getPriceCents());
+        assertEquals(625, order.calculateTotalCents());
+        assertEquals(1746950400000L, order.getOrderTime().getTime());
+    }
+
+    @Test
+    void oldRecordsTakeTheirDayFromTheOrderId() {
+        long day = LocalDate.of(2025, 3, 9).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(day, parse("ORD-20250309-00012|Ann|1|bob|PENDING|I1:Tea:1:1.50").getOrderTime().getTime());
+        // No items field at all
+        assertEquals(day, parse("ORD-20250309-00013|Ann|1|bob|PENDING").getOrderTime().getTime());
+        assertTrue(parse("ORD-20250309-00014|Ann|1|bob|PENDING|").getOrderItems().isEmpty());
+    }
+
+    @Test
+    void malformedLinesAreSkipped() {
+        assertNull(parse(""));
+        assertNull(parse("   "));
+        assertNull(parse("ORD-1|Ann|seven|bob|PENDING|"));
+        assertNull(parse("ORD-1|Ann|7|bob"));
+        // A bad item is dropped, the order is kept
+        assertEquals(1, parse("ORD-1|Ann|7|bob|PENDING|I1:Tea:x:1.50;I2:Cake:1:3").getOrderItems().size());
+    }
+
+    @Test
+    void windowsLineBreaksAreTrimmed() throws Exception {
+        List<Order> orders = parser.parseAll(stream("A|c|1|s|PENDING|I1:Tea:1:1.5|1\r\nB|c|2|s|PENDING||2\r\n"));
+        assertEquals(2, orders.size());
+        assertEquals("PENDING", orders.get(1).getStatus());
+        assertEquals(2, orders.get(1).getOrderTime().getTime());
+    }
+
+    @Test
+    void lastLineWithoutNewlineIsRead() throws Exception {
+        assertEquals(2, parser.parseAll(stream("A|c|1|s|PENDING||1\nB|c|2|s|PENDING||2")).size());
+    }
+
+    @Test
+    void linesLongerThanTheReadBufferAreRead() throws Exception {
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            if (i > 0) {
+                items.append(';');
+            }
+            items.append("I").append(i).append(":Item ").append(i).append(":1:0.01");
+        }
+        List<Order> orders = parser.parseAll(stream("A|c|1|s|PENDING|" + items + "|1\nB|c|1|s|PENDING||1\n"));
+        assertEquals(2, orders.size());
+        assertEquals(10_000, orders.get(0).getOrderItems().size());
+        assertEquals(10_000, orders.get(0).calculateTotalCents());
+    }
+
+    @Test
+    void rangeParsingMatchesStreamParsing() throws Exception {
+        String text = "A|c|1|s|PENDING|I1:Tea:1:1.5|1\nB|c|2|s|COMPLETED|I2:Cake:2:3|2\nC|c|3|s|CANCELLED||3\n";
+        byte[] bytes = text.getBytes(CHARSET);
+        int split = text.indexOf('\n') + 1;
+
+        List<Order> records = new ArrayList<>();
+        parser.parseRange(ByteBuffer.wrap(bytes), 0, split, records);
+        parser.parseRange(ByteBuffer.wrap(bytes), split, bytes.length, records);
+        List<Order> streamed = new OrderLineParser().parseAll(stream(text));
+
+        assertEquals(streamed.size(), records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(streamed.get(i).getOrderId(), records.get(i).getOrderId());
+            assertEquals(streamed.get(i).calculateTotalCents(), records.get(i).calculateTotalCents());
+        }
+    }
+
+    @Test
+    void repeatedStringsAreShared() {
+        Order first = parse("A|Ann|1|bob|PENDING|I1:Tea:1:1.5|1");
+        Order second = parse("B|Ann|1|bob|PENDING|I1:Tea:1:1.5|1");
+        assertSame(first.getStaffName(), second.getStaffName());
+        assertSame(first.getStatus(), second.getStatus());
+        assertSame(first.getOrderItems().get(0).getItemName(), second.getOrderItems().get(0).getItemName());
+    }
+
+    @Test
+    void pricesRoundLikeMoneyParse() {
+        String[] prices = {"0", "1", "1.5", "2.50", "3.125", "3.135", "0.005", "0.004", "10.999", "-1.25", "-0.005",
+                "1234567.89", "1e2", "2.5E-1"};
+        for (String price : prices) {
+            byte[] bytes = price.getBytes(CHARSET);
+            assertEquals(Money.parse(price), OrderLineParser.parseCents(ByteBuffer.wrap(bytes), 0, bytes.length), price);
+        }
+        byte[] junk = "abc".getBytes(CHARSET);
+        assertEquals(Long.MIN_VALUE, OrderLineParser.parseCents(ByteBuffer.wrap(junk), 0, junk.length));
+    }
+
+    private Order parse(String line) {
+        byte[] bytes = line.getBytes(CHARSET);
+        return parser.parseLine(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(CHARSET));
+    }
+}
@@ -0,0 +1,134 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderLineTableTest {
+    private static final String[] STATUSES = {"PENDING", "COMPLETED", "CANCELLED", "Refunded"};
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void queriesMatchLoopsOverTheLatestRecords() {
+        Random random = new Random(15);
+        OrderLineTable table = new OrderLineTable(4);
+        // Latest record of each order, as the journal fold keeps them
+        Map<String, Order> latest = new LinkedHashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            // Some records update an order added before, with other lines
+            String id = "O-" + (random.nextInt(4) == 0 && i > 0 ? random.nextInt(i) : i);
+            List<OrderItem> items = new ArrayList<>();
+            for (int line = random.nextInt(5); line > 0; line--) {
+                int item = random.nextInt(30);
+                items.add(new OrderItem("I" + item, "Item " + item, 1 + random.nextInt(4), 0.05 * (1 + item)));
+            }
+            String staff = random.nextInt(10) == 0 ? null : "staff" + random.nextInt(5);
+            Order order = new Order(id, "Customer", 1, staff, STATUSES[random.nextInt(STATUSES.length)], items);
+            order.setOrderTime(new Date(START + random.nextInt(1_000_000) * 60_000L));
+            table.add(order);
+            latest.put(id, order);
+        }
+
+        long revenue = 0;
+        long windowRevenue = 0;
+        long from = START / 60_000 + 100_000;
+        long to = from + 250_000;
+        Map<String, Long> quantities = new HashMap<>();
+        Map<String, Long> completed = new HashMap<>();
+        Map<String, Long> staffRevenue = new HashMap<>();
+        for (Order order : latest.values()) {
+            long minute = order.getOrderTime().getTime() / 60_000;
+            for (OrderItem item : order.getOrderItems()) {
+                revenue += item.getTotalCents();
+                if (minute >= from && minute < to) {
+                    windowRevenue += item.getTotalCents();
+                }
+                quantities.merge(item.getItemName(), (long) item.getQuantity(), Long::sum);
+                if (order.getStatus().equals("COMPLETED")) {
+                    completed.merge(item.getItemName(), (long) item.getQuantity(), Long::sum);
+                }
+                String staff = order.getStaffName() == null ? "" : order.getStaffName();
+                staffRevenue.merge(staff, item.getTotalCents(), Long::sum);
+            }
+        }
+
+        assertEquals(revenue, table.revenueCents());
+        assertEquals(windowRevenue, table.revenueCents(from, to));
+        assertEquals(quantities, byName(table, table.itemQuantities(false)));
+        assertEquals(completed, byName(table, table.itemQuantities(true)));
+        Map<String, Long> staff = new HashMap<>();
+        long[] staffCents = table.staffRevenueCents();
+        for (int i = 0; i < table.staffCount(); i++) {
+            if (staffCents[i] != 0) {
+                staff.put(table.staffName(i), staffCents[i]);
+            }
+        }
+        assertEquals(staffRevenue, staff);
+        assertEquals(ReportGenerator.calculateTotalRevenue(new ArrayList<>(latest.values())),
+                table.revenueCents() / 100.0, 1e-6);
+    }
+
+    @Test
+    void laterRecordReplacesTheRowsOfTheEarlierOne() {
+        OrderLineTable table = OrderLineTable.of(List.of(
+                TestData.order("O-1", "PENDING", START, new OrderItem("I1", "Tea", 2, 1.50),
+                        new OrderItem("I2", "Cake", 1, 3.00)),
+                TestData.order("O-1", "COMPLETED", START, new OrderItem("I1", "Tea", 1, 1.50))));
+        assertEquals(3, table.rowCount());
+        assertEquals(150, table.revenueCents());
+        long[] completed = table.itemQuantities(true);
+        assertEquals(1, completed[0]);
+        assertEquals(0, completed[1]);
+        assertEquals(OrderLineTable.OTHER, OrderLineTable.statusCode("Refunded"));
+        assertEquals(OrderLineTable.COMPLETED, OrderLineTable.statusCode("completed"));
+    }
+
+    @Test
+    void periodsAndStaffCountTheLatestRecordOfEachOrder() {
+        long minute = START / 60_000;
+        OrderLineTable table = new OrderLineTable(4);
+        table.add(order("O-1", "ann", minute, 2));
+        table.add(order("O-2", "bob", minute + 10, 1));
+        // O-1 moves to bob and to the second period
+        table.add(order("O-1", "bob", minute + 20, 3));
+        table.add(order("O-3", "ann", minute - 5, 4));
+
+        assertEquals(3, table.orderCount());
+        assertEquals(minute - 5, table.firstMinute());
+        assertEquals(minute + 20, table.lastMinute());
+        long[] starts = {minute, minute + 15};
+        assertArrayEquals(new long[] {100, 300}, table.revenueCents(starts));
+        assertArrayEquals(new int[] {1, 1}, table.orderCounts(starts));
+        int[] counts = table.staffOrderCounts();
+        assertEquals(1, counts[0]);
+        assertEquals("ann", table.staffName(0));
+        assertEquals(2, counts[1]);
+        assertEquals(Long.MAX_VALUE, new OrderLineTable().firstMinute());
+    }
+
+    private static Order order(String id, String staff, long minute, int quantity) {
+        Order order = new Order(id, "Customer", 1, staff, "PENDING", List.of(new OrderItem("I1", "Tea", quantity, 1.00)));
+        order.setOrderTime(new Date(minute * 60_000));
+        return order;
+    }
+
+    private static Map<String, Long> byName(OrderLineTable table, long[] values) {
+        Map<String, Long> named = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                named.put(table.itemName(i), values[i]);
+            }
+        }
+        return named;
+    }
+}
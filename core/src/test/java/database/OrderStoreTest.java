@@ -0,0 +1,113 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderStoreTest {
+    private static Path dir;
+
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        dir = TestData.useDirectory("order-store");
+    }
+
+    @Test
+    void recordsLandInTheMonthOfTheOrder() throws Exception {
+        YearMonth january = YearMonth.of(2024, 1);
+        YearMonth february = YearMonth.of(2024, 2);
+        assertTrue(OrderStore.append(order("J-1", "PENDING", january, 10)));
+        assertTrue(OrderStore.append(order("J-2", "PENDING", january, 31)));
+        assertTrue(OrderStore.append(order("F-1", "PENDING", february, 1)));
+        // A later record of the same order replaces the first
+        assertTrue(OrderStore.append(order("J-1", "COMPLETED", january, 10)));
+
+        List<Order> orders = OrderStore.loadMonth(january);
+        assertEquals(2, orders.size());
+        assertEquals("COMPLETED", find(orders, "J-1").getStatus());
+        assertEquals(1, OrderStore.loadMonth(february).size());
+        assertEquals(2, OrderStore.loadRange(january.atDay(31), february.atDay(1)).size());
+
+        // Both months are listed while their records are still only in the storage log
+        assertEquals(List.of(january + ".txt", february + ".txt"), names(OrderStore.files(january, february)));
+        assertEquals(0, Files.size(Paths.get(OrderStore.partitionFile(january))));
+        assertTrue(Files.size(dir.resolve("storage.wal")) > 0);
+    }
+
+    @Test
+    void archivedMonthsAreStillRead() throws Exception {
+        YearMonth march = YearMonth.of(2023, 3);
+        YearMonth april = YearMonth.of(2023, 4);
+        OrderStore.append(order("A-1", "PENDING", march, 5));
+        OrderStore.append(order("A-2", "PENDING", april, 5));
+        OrderStore.append(order("A-3", "PENDING", YearMonth.of(2023, 5), 5));
+
+        assertEquals(2, OrderStore.archive(YearMonth.of(2023, 5)));
+        assertTrue(Files.exists(Paths.get(OrderStore.partitionFile(march) + ".gz")));
+        assertFalse(Files.exists(Paths.get(OrderStore.partitionFile(march))));
+        assertTrue(Files.exists(Paths.get(OrderStore.partitionFile(YearMonth.of(2023, 5)))));
+        assertEquals(1, OrderStore.loadMonth(april).size());
+
+        // A late record for an archived month starts a new file, read after the archive
+        OrderStore.append(order("A-1", "CANCELLED", march, 5));
+        assertEquals(List.of(march + ".txt.gz", march + ".txt"), names(OrderStore.files(march, march)));
+        assertEquals("CANCELLED", find(OrderStore.loadMonth(march), "A-1").getStatus());
+
+        // Archiving again adds to the existing archive
+        assertEquals(1, OrderStore.archive(YearMonth.of(2023, 4)));
+        assertEquals(List.of(march + ".txt.gz"), names(OrderStore.files(march, march)));
+        List<Order> orders = OrderStore.loadMonth(march);
+        assertEquals(1, orders.size());
+        assertEquals("CANCELLED", orders.get(0).getStatus());
+    }
+
+    @Test
+    void replaceAllLeavesOnlyTheGivenOrders() throws Exception {
+        YearMonth may = YearMonth.of(2024, 5);
+        YearMonth june = YearMonth.of(2024, 6);
+        OrderStore.append(order("R-1", "PENDING", may, 3));
+        OrderStore.append(order("R-2", "PENDING", may, 4));
+        Path legacy = dir.resolve("orders.txt");
+        Files.writeString(legacy, OrderJournal.formatOrder(order("R-0", "COMPLETED", may, 1)) + System.lineSeparator(),
+                Charset.defaultCharset());
+        assertEquals(3, OrderStore.loadMonth(may).size());
+
+        OrderStore.replaceAll(List.of(order("R-3", "COMPLETED", june, 3)));
+        assertFalse(Files.exists(Paths.get(OrderStore.partitionFile(may))));
+        assertFalse(Files.exists(legacy));
+        assertEquals(0, Files.size(dir.resolve("storage.wal")));
+        assertTrue(OrderStore.loadMonth(may).isEmpty());
+        assertEquals(1, OrderStore.loadMonth(june).size());
+
+        // The month removed by the replace is created again for its next record
+        OrderStore.append(order("R-4", "PENDING", may, 6));
+        assertEquals(List.of(may + ".txt"), names(OrderStore.files(may, may)));
+        assertEquals("R-4", OrderStore.loadMonth(may).get(0).getOrderId());
+    }
+
+    // Noon on a day of a month, in the zone the months are cut in
+    private static Order order(String id, String status, YearMonth month, int day) {
+        long time = month.atDay(day).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return TestData.order(id, status, time, new OrderItem("I1", "Tea", 2, 1.50));
+    }
+
+    private static Order find(List<Order> orders, String id) {
+        return orders.stream().filter(order -> order.getOrderId().equals(id)).findFirst().orElseThrow();
+    }
+
+    private static List<String> names(List<File> files) {
+        return files.stream().map(File::getName).toList();
+    }
+}
@@ -0,0 +1,80 @@
+package database;
+
+import database.ReceiptExporter.Format;
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptExporterTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2025, 5, 2, 17, 0);
+    private static final List<String> RENDERED = new ArrayList<>();
+
+    private static Path dir;
+
+    @BeforeAll
+    static void saveReceipts() throws Exception {
+        dir = TestData.useDirectory("receipt-export");
+        // Read when ReceiptExporter is loaded; a window smaller than the pool keeps it full
+        System.setProperty("cafe.export.threads", "4");
+        System.setProperty("cafe.export.window", "3");
+        for (int i = 0; i < 500; i++) {
+            Order order = TestData.order("X-" + i, "COMPLETED", 1_000_000L + i,
+                    new OrderItem("I1", "Tea", 1 + i % 7, 1.50), new OrderItem("I2", "Scone", 1, 2.80));
+            assertTrue(ReceiptStore.save(order, i % 4 * 5, TIME.plusSeconds(i)));
+            RENDERED.add(ReceiptTemplate.render(order, i % 4 * 5, TIME.plusSeconds(i)));
+        }
+    }
+
+    @Test
+    void textExportHasEveryReceiptInOrder() throws Exception {
+        List<String> ids = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            ids.add("X-" + i);
+            if (i == 250) {
+                ids.add("no-such-order");
+            }
+            expected.append(i == 0 ? "" : "\n").append(RENDERED.get(i));
+        }
+        List<long[]> progress = new ArrayList<>();
+        Path file = dir.resolve("export.txt");
+
+        ReceiptExporter.Result result = ReceiptExporter.export(ids, file, Format.TEXT,
+                (done, total) -> progress.add(new long[]{done, total}));
+
+        assertEquals(500, result.getExported());
+        assertEquals(1, result.getMissing());
+        assertEquals(expected.toString(), Files.readString(file, StandardCharsets.UTF_8));
+        long[] last = progress.get(progress.size() - 1);
+        assertArrayEquals(new long[]{501, 501}, last);
+        assertEquals(1, progress.get(0)[0]);
+    }
+
+    @Test
+    void spoolExportEndsEveryReceiptWithAFormFeed() throws Exception {
+        Path file = dir.resolve("export.spool");
+        ReceiptExporter.Result result = ReceiptExporter.export(List.of("X-3", "X-1", "X-2"), file, Format.SPOOL, null);
+
+        assertEquals(3, result.getExported());
+        assertEquals(RENDERED.get(3) + "\f" + RENDERED.get(1) + "\f" + RENDERED.get(2) + "\f",
+                Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void emptyExportWritesAnEmptyFile() throws Exception {
+        Path file = dir.resolve("empty.txt");
+        ReceiptExporter.Result result = ReceiptExporter.export(List.of(), file, Format.TEXT, null);
+        assertEquals(0, result.getExported());
+        assertEquals(0, Files.size(file));
+    }
+}
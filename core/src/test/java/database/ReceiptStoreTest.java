@@ -0,0 +1,159 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The receipt archive across restarts. The archive keeps its index in memory
+ * once opened, so every step runs in a JVM of its own and the test only
+ * touches the files in between.
+ */
+class ReceiptStoreTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2025, 4, 1, 8, 30);
+
+    // One run of the application, with small segments that are compressed once full
+    public static class Run {
+        public static void main(String[] args) throws Exception {
+            System.setProperty("cafe.receipts.segmentBytes", "4096");
+            System.setProperty("cafe.receipts.compress", "true");
+            int from = Integer.parseInt(args[1]);
+            int to = Integer.parseInt(args[2]);
+            if (args[0].equals("save")) {
+                double discount = Double.parseDouble(args[3]);
+                for (int i = from; i < to; i++) {
+                    assertTrue(ReceiptStore.save(order(i), discount, TIME.plusMinutes(i)));
+                }
+            }
+
+            // Every receipt up to the last one saved must reprint as it was printed
+            List<String> wrong = new ArrayList<>();
+            int discounted = 0;
+            for (int i = 0; i < to; i++) {
+                ReceiptStore.StoredReceipt receipt = ReceiptStore.load("R-" + i);
+                if (receipt == null
+                        || !receipt.render().equals(ReceiptTemplate.render(order(i), receipt.getDiscount(), TIME.plusMinutes(i)))) {
+                    wrong.add("R-" + i);
+                } else if (receipt.getDiscount() > 0) {
+                    discounted++;
+                }
+            }
+            System.out.println(ReceiptStore.size() + " " + wrong + " " + discounted);
+        }
+    }
+
+    @Test
+    void fullSegmentsAreCompressedAndStillReprinted() throws Exception {
+        Path dir = TestData.useDirectory("receipts-segments").resolve("receipts");
+        assertEquals("300 [] 0", TestData.runJvm(Run.class, "save", "0", "300", "0"));
+        assertTrue(segments(dir, ".segz").size() >= 2);
+        assertEquals(1, segments(dir, ".seg").size());
+
+        // Saved again with a discount, the newer receipt replaces the first
+        assertEquals("300 [] 10", TestData.runJvm(Run.class, "save", "100", "110", "10"));
+        assertEquals("300 [] 10", TestData.runJvm(Run.class, "check", "0", "300"));
+    }
+
+    @Test
+    void recordsMissingFromTheIndexAreIndexedAgain() throws Exception {
+        Path dir = TestData.useDirectory("receipts-index").resolve("receipts");
+        assertEquals("50 [] 0", TestData.runJvm(Run.class, "save", "0", "50", "0"));
+
+        // Lose the last three entries and leave part of one, as a crash while writing them would
+        Path index = dir.resolve("index.dat");
+        List<Long> starts = entryStarts(index);
+        long indexLength = Files.size(index);
+        truncate(index, starts.get(starts.size() - 3) + 5);
+
+        assertEquals("50 [] 0", TestData.runJvm(Run.class, "check", "0", "50"));
+        assertEquals(indexLength, Files.size(index));
+    }
+
+    @Test
+    void recordCutOffByACrashIsDropped() throws Exception {
+        Path dir = TestData.useDirectory("receipts-torn").resolve("receipts");
+        assertEquals("40 [] 0", TestData.runJvm(Run.class, "save", "0", "40", "0"));
+
+        // A record header promising more than was written
+        Path segment = segments(dir, ".seg").get(0);
+        long length = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(25).putInt(0, 500));
+        }
+
+        assertEquals("40 [] 0", TestData.runJvm(Run.class, "check", "0", "40"));
+        assertEquals(length, Files.size(segment));
+        assertEquals("45 [] 0", TestData.runJvm(Run.class, "save", "40", "45", "0"));
+    }
+
+    @Test
+    void receiptsTxtIsImportedIntoAnEmptyArchive() throws Exception {
+        Path dir = TestData.useDirectory("receipts-legacy");
+        // As DatabaseHandler wrote it before the archive, in the platform charset
+        try (PrintWriter writer = new PrintWriter(new FileWriter(dir.resolve("receipts.txt").toFile()))) {
+            for (int i = 0; i < 3; i++) {
+                writer.println("=== NEW RECEIPT ===");
+                writer.println(ReceiptTemplate.render(order(i), 0, TIME.plusMinutes(i)));
+                writer.println("===================");
+                writer.println();
+            }
+        }
+        String output = TestData.runJvm(Run.class, "check", "0", "3");
+        assertTrue(output.startsWith("Imported 3 receipts"), output);
+        assertTrue(output.endsWith("\n3 [] 0"), output);
+        // Imported once; the file is left alone
+        assertEquals("4 [] 0", TestData.runJvm(Run.class, "save", "3", "4", "0"));
+        assertTrue(Files.exists(dir.resolve("receipts.txt")));
+    }
+
+    private static Order order(int i) {
+        long time = TIME.plusMinutes(i).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return TestData.order("R-" + i, "COMPLETED", time,
+                new OrderItem("I1", "Flat White", 1 + i % 3, 3.50),
+                new OrderItem("I2", "Blueberry Muffin", 1, 4.25));
+    }
+
+    private static List<Path> segments(Path dir, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+
+    // Offset of every entry of index.dat: writeUTF order id, then a long location
+    private static List<Long> entryStarts(Path index) throws IOException {
+        byte[] bytes = Files.readAllBytes(index);
+        ByteArrayInputStream entries = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(entries);
+        List<Long> starts = new ArrayList<>();
+        while (entries.available() > 0) {
+            starts.add((long) (bytes.length - entries.available()));
+            in.readUTF();
+            in.readLong();
+        }
+        return starts;
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+}
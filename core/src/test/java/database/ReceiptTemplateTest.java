@@ -0,0 +1,158 @@
+package database;
+
+import models.Money;
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptTemplateTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2025, 3, 7, 9, 5, 2);
+
+    @Test
+    void receiptIsUnchangedLetterForLetter() {
+        Order order = new Order("ORD-1001", "Jane Doe", 12, "sam", "PENDING", Arrays.asList(
+                new OrderItem("I1", "Flat White", 2, 3.50),
+                new OrderItem("I2", "Blueberry Muffin", 1, 2.75),
+                new OrderItem("I3", "Sparkling Water 500ml", 10, 0.10)));
+
+        String expected = ""
+                + "===================================\n"
+                + "           CODEBREW CAFE            \n"
+                + "===================================\n"
+                + "\n"
+                + "Receipt No: ORD-1001\n"
+                + "Date: 07-03-2025 09:05:02\n"
+                + "Staff: sam\n"
+                + "\n"
+                + "Customer: Jane Doe\n"
+                + "Table No: 12\n"
+                + "\n"
+                + "Items:\n"
+                + "Item                 Qty   Price    Total   \n"
+                + "-----------------------------------\n"
+                + "Flat White           2     $3.50    $7.00   \n"
+                + "Blueberry Muffin     1     $2.75    $2.75   \n"
+                + "Sparkling Water 500ml 10    $0.10    $1.00   \n"
+                + "-----------------------------------\n"
+                + "Subtotal:                          $10.75  \n"
+                + "Discount (12.5%):                  $1.34   \n"
+                + "Total:                             $9.41   \n"
+                + "\n"
+                + "===================================\n"
+                + "          Thank you for visiting!          \n"
+                + "          Please come again!          \n"
+                + "===================================\n";
+        assertEquals(expected, ReceiptTemplate.render(order, 12.5, TIME));
+        assertEquals(formatted(order, 12.5, TIME), ReceiptTemplate.render(order, 12.5, TIME));
+    }
+
+    @Test
+    void randomOrdersMatchTheFormattedReceipt() throws Exception {
+        Random random = new Random(21);
+        String[] names = {"Tea", "Café au lait", "Crème brûlée", "日本茶", "Bagel 🥯", "A name well past twenty characters", ""};
+        double[] discounts = {0, 5, 10, 12.5, 33.3, 100};
+        for (int i = 0; i < 2_000; i++) {
+            List<OrderItem> items = new ArrayList<>();
+            for (int line = random.nextInt(12); line >= 0; line--) {
+                items.add(new OrderItem("I" + line, names[random.nextInt(names.length)], 1 + random.nextInt(150),
+                        random.nextInt(1_000_000) / 100.0));
+            }
+            Order order = new Order("ORD-" + i, i % 9 == 0 ? null : "Customer " + i, random.nextInt(40),
+                    "staff" + i % 4, "PENDING", items);
+            double discount = discounts[random.nextInt(discounts.length)];
+            LocalDateTime time = TIME.plusSeconds(random.nextInt(100_000_000));
+
+            String expected = formatted(order, discount, time);
+            assertEquals(expected, ReceiptTemplate.render(order, discount, time), "order " + i);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ReceiptTemplate.write(order, discount, time, bytes);
+            assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), bytes.toByteArray(), "order " + i);
+        }
+    }
+
+    @Test
+    void largeReceiptsGrowTheBuffer() {
+        List<OrderItem> items = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            items.add(new OrderItem("I" + i, "Item " + i, 1, 1.00));
+        }
+        Order large = new Order("ORD-L", "Big Party", 1, "sam", "PENDING", items);
+        assertEquals(formatted(large, 0, TIME), ReceiptTemplate.render(large, 0, TIME));
+
+        // The next receipt on this thread is not left with anything from the large one
+        Order small = new Order("ORD-S", "Solo", 2, "sam", "PENDING", List.of(new OrderItem("I1", "Tea", 1, 2.00)));
+        assertEquals(formatted(small, 0, TIME), ReceiptTemplate.render(small, 0, TIME));
+    }
+
+    /**
+     * The receipt as ReceiptGenerator built it with String.format before the
+     * template, with amounts in cents as since prices became cents. Formatted
+     * with Locale.ROOT: the template always writes a decimal point.
+     */
+    private static String formatted(Order order, double discount, LocalDateTime time) {
+        StringBuilder receipt = new StringBuilder();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
+        Date date = Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+
+        receipt.append("===================================\n");
+        receipt.append("           CODEBREW CAFE            \n");
+        receipt.append("===================================\n\n");
+
+        receipt.append("Receipt No: ").append(order.getOrderId()).append("\n");
+        receipt.append("Date: ").append(dateFormat.format(date)).append("\n");
+        receipt.append("Staff: ").append(order.getStaffName()).append("\n\n");
+
+        receipt.append("Customer: ").append(order.getCustomerName()).append("\n");
+        receipt.append("Table No: ").append(order.getTableNumber()).append("\n\n");
+
+        receipt.append("Items:\n");
+        receipt.append(String.format(Locale.ROOT, "%-20s %-5s %-8s %-8s\n", "Item", "Qty", "Price", "Total"));
+        receipt.append("-----------------------------------\n");
+
+        long subtotal = 0;
+        for (OrderItem item : order.getOrderItems()) {
+            long itemTotal = item.getTotalCents();
+            subtotal += itemTotal;
+            receipt.append(String.format(Locale.ROOT, "%-20s %-5d $%-7.2f $%-7.2f\n",
+                    item.getItemName(), item.getQuantity(), amount(item.getPriceCents()), amount(itemTotal)));
+        }
+
+        receipt.append("-----------------------------------\n");
+        receipt.append(String.format(Locale.ROOT, "%-34s $%-7.2f\n", "Subtotal:", amount(subtotal)));
+
+        if (discount > 0) {
+            long discountAmount = Money.percentOf(subtotal, discount);
+            receipt.append(String.format(Locale.ROOT, "%-34s $%-7.2f\n", "Discount (" + discount + "%):",
+                    amount(discountAmount)));
+            receipt.append(String.format(Locale.ROOT, "%-34s $%-7.2f\n", "Total:", amount(subtotal - discountAmount)));
+        } else {
+            receipt.append(String.format(Locale.ROOT, "%-34s $%-7.2f\n", "Total:", amount(subtotal)));
+        }
+
+        receipt.append("\n===================================\n");
+        receipt.append("          Thank you for visiting!          \n");
+        receipt.append("          Please come again!          \n");
+        receipt.append("===================================\n");
+
+        return receipt.toString();
+    }
+
+    private static BigDecimal amount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
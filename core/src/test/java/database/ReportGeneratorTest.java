@@ -0,0 +1,34 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportGeneratorTest {
+    @Test
+    void itemsAreCountedByNameAcrossOrders() {
+        List<Order> orders = List.of(
+                TestData.order("G-1", "COMPLETED", 0, new OrderItem("I1", "Tea", 2, 1.50), new OrderItem("I2", "Cake", 1, 3.00)),
+                TestData.order("G-2", "COMPLETED", 0, new OrderItem("I1", "Tea", 1, 1.50)),
+                TestData.order("G-3", "PENDING", 0, new OrderItem("I2", "Cake", 5, 3.00)),
+                // The same item id under a new name counts for the new name
+                TestData.order("G-4", "COMPLETED", 0, new OrderItem("I1", "Green Tea", 4, 1.50)),
+                // A different id with a known name adds to that name
+                TestData.order("G-5", "COMPLETED", 0, new OrderItem("I9", "Tea", 2, 1.50)));
+
+        List<Map.Entry<String, Integer>> ranking = ReportGenerator.getAllItemSalesRanking(orders);
+        assertEquals(List.of(Map.entry("Cake", 6), Map.entry("Tea", 5), Map.entry("Green Tea", 4)),
+                ranking.stream().map(entry -> Map.entry(entry.getKey(), entry.getValue())).toList());
+
+        assertEquals("Tea", ReportGenerator.findTopSellingItem(orders));
+        assertEquals(List.of(Map.entry("Tea", 5L), Map.entry("Green Tea", 4L)),
+                ReportGenerator.getTopSellingItems(orders, 2).stream()
+                        .map(entry -> Map.entry(entry.getKey(), entry.getValue())).toList());
+        assertEquals("No Items Found", ReportGenerator.getTopSellingItem(List.of()));
+    }
+}
@@ -0,0 +1,157 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The saved totals across restarts: each step runs in a JVM of its own on the
+ * same data directory and prints the running totals next to the same reports
+ * computed from the whole journal.
+ */
+class SalesAggregatesTest {
+    // 2025-06-15
+    private static final long TIME = 1_749_945_600_000L;
+
+    private static Path dir;
+
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        dir = TestData.useDirectory("sales-aggregates");
+    }
+
+    // One run of the application
+    public static class Run {
+        public static void main(String[] args) throws Exception {
+            int from = Integer.parseInt(args[1]);
+            int to = Integer.parseInt(args[2]);
+            switch (args[0]) {
+                case "commit":
+                    // Through the running totals, as the order service does
+                    SalesAggregates.ensureLoaded();
+                    for (int i = from; i < to; i++) {
+                        Order order = order(i, i % 3 == 0 ? "PENDING" : "COMPLETED", 1 + i % 4);
+                        assertTrue(SalesAggregates.commit(order, () -> OrderStore.append(order)));
+                    }
+                    break;
+                case "cancel":
+                    // Orders still open are closed through the running totals
+                    SalesAggregates.ensureLoaded();
+                    for (int i = from; i < to; i += 3) {
+                        Order order = order(i, "CANCELLED", 1 + i % 4);
+                        assertTrue(SalesAggregates.commit(order, () -> OrderStore.append(order)));
+                    }
+                    break;
+                case "update":
+                    // Straight to the journal while the totals are not loaded, e.g. by another till
+                    for (int i = from; i < to; i += 3) {
+                        assertTrue(OrderStore.append(order(i, "COMPLETED", 5)));
+                    }
+                    break;
+                case "spread":
+                    // Over several months and staff, through the running totals
+                    SalesAggregates.ensureLoaded();
+                    String[] statuses = {"PENDING", "COMPLETED", "CANCELLED"};
+                    for (int i = from; i < to; i++) {
+                        Order order = new Order("M-" + i, "Customer", 1, "staff" + i % 3, statuses[i % 3],
+                                List.of(new OrderItem("I" + i % 7, "Item" + i % 7, 1 + i % 2, 2.25)));
+                        order.setOrderTime(new Date(TIME + i * 20L * 24 * 60 * 60 * 1000));
+                        assertTrue(SalesAggregates.commit(order, () -> OrderStore.append(order)));
+                    }
+                    break;
+                case "totals":
+                    SalesAggregates.ensureLoaded();
+                    System.out.println(SalesAggregates.getMonthlyRevenue() + " " + new TreeMap<>(SalesAggregates.getStaffRevenue())
+                            + " " + new TreeMap<>(SalesAggregates.getStaffOrderCounts())
+                            + " " + new TreeMap<>(SalesAggregates.getItemQuantities()));
+                    break;
+                default:
+                    break;
+            }
+            List<Order> orders = OrderStore.readAll();
+            System.out.println(SalesAggregates.getTotalRevenue() + " " + ReportGenerator.calculateTotalRevenue(orders)
+                    + " " + SalesAggregates.getTopSellingItem() + " " + ReportGenerator.findTopSellingItem(orders)
+                    + " " + SalesAggregates.getMonthlyRevenue(YearMonth.of(2025, 6)));
+        }
+
+        private static Order order(int i, String status, int quantity) {
+            return TestData.order("S-" + i, status, TIME + i,
+                    new OrderItem("I" + i % 5, "Item" + i % 5, quantity + i % 5, 1.50));
+        }
+    }
+
+    @Test
+    void totalsFollowTheJournalAcrossRestarts() throws Exception {
+        // Every third order is left PENDING
+        assertTotalsMatch(TestData.runJvm(Run.class, "commit", "0", "60"));
+        Path saved = dir.resolve("sales_aggregates.dat");
+        long withOpenOrders = Files.size(saved);
+
+        // Open orders completed while the totals were not loaded, e.g. by another till
+        TestData.runJvm(Run.class, "update", "0", "30");
+        assertTotalsMatch(TestData.runJvm(Run.class, "report", "0", "0"));
+
+        // Cancelling the rest replaces what they added as PENDING orders
+        assertTotalsMatch(TestData.runJvm(Run.class, "cancel", "30", "60"));
+        assertTotalsMatch(TestData.runJvm(Run.class, "report", "0", "0"));
+
+        // Closed orders are dropped from the saved totals, which no longer grow with the history
+        long closed = Files.size(saved);
+        assertTrue(closed < withOpenOrders, closed + " >= " + withOpenOrders);
+        assertTotalsMatch(TestData.runJvm(Run.class, "commit", "60", "160"));
+        assertTotalsMatch(TestData.runJvm(Run.class, "cancel", "60", "160"));
+        assertEquals(closed, Files.size(saved));
+    }
+
+    @Test
+    void rewrittenJournalIsNotTakenForTheSavedOne() throws Exception {
+        TestData.runJvm(Run.class, "commit", "100", "140");
+
+        // Same length, different contents just before the saved watermark
+        Path journal = Paths.get(OrderStore.partitionFile(YearMonth.of(2025, 6)));
+        String text = Files.readString(journal, Charset.defaultCharset());
+        int price = text.lastIndexOf(":1.50");
+        assertTrue(price > 0);
+        Files.writeString(journal, text.substring(0, price) + ":9.50" + text.substring(price + 5), Charset.defaultCharset());
+
+        String report = TestData.runJvm(Run.class, "report", "0", "0");
+        assertTotalsMatch(report);
+    }
+
+    @Test
+    void rebuiltTotalsMatchTheRunningOnes() throws Exception {
+        // On a journal of its own, as the other steps only expect orders of June
+        Path spread = TestData.useDirectory("sales-aggregates-rebuild");
+        try {
+            TestData.runJvm(Run.class, "spread", "0", "40");
+            String running = TestData.runJvm(Run.class, "totals", "0", "0");
+            assertTrue(running.contains("2025-07="), running);
+
+            // Without the saved totals they are summed again from the whole journal
+            Files.delete(spread.resolve("sales_aggregates.dat"));
+            assertEquals(running, TestData.runJvm(Run.class, "totals", "0", "0"));
+        } finally {
+            System.setProperty("cafe.data.dir", dir.toString());
+        }
+    }
+
+    // Running totals and the reports over the whole journal agree
+    private static void assertTotalsMatch(String output) {
+        String[] values = output.split(" ");
+        assertEquals(values[1], values[0], output);
+        assertEquals(values[3], values[2], output);
+        assertEquals(values[0], values[4], output);
+    }
+}
@@ -0,0 +1,102 @@
+package database;
+
+import database.SessionRegistry.EndReason;
+import database.SessionRegistry.Session;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionRegistryTest {
+    private final List<String> ended = new ArrayList<>();
+
+    @BeforeAll
+    static void shortTimeout() {
+        // Read when SessionRegistry is loaded; the sweeper may also end the idle session on its own
+        System.setProperty("cafe.session.idleTimeoutMs", "1000");
+    }
+
+    @BeforeEach
+    void listen() {
+        SessionRegistry.setEndListener((session, reason) -> {
+            synchronized (ended) {
+                ended.add(session.getUsername() + "@" + session.getTill() + " " + reason);
+            }
+        });
+    }
+
+    @Test
+    void loggingInAgainAtATillEndsTheEarlierSession() {
+        Session first = SessionRegistry.open("amy", "till-a");
+        Session other = SessionRegistry.open("amy", "till-b");
+        Session second = SessionRegistry.open("amy", "till-a");
+
+        assertNull(SessionRegistry.get(first.getId()));
+        assertSame(second, SessionRegistry.find("amy", "till-a"));
+        assertSame(other, SessionRegistry.find("amy", "till-b"));
+        assertEquals(List.of("amy@till-a REPLACED"), ended);
+
+        assertSame(second, SessionRegistry.close(second.getId()));
+        SessionRegistry.close(other.getId());
+        assertNull(SessionRegistry.find("amy", "till-a"));
+    }
+
+    @Test
+    void aSessionEndsOnlyOnce() throws Exception {
+        Session session = SessionRegistry.open("ben");
+        assertSame(session, SessionRegistry.find("ben", SessionRegistry.TILL));
+        long endedBefore = SessionRegistry.endedCount();
+
+        // Logout pressed twice, from two threads
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Session>> closes = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                closes.add(pool.submit(() -> {
+                    start.await();
+                    return SessionRegistry.close(session.getId());
+                }));
+            }
+            start.countDown();
+            int closed = 0;
+            for (Future<Session> close : closes) {
+                closed += close.get() == null ? 0 : 1;
+            }
+            assertEquals(1, closed);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(endedBefore + 1, SessionRegistry.endedCount());
+        assertEquals(List.of("ben@" + SessionRegistry.TILL + " LOGOUT"), ended);
+        assertNull(SessionRegistry.closeUser("ben"));
+        assertNull(SessionRegistry.close(null));
+    }
+
+    @Test
+    void idleSessionsAreSweptUnlessTouched() throws Exception {
+        Session idle = SessionRegistry.open("cat", "till-c");
+        Session busy = SessionRegistry.open("dan", "till-c");
+        long timedOut = SessionRegistry.timedOutCount();
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(250);
+            SessionRegistry.touch(busy.getId());
+        }
+        SessionRegistry.sweep();
+
+        assertNull(SessionRegistry.get(idle.getId()));
+        assertSame(busy, SessionRegistry.get(busy.getId()));
+        assertEquals(timedOut + 1, SessionRegistry.timedOutCount());
+        assertEquals(List.of("cat@till-c IDLE_TIMEOUT"), ended);
+        assertTrue(SessionRegistry.averageDurationMillis() > 0);
+        SessionRegistry.close(busy.getId());
+    }
+}
@@ -0,0 +1,126 @@
+package database;
+
+import models.MenuItem;
+import models.OrderItem;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockLedgerTest {
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        TestData.useDirectory("stock-ledger");
+    }
+
+    @BeforeEach
+    void writeMenu() {
+        DatabaseHandler.saveMenuItems(List.of(
+                new MenuItem("I1", "Tea", 1.50, "Drinks", 1000),
+                new MenuItem("I2", "Cake", 3.00, "Food", 5)));
+        MenuCatalog.reload();
+    }
+
+    @Test
+    void reservationTakesAllLinesOrNone() {
+        assertNull(StockLedger.reserve(List.of(new OrderItem("I1", "Tea", 3, 1.50), new OrderItem("I2", "Cake", 6, 3.00))));
+        assertEquals(1000, stock("I1"));
+        assertEquals(5, stock("I2"));
+
+        // Lines for the same item are added up
+        assertNull(StockLedger.reserve(List.of(new OrderItem("I2", "Cake", 3, 3.00), new OrderItem("I2", "Cake", 3, 3.00))));
+        assertEquals(5, stock("I2"));
+    }
+
+    @Test
+    void committedStockSurvivesReload() {
+        StockLedger.Reservation reservation = StockLedger.reserve(List.of(new OrderItem("I1", "Tea", 3, 1.50),
+                new OrderItem("I2", "Cake", 2, 3.00)));
+        assertNotNull(reservation);
+        reservation.commit();
+        reservation.commit();
+
+        MenuCatalog.reload();
+        assertEquals(997, stock("I1"));
+        assertEquals(3, stock("I2"));
+    }
+
+    @Test
+    void openReservationIsNotPersisted() {
+        StockLedger.Reservation reservation = StockLedger.reserve(List.of(new OrderItem("I2", "Cake", 4, 3.00)));
+        assertNotNull(reservation);
+        assertEquals(1, stock("I2"));
+        reservation.release();
+        assertEquals(5, stock("I2"));
+
+        MenuCatalog.reload();
+        assertEquals(5, stock("I2"));
+    }
+
+    @Test
+    void releasingACommittedOrderGivesStockBackForGood() {
+        List<OrderItem> items = List.of(new OrderItem("I2", "Cake", 2, 3.00));
+        StockLedger.reserve(items).commit();
+        MenuCatalog.reload();
+        assertEquals(3, stock("I2"));
+
+        // After a restart the order is only known from the journal
+        StockLedger.Reservation taken = StockLedger.taken(items);
+        taken.release();
+        taken.release();
+        assertEquals(5, stock("I2"));
+        MenuCatalog.reload();
+        assertEquals(5, stock("I2"));
+    }
+
+    @Test
+    void savingStockFoldsChangesIntoTheMenu() throws Exception {
+        StockLedger.reserve(List.of(new OrderItem("I1", "Tea", 10, 1.50))).commit();
+        MenuCatalog.saveStock();
+
+        assertEquals(0, DatabaseHandler.loadStockChanges(new HashMap<>()));
+        MenuCatalog.reload();
+        assertEquals(990, stock("I1"));
+    }
+
+    @Test
+    void concurrentTillsNeverOversell() throws Exception {
+        ExecutorService tills = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> sold = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            sold.add(tills.submit(() -> {
+                int count = 0;
+                for (int i = 0; i < 200; i++) {
+                    StockLedger.Reservation reservation = StockLedger.reserve(List.of(new OrderItem("I1", "Tea", 1, 1.50)));
+                    if (reservation != null) {
+                        reservation.commit();
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> future : sold) {
+            total += future.get();
+        }
+        tills.shutdown();
+
+        assertEquals(1000, total);
+        assertEquals(0, stock("I1"));
+        MenuCatalog.reload();
+        assertEquals(0, stock("I1"));
+    }
+
+    private static int stock(String id) {
+        return MenuCatalog.getItem(id).getStock();
+    }
+}
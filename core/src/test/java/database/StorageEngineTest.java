@@ -0,0 +1,180 @@
+package database;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageEngineTest {
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final String NL = System.lineSeparator();
+
+    private static Path dir;
+    private static long walAfterRecovery;
+
+    /**
+     * Leave a log behind as a crash would, then load the engine so it replays
+     * it. The records are written byte by byte here, so a change to the log
+     * format that old logs can no longer be read with fails this test.
+     */
+    @BeforeAll
+    static void crashAndRecover() throws Exception {
+        dir = TestData.useDirectory("storage-engine");
+        Files.writeString(path("replaced.txt"), "old" + NL, CHARSET);
+        Files.writeString(path("applied.txt"), "one" + NL, CHARSET);
+        Files.writeString(path("partial.txt"), "keep" + NL + "par", CHARSET);
+
+        ByteArrayOutputStream wal = new ByteArrayOutputStream();
+        wal.write(record(change(1, "replaced.txt", 0, "x", "y")));
+        // Already in the file before the crash, then one that is not
+        wal.write(record(change(2, "applied.txt", 0, "one")));
+        wal.write(record(change(2, "applied.txt", bytes("one" + NL), "two")));
+        // Cut off halfway through writing it to the file
+        wal.write(record(change(2, "partial.txt", bytes("keep" + NL), "partial")));
+        wal.write(record(replaceAll(change(1, "first.txt", 0, "1"), change(1, "second.txt", 0, "2"))));
+        // Torn while being logged: never committed
+        byte[] torn = record(change(1, "torn.txt", 0, "never"));
+        wal.write(torn, 0, torn.length / 2);
+        Files.write(path("storage.wal"), wal.toByteArray());
+
+        // Loading the class replays the log
+        StorageEngine.view(path("replaced.txt").toString());
+        walAfterRecovery = Files.size(path("storage.wal"));
+    }
+
+    @Test
+    void snapshotsAreReplayed() throws Exception {
+        assertEquals("x" + NL + "y" + NL, read("replaced.txt"));
+    }
+
+    @Test
+    void appendsAlreadyAppliedAreSkipped() throws Exception {
+        assertEquals("one" + NL + "two" + NL, read("applied.txt"));
+    }
+
+    @Test
+    void partlyAppliedAppendIsCutBackAndRedone() throws Exception {
+        assertEquals("keep" + NL + "partial" + NL, read("partial.txt"));
+    }
+
+    @Test
+    void multiFileReplaceIsReplayedWhole() throws Exception {
+        assertEquals("1" + NL, read("first.txt"));
+        assertEquals("2" + NL, read("second.txt"));
+    }
+
+    @Test
+    void tornRecordIsDroppedAndLogEmptied() throws Exception {
+        assertFalse(Files.exists(path("torn.txt")));
+        assertEquals(0, walAfterRecovery);
+    }
+
+    @Test
+    void readersSeeCommittedDataBeforeCheckpoint() throws Exception {
+        String file = path("live.txt").toString();
+        StorageEngine.replace(file, Arrays.asList("a", "b"));
+        StorageEngine.append(file, "c");
+
+        assertEquals(Arrays.asList("a", "b", "c"), lines(file));
+        StorageEngine.View view = StorageEngine.view(file);
+        assertEquals(0, view.fileLength);
+        assertEquals("a" + NL + "b" + NL + "c" + NL, new String(view.pending, CHARSET));
+
+        StorageEngine.checkpoint();
+        assertEquals("a" + NL + "b" + NL + "c" + NL, read("live.txt"));
+        view = StorageEngine.view(file);
+        assertEquals(Files.size(path("live.txt")), view.fileLength);
+        assertEquals(0, view.pending.length);
+
+        // Appends after a checkpoint follow the file on disk
+        StorageEngine.append(file, "d");
+        view = StorageEngine.view(file);
+        assertEquals(Files.size(path("live.txt")), view.fileLength);
+        assertEquals("d" + NL, new String(view.pending, CHARSET));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), lines(file));
+    }
+
+    @Test
+    void replaceOfSeveralFilesIsReadTogether() throws Exception {
+        String menu = path("menu.txt").toString();
+        String stock = path("stock.txt").toString();
+        StorageEngine.append(stock, "I1:-2");
+        StorageEngine.replace(Map.of(menu, List.of("I1,Tea"), stock, List.of()));
+
+        assertEquals(List.of("I1,Tea"), lines(menu));
+        assertEquals(List.of(), lines(stock));
+    }
+
+    private static List<String> lines(String file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = StorageEngine.open(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static Path path(String name) {
+        return dir.resolve(name);
+    }
+
+    private static String read(String name) throws IOException {
+        return Files.readString(path(name), CHARSET);
+    }
+
+    private static long bytes(String text) {
+        return text.getBytes(CHARSET).length;
+    }
+
+    // One change: op, file, offset, lines
+    private static byte[] change(int op, String name, long offset, String... lines) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(op);
+        out.writeUTF(path(name).toString());
+        out.writeLong(offset);
+        out.writeInt(lines.length);
+        for (String line : lines) {
+            byte[] text = line.getBytes(CHARSET);
+            out.writeInt(text.length);
+            out.write(text);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] replaceAll(byte[]... changes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(3);
+        out.writeInt(changes.length);
+        for (byte[] change : changes) {
+            out.write(change);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // Length, CRC32 of the body, body
+    private static byte[] record(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return ByteBuffer.allocate(12 + body.length).putInt(body.length).putLong(crc.getValue()).put(body).array();
+    }
+}
@@ -0,0 +1,72 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Shared set-up for the storage and service tests.
+ *
+ * The storage classes read cafe.data.dir once, when they are first loaded, and
+ * surefire runs every test class in a JVM of its own, so a test class calls
+ * {@link #useDirectory(String)} before it touches any of them.
+ */
+public final class TestData {
+    private TestData() {
+    }
+
+    // Point cafe.data.dir at an empty directory of this name and return it
+    public static Path useDirectory(String name) throws IOException {
+        Path dir = Paths.get(System.getProperty("cafe.test.dir", "target/test-data"), name).toAbsolutePath();
+        if (Files.exists(dir)) {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+        Files.createDirectories(dir);
+        System.setProperty("cafe.data.dir", dir.toString());
+        return dir;
+    }
+
+    /**
+     * Run the main method of a class in a JVM of its own on the same data
+     * directory, as the application would run after a restart. Returns what it
+     * printed; fails if it did not exit normally.
+     */
+    public static String runJvm(Class<?> main, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("surefire.test.class.path", System.getProperty("java.class.path")));
+        command.add("-Dcafe.data.dir=" + System.getProperty("cafe.data.dir"));
+        command.add(main.getName());
+        command.addAll(Arrays.asList(args));
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String output = new String(process.getInputStream().readAllBytes(), Charset.defaultCharset()).trim();
+        int exit = process.waitFor();
+        if (exit != 0) {
+            throw new AssertionError(main.getSimpleName() + " exited with " + exit + ": " + output);
+        }
+        return output;
+    }
+
+    public static Order order(String id, String status, long time, OrderItem... items) {
+        Order order = new Order(id, "Customer " + id, 4, "staff", status, Arrays.asList(items));
+        order.setOrderTime(new Date(time));
+        return order;
+    }
+}
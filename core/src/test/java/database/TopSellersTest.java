@@ -0,0 +1,115 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopSellersTest {
+    @Test
+    void exactTopMatchesASortOfAllCounts() {
+        TopSellers top = TopSellers.exact(5);
+        Map<String, Long> counts = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            String item = "Item " + random.nextInt(40);
+            // Mostly sales, sometimes a cancelled order taking some back
+            long quantity = random.nextInt(10) < 8 ? 1 + random.nextInt(3) : -random.nextInt(5);
+            top.add(item, quantity);
+            counts.put(item, Math.max(0, counts.getOrDefault(item, 0L) + quantity));
+            if (i % 500 == 0) {
+                assertEquals(expectedTop(counts, 5), top.top(5));
+            }
+        }
+        assertEquals(expectedTop(counts, 5), top.top(5));
+        assertEquals(expectedTop(counts, 3), top.top(3));
+        counts.values().removeIf(count -> count == 0);
+        assertEquals(counts, top.counts());
+    }
+
+    @Test
+    void takingBackTheBestSellerLetsAnotherOvertakeIt() {
+        TopSellers top = TopSellers.exact(1);
+        top.add("Tea", 10);
+        top.add("Cake", 6);
+        assertEquals("Tea", top.topItem("None"));
+
+        // Cake never entered the heap, but the counts still know it
+        top.add("Tea", -5);
+        assertEquals("Cake", top.topItem("None"));
+        top.add("Cake", -6);
+        top.add("Tea", -5);
+        assertEquals("None", top.topItem("None"));
+    }
+
+    @Test
+    void equalCountsAreOrderedByName() {
+        TopSellers top = TopSellers.exact(2);
+        top.add("Scone", 3);
+        top.add("Coffee", 3);
+        top.add("Bagel", 3);
+        assertEquals(List.of(Map.entry("Bagel", 3L), Map.entry("Coffee", 3L)), top.top(5));
+    }
+
+    @Test
+    void sketchNeverUndercountsAndStaysWithinItsBound() {
+        double epsilon = 0.001;
+        TopSellers top = TopSellers.approximate(3, epsilon, 0.01);
+        assertFalse(top.isExact());
+        Map<String, Long> counts = new HashMap<>();
+        Random random = new Random(7);
+        long total = 0;
+        for (int i = 0; i < 50_000; i++) {
+            // A few items sell far more than the long tail
+            String item = random.nextInt(4) == 0 ? "Hot " + random.nextInt(3) : "Tail " + random.nextInt(5_000);
+            top.add(item, 1);
+            counts.merge(item, 1L, Long::sum);
+            total++;
+        }
+        int over = 0;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            long estimate = top.count(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), entry.getKey());
+            if (estimate > entry.getValue() + epsilon * total) {
+                over++;
+            }
+        }
+        // The bound holds with probability 1 - delta per item
+        assertTrue(over <= counts.size() / 50, over + " items over the bound");
+        assertTrue(top.counts().isEmpty());
+
+        List<String> names = new ArrayList<>();
+        top.top(3).forEach(entry -> names.add(entry.getKey()));
+        names.sort(null);
+        assertEquals(List.of("Hot 0", "Hot 1", "Hot 2"), names);
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        TopSellers top = TopSellers.exact(3);
+        top.add("Tea", 4);
+        top.clear();
+        assertEquals(0, top.count("Tea"));
+        assertTrue(top.top(3).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> TopSellers.exact(0));
+        assertThrows(IllegalArgumentException.class, () -> TopSellers.approximate(3, 0, 0.1));
+    }
+
+    private static List<Map.Entry<String, Long>> expectedTop(Map<String, Long> counts, int n) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            if (entry.getValue() > 0) {
+                entries.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        entries.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? a.getKey().compareTo(b.getKey())
+                : Long.compare(b.getValue(), a.getValue()));
+        return entries.subList(0, Math.min(n, entries.size()));
+    }
+}
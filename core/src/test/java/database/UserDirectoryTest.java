@@ -0,0 +1,124 @@
+package database;
+
+import models.Admin;
+import models.Staff;
+import models.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserDirectoryTest {
+    @BeforeAll
+    static void useDirectory() throws Exception {
+        TestData.useDirectory("user-directory");
+        // Read when UserDirectory is loaded; kept low so the tests stay quick
+        System.setProperty("cafe.auth.iterations", "1000");
+    }
+
+    @Test
+    void plaintextPasswordsAreHashedOnLoad() {
+        DatabaseHandler.saveUsers(List.of(new Admin("admin", "secret"), new Staff("sam", "pass word")));
+        UserDirectory.load();
+
+        for (User user : DatabaseHandler.loadUsers()) {
+            assertTrue(user.getPassword().startsWith("pbkdf2$1000$"), user.getPassword());
+        }
+        User sam = UserDirectory.authenticate("sam", "pass word");
+        assertNotNull(sam);
+        assertEquals("STAFF", sam.getRole());
+        assertNull(UserDirectory.authenticate("sam", "secret"));
+        assertNull(UserDirectory.authenticate("nobody", "secret"));
+        assertNotNull(UserDirectory.authenticate("admin", "secret"));
+    }
+
+    @Test
+    void weakerHashIsRedoneAtTheNextLogin() {
+        String weak = pbkdf2("latte", 500);
+        DatabaseHandler.saveUsers(List.of(new Staff("olga", weak)));
+        // A wrong password leaves it alone
+        assertNull(UserDirectory.authenticate("olga", "mocha"));
+        assertEquals(weak, stored("olga"));
+
+        assertNotNull(UserDirectory.authenticate("olga", "latte"));
+        String upgraded = stored("olga");
+        assertTrue(upgraded.startsWith("pbkdf2$1000$"), upgraded);
+        assertTrue(UserDirectory.verify("latte", upgraded));
+        assertNotNull(UserDirectory.authenticate("olga", "latte"));
+        assertEquals(upgraded, stored("olga"));
+    }
+
+    @Test
+    void concurrentLoginsUpgradeOnce() throws Exception {
+        DatabaseHandler.saveUsers(List.of(new Staff("kim", pbkdf2("flat white", 500)), new Admin("root", "admin")));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<User>> logins = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                logins.add(pool.submit(() -> UserDirectory.authenticate("kim", "flat white")));
+            }
+            for (Future<User> login : logins) {
+                assertNotNull(login.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(stored("kim").startsWith("pbkdf2$1000$"));
+        // The other users were saved along with it
+        assertNotNull(UserDirectory.authenticate("root", "admin"));
+    }
+
+    @Test
+    void changedPasswordIsNotAnsweredFromTheLoginCache() {
+        DatabaseHandler.saveUsers(List.of(new Staff("lee", UserDirectory.hashPassword("old"))));
+        assertNotNull(UserDirectory.authenticate("lee", "old"));
+        assertNotNull(UserDirectory.authenticate("lee", "old"));
+
+        DatabaseHandler.saveUsers(List.of(new Staff("lee", UserDirectory.hashPassword("new"))));
+        assertNull(UserDirectory.authenticate("lee", "old"));
+        assertNotNull(UserDirectory.authenticate("lee", "new"));
+    }
+
+    @Test
+    void hashesAreSaltedAndCheckedStrictly() {
+        String first = UserDirectory.hashPassword("tea");
+        assertNotEquals(first, UserDirectory.hashPassword("tea"));
+        assertTrue(UserDirectory.verify("tea", first));
+        assertFalse(UserDirectory.verify("Tea", first));
+        assertFalse(UserDirectory.verify("tea", "pbkdf2$1000$not-base64!$x"));
+        assertFalse(UserDirectory.verify("tea", "pbkdf2$1000"));
+        assertFalse(UserDirectory.verify(null, first));
+        // Plaintext left from before hashing still compares
+        assertTrue(UserDirectory.verify("tea", "tea"));
+        assertFalse(UserDirectory.isHashed("tea"));
+    }
+
+    private static String stored(String username) {
+        return DatabaseHandler.loadUsers().stream()
+                .filter(user -> user.getUsername().equals(username))
+                .findFirst().orElseThrow().getPassword();
+    }
+
+    // A hash in the stored format with the given iterations
+    private static String pbkdf2(String password, int iterations) {
+        byte[] salt = new byte[16];
+        salt[0] = 7;
+        try {
+            byte[] hash = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+                    .generateSecret(new PBEKeySpec(password.toCharArray(), salt, iterations, 256)).getEncoded();
+            Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+            return "pbkdf2$" + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
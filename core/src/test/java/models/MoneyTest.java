@@ -0,0 +1,77 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+    @Test
+    void parseRoundsHalfUpToTheCent() {
+        assertEquals(250, Money.parse("2.5"));
+        assertEquals(250, Money.parse(" 2.50 "));
+        assertEquals(300, Money.parse("3"));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(120, Money.parse("+1.2"));
+        assertEquals(101, Money.parse("1.005"));
+        assertEquals(199, Money.parse("1.9949"));
+        assertEquals(200, Money.parse("1.995"));
+        assertEquals(-101, Money.parse("-1.005"));
+        assertEquals(10_000, Money.parse("1e2"));
+        for (String bad : new String[]{"", ".", "-", "abc", "1.2.3", "1,50"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parse(bad), bad);
+        }
+    }
+
+    @Test
+    void parseAgreesWithBigDecimal() {
+        Random random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            StringBuilder text = new StringBuilder(random.nextBoolean() ? "-" : "").append(random.nextInt(100_000)).append('.');
+            for (int digits = 1 + random.nextInt(5); digits > 0; digits--) {
+                text.append(random.nextInt(10));
+            }
+            long expected = new BigDecimal(text.toString()).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            // BigDecimal rounds negative halves away from zero too
+            assertEquals(expected, Money.parse(text.toString()), text.toString());
+        }
+    }
+
+    @Test
+    void formatKeepsTwoDecimals() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("2.50", Money.format(250));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("-12.30", Money.format(-1230));
+        assertEquals("Total: 1234.56", Money.appendTo(new StringBuilder("Total: "), 123_456).toString());
+        assertEquals(123_456, Money.parse(Money.format(123_456)));
+    }
+
+    @Test
+    void sumsInCentsAreExact() {
+        // Ten cents a thousand times drifts as doubles but not as cents
+        List<OrderItem> items = new ArrayList<>(Collections.nCopies(1_000, new OrderItem("I1", "Mint", 1, 0.10)));
+        Order order = new Order("O-1", "Customer", 1, "staff", "PENDING", items);
+        assertEquals(10_000, order.calculateTotalCents());
+        assertEquals(100.0, order.calculateTotal());
+
+        assertEquals(333, new OrderItem("I2", "Bun", 3, 1.11).getTotalCents());
+        assertEquals(30, Money.fromDouble(0.1 + 0.2));
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE / 2, 3));
+    }
+
+    @Test
+    void percentagesRoundHalfUp() {
+        assertEquals(101, Money.percentOf(1005, 10));
+        assertEquals(904, Money.discounted(1005, 10));
+        assertEquals(0, Money.percentOf(4, 10));
+        assertEquals(1, Money.percentOf(5, 10));
+    }
+}
@@ -0,0 +1,128 @@
+package service;
+
+import database.DatabaseHandler;
+import database.MenuCatalog;
+import database.ReceiptStore;
+import database.TestData;
+import models.MenuItem;
+import models.Order;
+import models.OrderItem;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderServiceTest {
+    @BeforeAll
+    static void writeMenu() throws Exception {
+        TestData.useDirectory("order-service");
+        DatabaseHandler.saveMenuItems(List.of(
+                new MenuItem("I1", "Tea", 1.50, "Drinks", 100),
+                new MenuItem("I2", "Cake", 3.00, "Food", 10)));
+        MenuCatalog.reload();
+    }
+
+    // One run of the application: place, complete or cancel an order, then print the stock of I1
+    public static class Run {
+        public static void main(String[] args) throws Exception {
+            Order order = order(args[1], 5, 0);
+            try {
+                switch (args[0]) {
+                    case "place": OrderService.placeOrder(order); break;
+                    case "complete": OrderService.completeOrder(order, 0); break;
+                    case "cancel": OrderService.cancelOrder(order); break;
+                    default: break;
+                }
+            } catch (OrderException e) {
+                System.out.print("refused ");
+            }
+            System.out.println(MenuCatalog.getItem("I1").getStock());
+        }
+    }
+
+    @Test
+    void placingTakesStockOnceAndCompletingPrintsTheReceipt() throws Exception {
+        Order order = order("O-1", 2, 1);
+        OrderService.placeOrder(order);
+        assertEquals("PENDING", order.getStatus());
+        assertEquals(98, stock("I1"));
+        assertEquals(9, stock("I2"));
+        assertThrows(OrderException.class, () -> OrderService.placeOrder(order("O-1", 2, 1)));
+
+        String receipt = OrderService.completeOrder(order, 10);
+        assertEquals("COMPLETED", order.getStatus());
+        assertEquals(98, stock("I1"));
+        assertTrue(receipt.contains("Discount (10.0%):"), receipt);
+        assertEquals(receipt, ReceiptStore.reprint("O-1"));
+
+        OrderException error = assertThrows(OrderException.class, () -> OrderService.cancelOrder(order));
+        assertEquals("Order O-1 is already completed.", error.getMessage());
+    }
+
+    @Test
+    void completingAnOrderNeverPlacedTakesItsStock() throws Exception {
+        int before = stock("I2");
+        OrderService.completeOrder(order("O-2", 0, 2), 0);
+        assertEquals(before - 2, stock("I2"));
+    }
+
+    @Test
+    void cancellingAPlacedOrderGivesTheStockBack() throws Exception {
+        int before = stock("I2");
+        Order order = order("O-3", 0, 3);
+        OrderService.placeOrder(order);
+        assertEquals(before - 3, stock("I2"));
+        OrderService.cancelOrder(order);
+        assertEquals(before, stock("I2"));
+        assertThrows(OrderException.class, () -> OrderService.completeOrder(order, 0));
+
+        // Never placed, so nothing to give back
+        OrderService.cancelOrder(order("O-4", 0, 3));
+        assertEquals(before, stock("I2"));
+    }
+
+    @Test
+    void ordersThatCannotBeSuppliedAreRefused() {
+        OrderException error = assertThrows(OrderException.class,
+                () -> OrderService.placeOrder(order("O-5", 1, 50)));
+        assertTrue(error.getMessage().contains("Cake (Available: "), error.getMessage());
+        assertEquals(List.of("Scone (not available)"),
+                OrderService.findShortages(TestData.order("O-6", "PENDING", 1, new OrderItem("I9", "Scone", 1, 2.00))));
+
+        assertThrows(OrderException.class, () -> OrderService.placeOrder(TestData.order("O-7", "PENDING", 1)));
+        Order anonymous = new Order("O-8", " ", 1, "staff", "PENDING", List.of(new OrderItem("I1", "Tea", 1, 1.50)));
+        assertThrows(OrderException.class, () -> OrderService.placeOrder(anonymous));
+        assertThrows(OrderException.class, () -> OrderService.completeOrder(order("O-9", 1, 0), 120));
+    }
+
+    @Test
+    void placedStatusHoldsAcrossRestarts() throws Exception {
+        int before = Integer.parseInt(TestData.runJvm(Run.class, "show", "R-1"));
+        assertEquals(before - 5, Integer.parseInt(TestData.runJvm(Run.class, "place", "R-1")));
+        // A later run knows from the journal that the order took stock
+        assertEquals(before, Integer.parseInt(TestData.runJvm(Run.class, "cancel", "R-1")));
+        assertEquals(before - 5, Integer.parseInt(TestData.runJvm(Run.class, "complete", "R-2")));
+
+        // Closed orders are not kept in memory; their status is read back from the journal
+        assertEquals("refused " + (before - 5), TestData.runJvm(Run.class, "complete", "R-1"));
+        assertEquals("refused " + (before - 5), TestData.runJvm(Run.class, "place", "R-2"));
+    }
+
+    private static Order order(String id, int tea, int cake) {
+        List<OrderItem> items = new ArrayList<>();
+        if (tea > 0) {
+            items.add(new OrderItem("I1", "Tea", tea, 1.50));
+        }
+        if (cake > 0) {
+            items.add(new OrderItem("I2", "Cake", cake, 3.00));
+        }
+        return TestData.order(id, "PENDING", System.currentTimeMillis(), items.toArray(new OrderItem[0]));
+    }
+
+    private static int stock(String id) {
+        return MenuCatalog.getItem(id).getStock();
+    }
+}
@@ -0,0 +1,108 @@
+package loadgen;
+
+import database.DatabaseHandler;
+import database.MenuCatalog;
+import database.Utils;
+import models.MenuItem;
+import models.Order;
+import models.OrderItem;
+import service.OrderException;
+import service.OrderService;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless load driver: several simulated tills push orders through
+ * {@link OrderService} concurrently and the run reports throughput and
+ * latency percentiles.
+ *
+ * Usage: java -Dcafe.data.dir=target/load-data -jar loadgen.jar [tills] [ordersPerTill] [menuSize]
+ *
+ * The run replaces the menu in the data directory, so cafe.data.dir must be
+ * given and must not be the cafe's own files directory.
+ */
+public class LoadGenerator {
+    public static void main(String[] args) throws Exception {
+        // Checked before any data class is loaded, as the storage engine opens its log on load
+        String dataDir = System.getProperty("cafe.data.dir");
+        if (dataDir == null || Paths.get(dataDir).toAbsolutePath().normalize()
+                .equals(Paths.get("files").toAbsolutePath().normalize())) {
+            System.err.println("The load generator overwrites the menu and order history in its data directory.");
+            System.err.println("Give it a scratch directory: java -Dcafe.data.dir=target/load-data -jar loadgen.jar");
+            System.exit(2);
+        }
+
+        int tills = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int ordersPerTill = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int menuSize = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        Utils.ensureDirectoriesExist();
+        List<MenuItem> menu = new ArrayList<>();
+        for (int i = 0; i < menuSize; i++) {
+            menu.add(new MenuItem(String.valueOf(100 + i), "Item " + i, 1.0 + (i % 9) * 0.5,
+                    "Category " + (i % 5), Integer.MAX_VALUE / 2));
+        }
+        DatabaseHandler.saveMenuItems(menu);
+        MenuCatalog.reload();
+
+        System.out.println("Tills: " + tills + ", orders per till: " + ordersPerTill +
+                ", menu size: " + menuSize + ", data dir: " + Utils.DATA_DIR);
+
+        long[][] latencies = new long[tills][ordersPerTill];
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(tills);
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int t = 0; t < tills; t++) {
+            final int till = t;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(till);
+                for (int i = 0; i < ordersPerTill; i++) {
+                    Order order = new Order(Utils.generateOrderId() + "-" + till + "-" + i,
+                            "Customer " + i, 1 + random.nextInt(50), "till" + till);
+                    int lines = 1 + random.nextInt(4);
+                    for (int j = 0; j < lines; j++) {
+                        MenuItem item = menu.get(random.nextInt(menu.size()));
+                        order.addItem(new OrderItem(item.getId(), item.getName(), 1 + random.nextInt(3), item.getPrice()));
+                    }
+
+                    long begin = System.nanoTime();
+                    try {
+                        OrderService.completeOrder(order, random.nextInt(4) * 5.0);
+                    } catch (OrderException e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[till][i] = System.nanoTime() - begin;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        int total = all.length;
+        System.out.printf("Orders: %d (%d failed) in %.2f s%n", total, failures.get(), elapsed / 1e9);
+        System.out.printf("Throughput: %.0f orders/s%n", total / (elapsed / 1e9));
+        System.out.printf("Latency p50: %.3f ms, p99: %.3f ms, max: %.3f ms%n",
+                percentile(all, 0.50), percentile(all, 0.99), all[total - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)));
+        return sorted[index] / 1e6;
+    }
+}
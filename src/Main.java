@@ -1,9 +1,12 @@
 import database.DatabaseHandler;
+import database.UserDirectory;
+import database.SessionRegistry;
 import database.Utils;
 import models.Admin;
 import models.Staff;
 import models.User;
 import ui.AdminDashboard;
+import ui.BackgroundTasks;
 import ui.StaffDashboard;
 import database.Logger;
 
@@ -17,6 +20,8 @@ import java.util.List;
 public class Main {
     private static JFrame mainFrame;
     private static List<User> users;
+    // Session of the user logged in on this till, null at the welcome and login screens
+    private static String currentSessionId;
 
     public static void main(String[] args) {
         // ✅ Set FlatLaf Look and Feel before any Swing UI code
@@ -42,11 +47,32 @@ public class Main {
 
         // If no users exist, create default admin
         if (users.isEmpty()) {
-            users.add(new Admin("admin", "iamadmin"));
-            users.add(new Staff("staff", "iamstaff"));
+            users.add(new Admin("admin", UserDirectory.hashPassword("iamadmin")));
+            users.add(new Staff("staff", UserDirectory.hashPassword("iamstaff")));
             DatabaseHandler.saveUsers(users);
         }
 
+        // Index the users (and hash any plaintext passwords) before the first login
+        BackgroundTasks.run(null, "Loading users", UserDirectory::load);
+
+        // Clicks and key presses keep the session alive; after an idle timeout they lead back to the welcome screen
+        Toolkit.getDefaultToolkit().addAWTEventListener(event -> {
+            String sessionId = currentSessionId;
+            if (sessionId == null) {
+                return;
+            }
+            if (SessionRegistry.get(sessionId) != null) {
+                SessionRegistry.touch(sessionId);
+            } else {
+                currentSessionId = null;
+                SwingUtilities.invokeLater(() -> {
+                    showWelcomeScreen();
+                    JOptionPane.showMessageDialog(mainFrame, "Your session has ended. Please log in again.",
+                            "Session Ended", JOptionPane.INFORMATION_MESSAGE);
+                });
+            }
+        }, AWTEvent.MOUSE_EVENT_MASK | AWTEvent.KEY_EVENT_MASK);
+
         // Create and show welcome screen
         SwingUtilities.invokeLater(() -> {
             mainFrame = new JFrame("CodeBrew Café");
@@ -58,6 +84,16 @@ public class Main {
         });
     }
 
+    // Logout callback of the dashboards: end this till's session, then back to the welcome screen
+    private static void logout(String username) {
+        String sessionId = currentSessionId;
+        currentSessionId = null;
+        if (sessionId != null) {
+            Logger.logLogout(username, sessionId);
+        }
+        showWelcomeScreen();
+    }
+
     private static void showWelcomeScreen() {
         JPanel welcomePanel = new JPanel();
         welcomePanel.setLayout(new GridBagLayout());
@@ -178,31 +214,43 @@ public class Main {
             mainFrame.repaint();
         });
 
-        // Login action
+        // Login action - password hashing is slow by design, so it is checked off the event thread
         loginButton.addActionListener(e -> {
             String username = usernameField.getText();
             String password = new String(passwordField.getPassword());
 
-            User user = Utils.validateLogin(users, username, password);
-            if (user != null) {
-                Logger.logLogin(user.getUsername());
-                mainFrame.getContentPane().removeAll();
-                if (user instanceof Admin) {
-                    mainFrame.setSize(800, 600);
-                    mainFrame.setLocationRelativeTo(null);
-                    mainFrame.add(new AdminDashboard(mainFrame, (Admin) user, Main::showWelcomeScreen));
-                } else if (user instanceof Staff) {
-                    mainFrame.setSize(800, 600);
-                    mainFrame.setLocationRelativeTo(null);
-                    mainFrame.add(new StaffDashboard(mainFrame, (Staff) user, Main::showWelcomeScreen));
+            loginButton.setEnabled(false);
+            BackgroundTasks.run(null, "Logging in", progress -> Utils.validateLogin(username, password), user -> {
+                loginButton.setEnabled(true);
+                if (user == null) {
+                    Logger.logFailedLogin(username);
                 }
-                mainFrame.revalidate();
-                mainFrame.repaint();
-            } else {
-                Logger.log("Failed login attempt with username: " + username);
-                JOptionPane.showMessageDialog(mainFrame, "Invalid username or password",
+                if (!loginPanel.isShowing()) {
+                    return; // went back to the welcome screen meanwhile
+                }
+                if (user != null) {
+                    currentSessionId = Logger.logLogin(user.getUsername());
+                    mainFrame.getContentPane().removeAll();
+                    if (user instanceof Admin) {
+                        mainFrame.setSize(800, 600);
+                        mainFrame.setLocationRelativeTo(null);
+                        mainFrame.add(new AdminDashboard(mainFrame, (Admin) user, () -> logout(user.getUsername())));
+                    } else if (user instanceof Staff) {
+                        mainFrame.setSize(800, 600);
+                        mainFrame.setLocationRelativeTo(null);
+                        mainFrame.add(new StaffDashboard(mainFrame, (Staff) user, () -> logout(user.getUsername())));
+                    }
+                    mainFrame.revalidate();
+                    mainFrame.repaint();
+                } else {
+                    JOptionPane.showMessageDialog(mainFrame, "Invalid username or password",
+                            "Login Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                loginButton.setEnabled(true);
+                JOptionPane.showMessageDialog(mainFrame, "Could not check the login: " + ex.getMessage(),
                         "Login Error", JOptionPane.ERROR_MESSAGE);
-            }
+            });
         });
 
         mainFrame.getContentPane().removeAll();
@@ -0,0 +1,464 @@
+package database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Structured activity log: logins, logouts and failed logins as compact
+ * binary records that can be queried by user, event type and time range
+ * without parsing text. MESSAGE records are still read but no longer written.
+ *
+ * Three files share a base name:
+ * <ul>
+ *   <li>base - a header, then the records. Each is a type byte followed by
+ *       varints: the time since the previous record of its block (zigzag,
+ *       since clocks can go back; the first record of a block holds its full
+ *       time), the user id + 1 (0 for none), a value (a logout's session
+ *       length in millis) and the length of a UTF-8 detail text, then that
+ *       text.</li>
+ *   <li>base.users - the user dictionary: one writeUTF name per id.</li>
+ *   <li>base.blocks - one fixed-size summary per block of
+ *       {@value #BLOCK_RECORDS} records: where it starts, its lowest and
+ *       highest time, a bitmask of the user ids in it (id mod 64), a bitmask
+ *       of its event types and its record count.</li>
+ * </ul>
+ * A query only decodes the blocks whose summary can match, and compares user
+ * ids instead of names.
+ *
+ * Appends are encoded into a memory buffer and written on {@link #flush()},
+ * which Logger calls whenever it flushes the text logs. On open the last block
+ * is read again, which rebuilds any summaries not saved yet and drops a record
+ * cut off by a crash.
+ */
+public class ActivityLog {
+    public enum EventType {
+        LOGIN, LOGOUT, LOGIN_FAILED, MESSAGE
+    }
+
+    // A decoded record
+    public static class Event {
+        private final long time;
+        private final EventType type;
+        private final String user;
+        private final long value;
+        private final String detail;
+
+        Event(long time, EventType type, String user, long value, String detail) {
+            this.time = time;
+            this.type = type;
+            this.user = user;
+            this.value = value;
+            this.detail = detail;
+        }
+
+        // Epoch millis
+        public long getTime() {
+            return time;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        // User name, or null for events without a user
+        public String getUser() {
+            return user;
+        }
+
+        // Session length in millis for LOGOUT, 0 otherwise
+        public long getValue() {
+            return value;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+    }
+
+    private static final int MAGIC = 0x414C4F47;         // "ALOG"
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 5;
+    static final int BLOCK_RECORDS = 256;
+    private static final int BLOCK_ENTRY_BYTES = 40;
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final EventType[] TYPES = EventType.values();
+
+    private final Path file;
+    private final Path usersFile;
+    private final Path blocksFile;
+
+    // User dictionary; an id is the position of the name
+    private final List<String> userNames = new ArrayList<>();
+    private final Map<String, Integer> userIds = new HashMap<>();
+    private int savedUsers = 0;
+
+    // Block summaries; the last one is the block being filled
+    private final List<Block> blocks = new ArrayList<>();
+    private int savedBlocks = 0;        // summaries on disk, the last of which may have grown since
+
+    private long length;                // bytes of the log on disk
+    private long lastTime;              // time of the last record, base of the next delta
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    private static class Block {
+        final long offset;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        long userBits;
+        int typeMask;
+        int records;
+
+        Block(long offset) {
+            this.offset = offset;
+        }
+
+        void add(long time, int userId, int type) {
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            userBits |= userBit(userId);
+            typeMask |= 1 << type;
+            records++;
+        }
+
+        boolean mayMatch(long from, long to, long userBit, int types) {
+            return records > 0 && maxTime >= from && minTime <= to
+                    && (userBit == 0 || (userBits & userBit) != 0) && (typeMask & types) != 0;
+        }
+    }
+
+    private ActivityLog(Path file) {
+        this.file = file;
+        this.usersFile = Paths.get(file + ".users");
+        this.blocksFile = Paths.get(file + ".blocks");
+    }
+
+    // Open the log at a path, creating it if needed
+    public static ActivityLog open(Path file) throws IOException {
+        ActivityLog log = new ActivityLog(file);
+        log.load();
+        return log;
+    }
+
+    public void append(EventType type, String user, long value, String detail) {
+        append(System.currentTimeMillis(), type, user, value, detail);
+    }
+
+    public synchronized void append(long time, EventType type, String user, long value, String detail) {
+        int userId = user == null ? -1 : userId(user);
+        Block block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        if (block == null || block.records >= BLOCK_RECORDS) {
+            block = new Block(length + pending.size());
+            blocks.add(block);
+            lastTime = 0;
+        }
+        byte[] text = detail == null ? new byte[0] : detail.getBytes(StandardCharsets.UTF_8);
+        pending.write(type.ordinal());
+        writeVarLong(pending, zigzag(time - lastTime));
+        writeVarLong(pending, userId + 1);
+        writeVarLong(pending, zigzag(value));
+        writeVarLong(pending, text.length);
+        pending.write(text, 0, text.length);
+        block.add(time, userId, type.ordinal());
+        lastTime = time;
+
+        if (pending.size() >= FLUSH_BYTES) {
+            flush();
+        }
+    }
+
+    // Write new users, then buffered records, then the block summaries that changed
+    public synchronized void flush() {
+        if (pending.size() == 0 && savedUsers == userNames.size() && savedBlocks == blocks.size()) {
+            return;
+        }
+        try {
+            // Users first, so every id in the records can be resolved after a crash
+            if (savedUsers < userNames.size()) {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(usersFile.toFile(), true)))) {
+                    for (int i = savedUsers; i < userNames.size(); i++) {
+                        out.writeUTF(userNames.get(i));
+                    }
+                }
+                savedUsers = userNames.size();
+            }
+            if (pending.size() > 0) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    writeFully(channel, ByteBuffer.wrap(pending.toByteArray()), length);
+                }
+                length += pending.size();
+                pending.reset();
+            }
+            int first = Math.max(0, savedBlocks - 1);
+            try (FileChannel channel = FileChannel.open(blocksFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate((blocks.size() - first) * BLOCK_ENTRY_BYTES);
+                for (int i = first; i < blocks.size(); i++) {
+                    Block block = blocks.get(i);
+                    buffer.putLong(block.offset).putLong(block.minTime).putLong(block.maxTime)
+                            .putLong(block.userBits).putInt(block.typeMask).putInt(block.records);
+                }
+                buffer.flip();
+                writeFully(channel, buffer, (long) first * BLOCK_ENTRY_BYTES);
+                channel.truncate((long) blocks.size() * BLOCK_ENTRY_BYTES);
+            }
+            savedBlocks = blocks.size();
+        } catch (IOException e) {
+            // Whatever was not written is retried on the next flush
+            System.err.println("Error writing activity log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Events with a time between from and to (epoch millis, inclusive), in the
+     * order they were logged. A null user or null types matches every one.
+     */
+    public synchronized List<Event> query(String user, Set<EventType> types, long from, long to) throws IOException {
+        flush();
+        List<Event> events = new ArrayList<>();
+        int wantedUser = -1;
+        if (user != null) {
+            Integer id = userIds.get(user);
+            if (id == null) {
+                return events;
+            }
+            wantedUser = id;
+        }
+        int typeMask = 0;
+        for (EventType type : types == null ? EnumSet.allOf(EventType.class) : types) {
+            typeMask |= 1 << type.ordinal();
+        }
+        long userBit = userBit(wantedUser);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < blocks.size(); i++) {
+                Block block = blocks.get(i);
+                if (!block.mayMatch(from, to, userBit, typeMask)) {
+                    continue;
+                }
+                long end = i + 1 < blocks.size() ? blocks.get(i + 1).offset : length;
+                ByteBuffer buffer = ByteBuffer.allocate((int) (end - block.offset));
+                readFully(channel, buffer, block.offset);
+                buffer.flip();
+                long time = 0;
+                while (buffer.hasRemaining()) {
+                    int type = buffer.get();
+                    time += unzigzag(readVarLong(buffer));
+                    int userId = (int) readVarLong(buffer) - 1;
+                    long value = unzigzag(readVarLong(buffer));
+                    int textLength = (int) readVarLong(buffer);
+                    int textStart = buffer.position();
+                    buffer.position(textStart + textLength);
+                    if (time < from || time > to || (wantedUser >= 0 && userId != wantedUser)
+                            || (typeMask & (1 << type)) == 0) {
+                        continue;
+                    }
+                    String detail = new String(buffer.array(), textStart, textLength, StandardCharsets.UTF_8);
+                    events.add(new Event(time, TYPES[type], userId < 0 ? null : userNames.get(userId), value, detail));
+                }
+            }
+        }
+        return events;
+    }
+
+    public List<Event> query(String user, EventType type, long from, long to) throws IOException {
+        return query(user, EnumSet.of(type), from, to);
+    }
+
+    // Every user name logged so far, in order of first appearance
+    public synchronized List<String> users() {
+        return new ArrayList<>(userNames);
+    }
+
+    private int userId(String user) {
+        Integer id = userIds.get(user);
+        if (id == null) {
+            id = userNames.size();
+            userNames.add(user);
+            userIds.put(user, id);
+        }
+        return id;
+    }
+
+    private static long userBit(int userId) {
+        return userId < 0 ? 0 : 1L << (userId & 63);
+    }
+
+    private void load() throws IOException {
+        if (Files.exists(usersFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(usersFile)))) {
+                while (true) {
+                    String name;
+                    try {
+                        name = in.readUTF();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    userIds.put(name, userNames.size());
+                    userNames.add(name);
+                }
+            }
+            savedUsers = userNames.size();
+        }
+
+        long fileLength = Files.exists(file) ? Files.size(file) : 0;
+        if (fileLength < HEADER_BYTES) {
+            // New log, or one cut off before its header was complete
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put(VERSION).flip(), 0);
+            }
+            Files.deleteIfExists(blocksFile);
+            length = HEADER_BYTES;
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC || header.get(4) != VERSION) {
+                throw new IOException("Not an activity log: " + file);
+            }
+        }
+
+        if (Files.exists(blocksFile)) {
+            try (FileChannel channel = FileChannel.open(blocksFile, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() / BLOCK_ENTRY_BYTES * BLOCK_ENTRY_BYTES));
+                readFully(channel, buffer, 0);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    Block block = new Block(buffer.getLong());
+                    block.minTime = buffer.getLong();
+                    block.maxTime = buffer.getLong();
+                    block.userBits = buffer.getLong();
+                    block.typeMask = buffer.getInt();
+                    block.records = buffer.getInt();
+                    long previous = blocks.isEmpty() ? 0 : blocks.get(blocks.size() - 1).offset;
+                    if (block.offset < HEADER_BYTES || block.offset <= previous || block.offset >= fileLength) {
+                        break;
+                    }
+                    blocks.add(block);
+                }
+            }
+        }
+        recoverTail(fileLength);
+    }
+
+    /**
+     * Decode everything from the start of the last summarised block to the end
+     * of the file, rebuilding the summaries of those blocks, and cut off a
+     * final record that was only partly written.
+     */
+    private void recoverTail(long fileLength) throws IOException {
+        long start = HEADER_BYTES;
+        if (!blocks.isEmpty()) {
+            start = blocks.remove(blocks.size() - 1).offset;
+        }
+        savedBlocks = blocks.size();
+        if (fileLength - start > Integer.MAX_VALUE) {
+            throw new IOException("Activity log block index does not match " + file);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (fileLength - start));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readFully(channel, buffer, start);
+        }
+        buffer.flip();
+
+        length = start;
+        Block block = null;
+        while (buffer.hasRemaining()) {
+            long recordStart = start + buffer.position();
+            try {
+                int type = buffer.get();
+                long delta = unzigzag(readVarLong(buffer));
+                int userId = (int) readVarLong(buffer) - 1;
+                readVarLong(buffer);
+                long textLength = readVarLong(buffer);
+                if (type < 0 || type >= TYPES.length || userId < -1 || userId >= userNames.size()
+                        || textLength > buffer.remaining()) {
+                    break;
+                }
+                buffer.position(buffer.position() + (int) textLength);
+                if (block == null || block.records >= BLOCK_RECORDS) {
+                    block = new Block(recordStart);
+                    blocks.add(block);
+                    lastTime = 0;
+                }
+                lastTime += delta;
+                block.add(lastTime, userId, type);
+                length = start + buffer.position();
+            } catch (BufferUnderflowException e) {
+                break;
+            }
+        }
+        if (length < fileLength) {
+            System.err.println("Error reading activity log: dropping " + (fileLength - length)
+                    + " unreadable bytes at the end of " + file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Activity log ended early");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new BufferUnderflowException();
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,223 @@
+package database;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Background writer for the log files.
+ *
+ * Callers put lines into a bounded multi-producer ring buffer and return
+ * straight away; a single writer thread drains it, keeps the log files open
+ * and flushes them once a batch is big enough or old enough. When the ring is
+ * full the configured {@link BackpressurePolicy} decides what happens.
+ */
+public class AsyncLogWriter {
+
+    public enum BackpressurePolicy {
+        BLOCK,       // wait for the writer to make room
+        DROP,        // discard the line and count it
+        CALLER_RUNS  // write the line on the calling thread
+    }
+
+    private static class Entry {
+        final String file;
+        final String line;
+
+        Entry(String file, String line) {
+            this.file = file;
+            this.line = line;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();   // next slot to claim
+    private volatile long head = 0;                     // next slot to read, writer thread only
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final BackpressurePolicy policy;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+
+    private final Map<String, BufferedWriter> writers = new HashMap<>();
+    // Files written to since the last flush, reported to the flush listener
+    private final Set<String> unflushedFiles = new HashSet<>();
+    private volatile Consumer<String> flushListener;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity        ring size, rounded up to a power of two
+     * @param flushSize       flush after this many lines
+     * @param flushIntervalMs flush lines that have waited this long
+     */
+    public AsyncLogWriter(int capacity, int flushSize, long flushIntervalMs, BackpressurePolicy policy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.policy = policy;
+
+        writerThread = new Thread(this::runWriter, "log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "log-writer-shutdown"));
+    }
+
+    // Queue a line for the given file; never blocks unless the policy is BLOCK and the ring is full
+    public void write(String file, String line) {
+        Entry entry = new Entry(file, line);
+        while (true) {
+            long t = tail.get();
+            if (t - head >= slots.length()) {
+                // Ring is full
+                if (policy == BackpressurePolicy.DROP || !running) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                if (policy == BackpressurePolicy.CALLER_RUNS) {
+                    synchronized (writers) {
+                        writeLine(entry);
+                        flushAll();
+                    }
+                    return;
+                }
+                LockSupport.parkNanos(50_000);
+                continue;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.set((int) (t & mask), entry);
+                return;
+            }
+        }
+    }
+
+    // Block until everything queued so far is written and flushed
+    public void flush() {
+        long target = tail.get();
+        while (head < target && running) {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(100_000);
+        }
+        synchronized (writers) {
+            flushAll();
+        }
+    }
+
+    // Called on the writer thread with each file whose new lines were just flushed
+    public void setFlushListener(Consumer<String> listener) {
+        this.flushListener = listener;
+    }
+
+    // Number of lines discarded under the DROP policy
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        flush();
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writers) {
+            drain(Integer.MAX_VALUE);
+            flushAll();
+            for (BufferedWriter writer : writers.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close log file: " + e.getMessage());
+                }
+            }
+            writers.clear();
+        }
+    }
+
+    private void runWriter() {
+        int unflushed = 0;
+        long lastFlush = System.nanoTime();
+        while (running) {
+            int written;
+            synchronized (writers) {
+                written = drain(flushSize);
+                unflushed += written;
+                long now = System.nanoTime();
+                if (unflushed >= flushSize || (unflushed > 0 && now - lastFlush >= flushIntervalNanos)) {
+                    flushAll();
+                    unflushed = 0;
+                    lastFlush = now;
+                }
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(unflushed > 0 ? flushIntervalNanos / 4 : flushIntervalNanos);
+            }
+        }
+    }
+
+    // Writer thread (or shutdown) only: move up to max published entries into the file buffers
+    private int drain(int max) {
+        int count = 0;
+        while (count < max) {
+            int index = (int) (head & mask);
+            Entry entry = slots.get(index);
+            if (entry == null) {
+                break; // empty, or the producer has claimed the slot but not filled it yet
+            }
+            slots.set(index, null);
+            head = head + 1;
+            writeLine(entry);
+            count++;
+        }
+        return count;
+    }
+
+    private void writeLine(Entry entry) {
+        try {
+            BufferedWriter writer = writers.get(entry.file);
+            if (writer == null) {
+                writer = new BufferedWriter(new FileWriter(entry.file, true));
+                writers.put(entry.file, writer);
+            }
+            writer.write(entry.line);
+            writer.newLine();
+            unflushedFiles.add(entry.file);
+        } catch (IOException e) {
+            System.err.println("Failed to write to " + entry.file + ": " + e.getMessage());
+        }
+    }
+
+    private void flushAll() {
+        for (BufferedWriter writer : writers.values()) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Failed to flush log file: " + e.getMessage());
+            }
+        }
+        Consumer<String> listener = flushListener;
+        if (listener != null) {
+            for (String file : unflushedFiles) {
+                listener.accept(file);
+            }
+        }
+        unflushedFiles.clear();
+    }
+}
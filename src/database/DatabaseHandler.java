@@ -3,17 +3,18 @@ package database;
 import models.*;
 import java.io.*;
 import java.util.*;
+import java.util.function.ToIntFunction;
 
 public class DatabaseHandler {
-    private static final String USERS_FILE = "files/users.txt";
-    private static final String MENU_FILE = "files/menu.txt";
-    private static final String ORDERS_FILE = "files/orders.txt";
-    private static final String RECEIPTS_FILE = "files/receipts.txt";
+    private static final String USERS_FILE = Utils.dataFile("users.txt");
+    private static final String MENU_FILE = Utils.dataFile("menu.txt");
+    // Stock changes since menu.txt was last saved, one line per order: itemId:change;itemId:change
+    private static final String STOCK_FILE = Utils.dataFile("stock.txt");
 
     // Load users (Admin and Staff)
     public static List<User> loadUsers() {
         List<User> users = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(USERS_FILE))) {
+        try (BufferedReader reader = StorageEngine.open(USERS_FILE)) {
             String line;
             while ((line = reader.readLine()) != null) {
                 String[] parts = line.split(",");
@@ -39,36 +40,39 @@ public class DatabaseHandler {
 
     // Save users
     public static void saveUsers(List<User> users) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(USERS_FILE))) {
-            for (User user : users) {
-                String userType = user instanceof Admin ? "ADMIN" : "STAFF";
-                writer.println(userType + "," + user.getUsername() + "," + user.getPassword());
-            }
+        List<String> lines = new ArrayList<>();
+        for (User user : users) {
+            String userType = user instanceof Admin ? "ADMIN" : "STAFF";
+            lines.add(userType + "," + user.getUsername() + "," + user.getPassword());
+        }
+        try {
+            StorageEngine.replace(USERS_FILE, lines);
         } catch (IOException e) {
             System.err.println("Error saving users: " + e.getMessage());
         }
+        UserDirectory.invalidate();
     }
 
     // Load menu items - Updated to include stock
     public static List<MenuItem> loadMenuItems() {
         List<MenuItem> menuItems = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(MENU_FILE))) {
+        try (BufferedReader reader = StorageEngine.open(MENU_FILE)) {
             String line;
             while ((line = reader.readLine()) != null) {
                 String[] parts = line.split(",");
                 if (parts.length >= 5) { // Updated to check for 5 parts (including stock)
                     String id = parts[0];
                     String name = parts[1];
-                    double price = Double.parseDouble(parts[2]);
+                    long priceCents = Money.parse(parts[2]);
                     String category = parts[3];
                     int stock = Integer.parseInt(parts[4]);
-                    menuItems.add(new MenuItem(id, name, price, category, stock));
+                    menuItems.add(new MenuItem(id, name, Money.toDouble(priceCents), category, stock));
                 } else if (parts.length >= 4) { // For backward compatibility
                     String id = parts[0];
                     String name = parts[1];
-                    double price = Double.parseDouble(parts[2]);
+                    long priceCents = Money.parse(parts[2]);
                     String category = parts[3];
-                    menuItems.add(new MenuItem(id, name, price, category, 0)); // Default stock is 0
+                    menuItems.add(new MenuItem(id, name, Money.toDouble(priceCents), category, 0)); // Default stock is 0
                 }
             }
         } catch (IOException e) {
@@ -82,113 +86,93 @@ public class DatabaseHandler {
 
     // Save menu items - Updated to include stock
     public static void saveMenuItems(List<MenuItem> menuItems) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(MENU_FILE))) {
-            for (MenuItem item : menuItems) {
-                writer.println(item.getId() + "," + item.getName() + "," +
-                        item.getPrice() + "," + item.getCategory() + "," + item.getStock());
-            }
+        saveMenuItems(menuItems, MenuItem::getStock);
+    }
+
+    // Save menu items with the given stock per item and empty the stock journal in the same transaction
+    static void saveMenuItems(List<MenuItem> menuItems, ToIntFunction<MenuItem> stock) {
+        List<String> lines = new ArrayList<>();
+        for (MenuItem item : menuItems) {
+            lines.add(item.getId() + "," + item.getName() + "," +
+                    Money.format(item.getPriceCents()) + "," + item.getCategory() + "," + stock.applyAsInt(item));
+        }
+        Map<String, List<String>> files = new LinkedHashMap<>();
+        files.put(MENU_FILE, lines);
+        files.put(STOCK_FILE, new ArrayList<>());
+        try {
+            StorageEngine.replace(files);
         } catch (IOException e) {
             System.err.println("Error saving menu items: " + e.getMessage());
         }
     }
 
-    // Load orders
-    public static List<Order> loadOrders() {
-        List<Order> orders = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(ORDERS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] orderParts = line.split("\\|");
-                if (orderParts.length >= 5) {
-                    String orderId = orderParts[0];
-                    String customerName = orderParts[1];
-                    int tableNumber = Integer.parseInt(orderParts[2]);
-                    String staffName = orderParts[3];
-                    String status = orderParts[4];
-
-                    Order order = new Order(orderId, customerName, tableNumber, staffName);
-                    order.setStatus(status);
-
-                    // Process order items if they exist
-                    if (orderParts.length > 5) {
-                        String[] itemsArray = orderParts[5].split(";");
-                        for (String itemStr : itemsArray) {
-                            String[] itemParts = itemStr.split(":");
-                            if (itemParts.length >= 3) {
-                                String itemId = itemParts[0];
-                                String itemName = itemParts[1];
-                                int quantity = Integer.parseInt(itemParts[2]);
-                                double price = Double.parseDouble(itemParts[3]);
-
-                                order.addItem(new OrderItem(itemId, itemName, quantity, price));
-                            }
-                        }
-                    }
-                    orders.add(order);
-                }
+    // Append the stock change of one order, quantities times sign - false if it could not be written
+    static boolean appendStockChange(List<MenuItem> items, List<Integer> quantities, int sign) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                line.append(";");
             }
+            line.append(items.get(i).getId()).append(":").append(sign * quantities.get(i));
+        }
+        try {
+            StorageEngine.append(STOCK_FILE, line.toString());
+            return true;
         } catch (IOException e) {
-            System.err.println("Error loading orders: " + e.getMessage());
+            System.err.println("Error saving stock: " + e.getMessage());
+            return false;
         }
-        return orders;
     }
 
-    // Save orders
-    public static void saveOrders(List<Order> orders) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(ORDERS_FILE))) {
-            for (Order order : orders) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(order.getOrderId()).append("|")
-                        .append(order.getCustomerName()).append("|")
-                        .append(order.getTableNumber()).append("|")
-                        .append(order.getStaffName()).append("|")
-                        .append(order.getStatus());
-
-                // Append order items
-                if (!order.getOrderItems().isEmpty()) {
-                    sb.append("|");
-                    boolean first = true;
-                    for (OrderItem item : order.getOrderItems()) {
-                        if (!first) {
-                            sb.append(";");
-                        }
-                        sb.append(item.getItemId()).append(":")
-                                .append(item.getItemName()).append(":")
-                                .append(item.getQuantity()).append(":")
-                                .append(item.getPrice());
-                        first = false;
+    // Add up the stock changes per item id since menu.txt was saved; returns the number of lines read
+    static int loadStockChanges(Map<String, Integer> changes) {
+        int lines = 0;
+        try (BufferedReader reader = StorageEngine.open(STOCK_FILE)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                for (String change : line.split(";")) {
+                    int colon = change.lastIndexOf(':');
+                    if (colon > 0) {
+                        changes.merge(change.substring(0, colon), Integer.parseInt(change.substring(colon + 1)), Integer::sum);
                     }
                 }
-                writer.println(sb.toString());
+                lines++;
             }
-        } catch (IOException e) {
-            System.err.println("Error saving orders: " + e.getMessage());
+        } catch (FileNotFoundException e) {
+            // No stock changes since the menu was saved
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error loading stock changes: " + e.getMessage());
         }
+        return lines;
     }
 
-    // Method to update stock after an order is processed
-    public static void updateStockForOrder(Order order) {
-        List<MenuItem> menuItems = loadMenuItems();
-        for (OrderItem orderItem : order.getOrderItems()) {
-            for (MenuItem menuItem : menuItems) {
-                if (menuItem.getId().equals(orderItem.getItemId())) {
-                    menuItem.decreaseStock(orderItem.getQuantity());
-                    break;
-                }
-            }
+    // Load orders from every month of the journal
+    public static List<Order> loadOrders() {
+        try {
+            return OrderStore.loadAll();
+        } catch (IOException e) {
+            System.err.println("Error loading orders: " + e.getMessage());
+            return new ArrayList<>();
         }
-        saveMenuItems(menuItems);
     }
 
-    // Save a receipt
-    public static void saveReceipt(String receipt) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(RECEIPTS_FILE, true))) {
-            writer.println("=== NEW RECEIPT ===");
-            writer.println(receipt);
-            writer.println("===================");
-            writer.println();
+    // Append a single new or updated order to its month in the orders journal
+    public static void appendOrder(Order order) {
+        SalesAggregates.commit(order, () -> OrderStore.append(order));
+    }
+
+    // Save orders (full rewrite - prefer appendOrder for single orders)
+    public static void saveOrders(List<Order> orders) {
+        try {
+            OrderStore.replaceAll(orders);
         } catch (IOException e) {
-            System.err.println("Error saving receipt: " + e.getMessage());
+            System.err.println("Error saving orders: " + e.getMessage());
         }
+        SalesAggregates.invalidate();
+    }
+
+    // Method to update stock after an order is processed - false if stock ran out
+    public static boolean updateStockForOrder(Order order) {
+        return MenuCatalog.deductStock(order);
     }
 }
\ No newline at end of file
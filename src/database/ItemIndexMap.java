@@ -0,0 +1,211 @@
+package database;
+
+import java.util.Arrays;
+
+/**
+ * Maps item keys (ids or names) to dense indexes 0..size-1 and keeps int, long
+ * and double columns indexed by them, so report loops can count and sum per
+ * item without boxing.
+ *
+ * Keys live in an open-addressing table with linear probing on the cached
+ * String hash code; a lookup of a known key allocates nothing. Keys are never
+ * removed. Columns are created on first use and grow with the key array.
+ *
+ * Not thread-safe.
+ */
+public class ItemIndexMap {
+    private static final int EMPTY = -1;
+
+    private int[] table;          // slot -> index, or EMPTY
+    private String[] keys;        // index -> key
+    private int size = 0;
+
+    private int[] ints;
+    private long[] longs;
+    private double[] doubles;
+
+    public ItemIndexMap() {
+        this(64);
+    }
+
+    public ItemIndexMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        keys = new String[Math.max(4, expectedSize)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Index of a key, or -1 if it was never added
+    public int indexOf(String key) {
+        int mask = table.length - 1;
+        int slot = mix(key.hashCode()) & mask;
+        while (true) {
+            int index = table[slot];
+            if (index == EMPTY) {
+                return -1;
+            }
+            String existing = keys[index];
+            if (existing == key || existing.equals(key)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Index of a key, adding it if needed
+    public int add(String key) {
+        int mask = table.length - 1;
+        int slot = mix(key.hashCode()) & mask;
+        while (true) {
+            int index = table[slot];
+            if (index == EMPTY) {
+                break;
+            }
+            String existing = keys[index];
+            if (existing == key || existing.equals(key)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == keys.length) {
+            growColumns(keys.length * 2);
+        }
+        int index = size++;
+        keys[index] = key;
+        table[slot] = index;
+        if (size * 2 > table.length) {
+            growTable();
+        }
+        return index;
+    }
+
+    public String key(int index) {
+        return keys[index];
+    }
+
+    public void addInt(String key, int delta) {
+        int index = add(key);
+        ints()[index] += delta;
+    }
+
+    public void addLong(String key, long delta) {
+        int index = add(key);
+        longs()[index] += delta;
+    }
+
+    public void addDouble(String key, double delta) {
+        int index = add(key);
+        doubles()[index] += delta;
+    }
+
+    public void addInt(int index, int delta) {
+        ints()[index] += delta;
+    }
+
+    public void addLong(int index, long delta) {
+        longs()[index] += delta;
+    }
+
+    public void addDouble(int index, double delta) {
+        doubles()[index] += delta;
+    }
+
+    public int getInt(int index) {
+        return ints == null ? 0 : ints[index];
+    }
+
+    public long getLong(int index) {
+        return longs == null ? 0 : longs[index];
+    }
+
+    public double getDouble(int index) {
+        return doubles == null ? 0 : doubles[index];
+    }
+
+    public void setInt(int index, int value) {
+        ints()[index] = value;
+    }
+
+    public void setLong(int index, long value) {
+        longs()[index] = value;
+    }
+
+    public void setDouble(int index, double value) {
+        doubles()[index] = value;
+    }
+
+    // Index with the largest long value, or -1 when no value is positive
+    public int maxLongIndex() {
+        int best = -1;
+        long bestValue = 0;
+        for (int i = 0; i < size; i++) {
+            long value = getLong(i);
+            if (value > bestValue) {
+                best = i;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    // Forget all keys and values but keep the allocated capacity
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        Arrays.fill(keys, 0, size, null);
+        if (ints != null) Arrays.fill(ints, 0, size, 0);
+        if (longs != null) Arrays.fill(longs, 0, size, 0);
+        if (doubles != null) Arrays.fill(doubles, 0, size, 0);
+        size = 0;
+    }
+
+    private int[] ints() {
+        if (ints == null) {
+            ints = new int[keys.length];
+        }
+        return ints;
+    }
+
+    private long[] longs() {
+        if (longs == null) {
+            longs = new long[keys.length];
+        }
+        return longs;
+    }
+
+    private double[] doubles() {
+        if (doubles == null) {
+            doubles = new double[keys.length];
+        }
+        return doubles;
+    }
+
+    private void growColumns(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        if (ints != null) ints = Arrays.copyOf(ints, capacity);
+        if (longs != null) longs = Arrays.copyOf(longs, capacity);
+        if (doubles != null) doubles = Arrays.copyOf(doubles, capacity);
+    }
+
+    private void growTable() {
+        table = new int[table.length * 2];
+        Arrays.fill(table, EMPTY);
+        int mask = table.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = mix(keys[index].hashCode()) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index;
+        }
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,291 @@
+package database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Start offset of every line of a text file, so any line can be read without
+ * reading the ones before it. Memory is one long per line; no line text is
+ * kept.
+ *
+ * {@link #update()} scans only the bytes added since the last call. A file that
+ * got shorter (e.g. a cleared log) is indexed again from the start. A last line
+ * without its newline yet is readable but only indexed once it is complete.
+ *
+ * Lines are decoded as UTF-8 with the line terminator removed, like
+ * Files.readAllLines.
+ *
+ * The index returned by {@link #shared(Path)} is also kept on disk in a sidecar
+ * file (the log name plus .idx): a header followed by the end offset of each
+ * complete line as a long. Updates append to it, so reopening a log only scans
+ * what was written since the index was last updated. The sidecar is checked
+ * against the log when loaded and rebuilt if it does not match.
+ */
+public class LineOffsetIndex {
+    private static final int SCAN_BUFFER = 64 * 1024;
+    private static final long SIDECAR_MAGIC = 0x4C4944580000_0001L;   // "LIDX", version 1
+    private static final String SIDECAR_SUFFIX = ".idx";
+
+    // Persistent indexes by absolute log path, shared by the log writer and the viewers
+    private static final Map<Path, LineOffsetIndex> SHARED = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final Path sidecar;         // null for an index kept in memory only
+    private int sidecarLines = 0;       // complete lines already written to the sidecar
+    private long[] offsets = new long[1024];
+    private int lines = 0;
+    private long indexedLength = 0;     // end of the last complete line
+    private long fileLength = 0;        // length seen by the last update
+    private int resets = 0;             // times the file was found shorter and indexed again
+
+    public LineOffsetIndex(Path file) {
+        this(file, null);
+    }
+
+    private LineOffsetIndex(Path file, Path sidecar) {
+        this.file = file;
+        this.sidecar = sidecar;
+    }
+
+    /**
+     * The persistent index of a file, loaded from its sidecar on first use and
+     * brought up to date with the file.
+     */
+    public static LineOffsetIndex shared(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        LineOffsetIndex index = SHARED.computeIfAbsent(key, path -> {
+            LineOffsetIndex loaded = new LineOffsetIndex(path, Paths.get(path + SIDECAR_SUFFIX));
+            loaded.loadSidecar();
+            return loaded;
+        });
+        index.update();
+        return index;
+    }
+
+    // Index a whole file
+    public static LineOffsetIndex build(Path file) throws IOException {
+        LineOffsetIndex index = new LineOffsetIndex(file);
+        index.update();
+        return index;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Index lines appended since the last call. Returns the number of rows
+     * added, or -1 if the file shrank and was indexed again from scratch.
+     */
+    public synchronized int update() throws IOException {
+        long length;
+        try {
+            length = Files.size(file);
+        } catch (NoSuchFileException e) {
+            length = 0;
+        }
+        int before = lineCount();
+        boolean reset = length < fileLength;
+        if (reset) {
+            lines = 0;
+            indexedLength = 0;
+            sidecarLines = 0;
+            resets++;
+        }
+        fileLength = length;
+        if (length > indexedLength) {
+            scan(length);
+        }
+        if (sidecar != null && (reset || lines > sidecarLines)) {
+            writeSidecar();
+        }
+        return reset ? -1 : lineCount() - before;
+    }
+
+    // Changes whenever the file was cleared or replaced and rows were renumbered
+    public synchronized int resetCount() {
+        return resets;
+    }
+
+    // Number of rows, including an unfinished last line
+    public synchronized int lineCount() {
+        return lines + (fileLength > indexedLength ? 1 : 0);
+    }
+
+    public synchronized String readLine(int row) throws IOException {
+        List<String> one = readLines(row, 1);
+        return one.isEmpty() ? null : one.get(0);
+    }
+
+    // Up to count rows starting at from, read with a single positioned read
+    public synchronized List<String> readLines(int from, int count) throws IOException {
+        int to = Math.min(lineCount(), from + count);
+        if (from < 0 || from >= to) {
+            return new ArrayList<>();
+        }
+        long start = offsets[from];
+        long end = lineEnd(to - 1);
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("Rows " + from + "-" + (to - 1) + " are too large to read at once");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        byte[] bytes = buffer.array();
+        List<String> result = new ArrayList<>(to - from);
+        for (int row = from; row < to; row++) {
+            int lineStart = (int) (offsets[row] - start);
+            int lineEnd = (int) Math.min(lineEnd(row) - start, buffer.position());
+            // Strip \n and \r\n
+            while (lineEnd > lineStart && (bytes[lineEnd - 1] == '\n' || bytes[lineEnd - 1] == '\r')) {
+                lineEnd--;
+            }
+            result.add(new String(bytes, lineStart, Math.max(0, lineEnd - lineStart), StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    // Offset just past a row, including its newline
+    private long lineEnd(int row) {
+        return row + 1 < lines ? offsets[row + 1] : (row < lines ? indexedLength : fileLength);
+    }
+
+    // Record the start of every line that ends between indexedLength and length
+    private void scan(long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = indexedLength;
+            long lineStart = indexedLength;
+            while (position < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(SCAN_BUFFER, length - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                byte[] bytes = buffer.array();
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n') {
+                        addLine(lineStart);
+                        lineStart = position + i + 1;
+                    }
+                }
+                position += read;
+            }
+            indexedLength = lineStart;
+            // Start of the unfinished last line, if any; addLine keeps a free slot for it
+            offsets[lines] = indexedLength;
+        }
+    }
+
+    // Read the sidecar if it matches the file; otherwise start empty and rewrite it on update
+    private void loadSidecar() {
+        try {
+            if (!Files.exists(sidecar)) {
+                return;
+            }
+            long length = Files.exists(file) ? Files.size(file) : 0;
+            try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+                long entries = (channel.size() - 8) / 8;
+                if (entries < 0 || entries >= Integer.MAX_VALUE - 1) {
+                    return;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) (8 + entries * 8));
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // keep reading
+                }
+                buffer.flip();
+                if (buffer.remaining() < 8 || buffer.getLong() != SIDECAR_MAGIC) {
+                    return;
+                }
+                long[] loaded = new long[(int) entries + 1];
+                long previous = 0;
+                for (int i = 0; i < entries; i++) {
+                    long end = buffer.getLong();
+                    if (end <= previous || end > length) {
+                        return;
+                    }
+                    loaded[i + 1] = end;
+                    previous = end;
+                }
+                if (previous > 0 && !newlineBefore(previous)) {
+                    // The log was replaced since the sidecar was written
+                    return;
+                }
+                offsets = Arrays.copyOf(loaded, Math.max(1024, loaded.length * 2));
+                lines = (int) entries;
+                indexedLength = previous;
+                fileLength = previous;
+                sidecarLines = lines;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading line index " + sidecar + ": " + e.getMessage());
+        }
+    }
+
+    private boolean newlineBefore(long offset) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.read(one, offset - 1) == 1 && one.get(0) == '\n';
+        }
+    }
+
+    // Append the ends of lines not yet in the sidecar, starting it over if needed
+    private void writeSidecar() {
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long position = 8 + (long) sidecarLines * 8;
+            if (sidecarLines == 0 || channel.size() < position) {
+                sidecarLines = 0;
+                position = 8;
+                channel.write(ByteBuffer.allocate(8).putLong(0, SIDECAR_MAGIC), 0);
+            }
+            channel.truncate(position);
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+            for (int line = sidecarLines; line < lines; line++) {
+                if (!buffer.hasRemaining()) {
+                    position += flush(channel, buffer, position);
+                }
+                buffer.putLong(offsets[line + 1]);
+            }
+            flush(channel, buffer, position);
+            sidecarLines = lines;
+        } catch (IOException e) {
+            // Retried from the same line on the next update
+            System.err.println("Error writing line index " + sidecar + ": " + e.getMessage());
+        }
+    }
+
+    private static int flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private void addLine(long start) {
+        if (lines + 1 >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[lines++] = start;
+    }
+}
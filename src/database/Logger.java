@@ -1,63 +1,129 @@
 package database;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
 
 public class Logger {
-    private static final String LOG_FILE = "files/login_activity.txt";
-    private static final String SESSION_LOG_FILE = "files/session_log.txt";
+    private static final String LOG_FILE = Utils.dataFile("login_activity.txt");
+    private static final String SESSION_LOG_FILE = Utils.dataFile("session_log.txt");
 
-    // Store active login sessions
-    private static final Map<String, LocalDateTime> activeSessions = new HashMap<>();
+    // Lines are written by a background thread so logging never blocks the caller
+    private static final AsyncLogWriter writer = new AsyncLogWriter(
+            Integer.getInteger("cafe.log.capacity", 8192),
+            Integer.getInteger("cafe.log.flushSize", 256),
+            Long.getLong("cafe.log.flushIntervalMs", 200),
+            AsyncLogWriter.BackpressurePolicy.valueOf(System.getProperty("cafe.log.backpressure", "BLOCK")));
 
-    // Generic logging (already present)
-    public static void log(String message) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(LOG_FILE, true))) {
-            writer.write(LocalDateTime.now() + " - " + message);
-            writer.newLine();
+    // The same events as structured records, for queries by user, type and time
+    private static final ActivityLog activity = openActivityLog();
+
+    static {
+        // Keep the line index of each log current so the viewers only read new lines,
+        // and write the structured records along with the text
+        writer.setFlushListener(file -> {
+            try {
+                LineOffsetIndex.shared(Paths.get(file));
+            } catch (IOException e) {
+                System.err.println("Error indexing " + file + ": " + e.getMessage());
+            }
+            if (activity != null) {
+                activity.flush();
+            }
+        });
+        SessionRegistry.setEndListener(Logger::sessionEnded);
+    }
+
+    private static ActivityLog openActivityLog() {
+        try {
+            return ActivityLog.open(Paths.get(Utils.dataFile("activity.log")));
         } catch (IOException e) {
-            System.err.println("Failed to write to login log: " + e.getMessage());
+            System.err.println("Error opening activity log: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // The structured log, or null if it could not be opened
+    public static ActivityLog activity() {
+        return activity;
+    }
+
+    // Generic logging (already present) - text only, the activity log keeps just the session events
+    public static void log(String message) {
+        writeLine(message);
+    }
+
+    // Wait until every queued log line has reached the log files
+    public static void flush() {
+        writer.flush();
+        if (activity != null) {
+            activity.flush();
         }
     }
 
-    // Log login time
-    public static void logLogin(String username) {
-        LocalDateTime loginTime = LocalDateTime.now();
-        activeSessions.put(username, loginTime);
-        log("User (" + username + ") logged in at " + loginTime);
+    // Log login time; starts a session at this till and returns its id
+    public static String logLogin(String username) {
+        SessionRegistry.Session session = SessionRegistry.open(username);
+        record(ActivityLog.EventType.LOGIN, username, 0, null);
+        writeLine("User (" + username + ") logged in at " + session.getLoginTime());
+        return session.getId();
+    }
+
+    public static void logFailedLogin(String username) {
+        record(ActivityLog.EventType.LOGIN_FAILED, username, 0, null);
+        writeLine("Failed login attempt with username: " + username);
     }
 
     // Log logout time and session duration
     public static void logLogout(String username) {
-        LocalDateTime logoutTime = LocalDateTime.now();
-        LocalDateTime loginTime = activeSessions.get(username);
+        if (SessionRegistry.closeUser(username) == null) {
+            log("Logout attempted for user '" + username + "' but no login time was found.");
+        }
+    }
+
+    // Log the logout of the session logLogin returned; the session end listener writes the session line
+    public static void logLogout(String username, String sessionId) {
+        if (SessionRegistry.close(sessionId) == null) {
+            log("Logout attempted for user '" + username + "' but the session had already ended.");
+        }
+    }
 
-        if (loginTime != null) {
-            Duration session = Duration.between(loginTime, logoutTime);
-            long minutes = session.toMinutes();
+    // Called for every session that ends: at logout, at a new login on the same till or after being idle
+    private static void sessionEnded(SessionRegistry.Session session, SessionRegistry.EndReason reason) {
+        LocalDateTime logoutTime = LocalDateTime.now();
+        LocalDateTime loginTime = session.getLoginTime();
+        String username = session.getUsername();
+        Duration duration = Duration.between(loginTime, logoutTime);
+        long minutes = duration.toMinutes();
 
-            String sessionLog = "User: " + username +
-                    " | Login: " + loginTime +
-                    " | Logout: " + logoutTime +
-                    " | Session Duration: " + minutes + " minute(s)";
+        String sessionLog = "User: " + username +
+                " | Login: " + loginTime +
+                " | Logout: " + logoutTime +
+                " | Session Duration: " + minutes + " minute(s)";
 
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter("files/session_log.txt", true))) {
-                writer.write(sessionLog);
-                writer.newLine();
-            } catch (IOException e) {
-                System.err.println("Failed to write session log: " + e.getMessage());
-            }
+        writer.write(SESSION_LOG_FILE, sessionLog);
 
-            log("User '" + username + "' logged out at " + logoutTime + " (Session: " + minutes + " min)");
-            activeSessions.remove(username);
+        record(ActivityLog.EventType.LOGOUT, username, duration.toMillis(),
+                reason == SessionRegistry.EndReason.LOGOUT ? null : reason.name());
+        if (reason == SessionRegistry.EndReason.LOGOUT) {
+            writeLine("User '" + username + "' logged out at " + logoutTime + " (Session: " + minutes + " min)");
+        } else if (reason == SessionRegistry.EndReason.IDLE_TIMEOUT) {
+            writeLine("Session of user '" + username + "' timed out after being idle at " + logoutTime
+                    + " (Session: " + minutes + " min)");
         } else {
-            log("Logout attempted for user '" + username + "' but no login time was found.");
+            writeLine("Session of user '" + username + "' ended by a new login at " + session.getTill()
+                    + " (Session: " + minutes + " min)");
         }
     }
 
+    private static void writeLine(String message) {
+        writer.write(LOG_FILE, LocalDateTime.now() + " - " + message);
+    }
+
+    private static void record(ActivityLog.EventType type, String username, long value, String detail) {
+        if (activity != null) {
+            activity.append(type, username, value, detail);
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package database;
+
+import models.Order;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads the orders journal by memory-mapping it and parsing line-aligned
+ * chunks in parallel on the common ForkJoinPool.
+ *
+ * Chunk results are joined left to right, so records come back in file order
+ * and {@link OrderJournal#fold(List)} still keeps the latest record per order.
+ * Only the part of the file that is on disk is mapped; records still in the
+ * storage log are parsed from {@link StorageEngine#view(String)} after it, so
+ * reading never checkpoints.
+ */
+public class MappedOrderReader {
+    // Files smaller than this are parsed on the calling thread
+    private static final long PARALLEL_THRESHOLD = 1024 * 1024;
+    // Smallest chunk handed to a single task
+    private static final int MIN_CHUNK = 256 * 1024;
+
+    // Read every journal record in file order
+    public static List<Order> readRecords(String file) throws IOException {
+        StorageEngine.View view = StorageEngine.view(file);
+        List<Order> records = readFile(file, view.fileLength);
+        if (view.pending.length > 0) {
+            records.addAll(new OrderLineParser().parseAll(new ByteArrayInputStream(view.pending)));
+        }
+        return records;
+    }
+
+    // Records in the first length bytes of the file on disk
+    private static List<Order> readFile(String file, long length) throws IOException {
+        if (length == 0) {
+            return new ArrayList<>();
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            long size = Math.min(length, channel.size());
+            if (size > Integer.MAX_VALUE) {
+                // Too large for a single mapping, stream it instead
+                try (InputStream in = new LimitedInputStream(Channels.newInputStream(channel), size)) {
+                    return new OrderLineParser().parseAll(in);
+                }
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < PARALLEL_THRESHOLD) {
+                List<Order> records = new ArrayList<>();
+                new OrderLineParser().parseRange(buffer, 0, (int) size, records);
+                return records;
+            }
+            int[] bounds = chunkBounds(buffer, (int) size);
+            return ForkJoinPool.commonPool().invoke(new ParseTask(buffer, bounds, 0, bounds.length - 1));
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    // Read the journal and keep the latest record per order
+    public static List<Order> readOrders(String file) throws IOException {
+        return OrderJournal.fold(readRecords(file));
+    }
+
+    // Split [0, size) into roughly equal chunks that each end just after a newline
+    private static int[] chunkBounds(MappedByteBuffer buffer, int size) {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int target = Math.max(MIN_CHUNK, size / (parallelism * 4));
+
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int position = 0;
+        while (position < size) {
+            int next = (int) Math.min((long) position + target, size);
+            while (next < size && buffer.get(next - 1) != '\n') {
+                next++;
+            }
+            bounds.add(next);
+            position = next;
+        }
+
+        int[] result = new int[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Parses chunks [from, to) of the bound list, splitting in half until one chunk is left
+    private static class ParseTask extends RecursiveTask<List<Order>> {
+        private static final long serialVersionUID = 1L;
+
+        private final MappedByteBuffer buffer;
+        private final int[] bounds;
+        private final int from;
+        private final int to;
+
+        ParseTask(MappedByteBuffer buffer, int[] bounds, int from, int to) {
+            this.buffer = buffer;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Order> compute() {
+            if (to - from <= 1) {
+                List<Order> records = new ArrayList<>();
+                if (from < to) {
+                    new OrderLineParser().parseRange(buffer, bounds[from], bounds[to], records);
+                }
+                return records;
+            }
+            int middle = (from + to) >>> 1;
+            ParseTask right = new ParseTask(buffer, bounds, middle, to);
+            right.fork();
+            List<Order> records = new ParseTask(buffer, bounds, from, middle).compute();
+            records.addAll(right.join());
+            return records;
+        }
+    }
+
+    // The first limit bytes of a stream, so bytes checkpointed after the view was taken are not read twice
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package database;
+
+import models.MenuItem;
+import models.Order;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Shared in-memory menu, indexed by item id and by category.
+ *
+ * The menu file is read once; after that lookups, stock checks and stock
+ * deductions work on the indexes. Changes to the menu itself are written
+ * through to files/menu.txt via {@link DatabaseHandler#saveMenuItems(List)}.
+ *
+ * Stock taken or given back by orders is not written into menu.txt each time:
+ * each order appends one line of per-item changes to files/stock.txt, which
+ * concurrent tills share without a common lock. Loading adds those changes to
+ * the stock in menu.txt. Once cafe.stock.compactAfter lines have piled up, and
+ * whenever the menu is saved anyway, the stock is written into menu.txt and
+ * stock.txt emptied in the same transaction.
+ */
+public class MenuCatalog {
+    private static final int STOCK_COMPACT_AFTER = Integer.getInteger("cafe.stock.compactAfter", 10_000);
+
+    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Items by id, kept in file order
+    private static final Map<String, MenuItem> itemsById = new LinkedHashMap<>();
+    // Items by category, categories kept in order of first appearance
+    private static final Map<String, List<MenuItem>> itemsByCategory = new LinkedHashMap<>();
+    private static boolean loaded = false;
+
+    // Stock changes share the read lock; writing menu.txt takes the write lock,
+    // so a change is always either in menu.txt or in stock.txt, never both
+    private static final ReentrantReadWriteLock stockLock = new ReentrantReadWriteLock();
+    // Stock per item id as saved: menu.txt plus stock.txt. The live counters can be
+    // lower while a reservation is not committed yet.
+    private static final Map<String, AtomicInteger> savedStock = new ConcurrentHashMap<>();
+    // Lines in stock.txt
+    private static final AtomicInteger stockChanges = new AtomicInteger();
+
+    // Look up a single item by id, or null if there is none
+    public static MenuItem getItem(String id) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return itemsById.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // All items in menu order
+    public static List<MenuItem> getAllItems() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(itemsById.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Items in one category; "All" returns the whole menu
+    public static List<MenuItem> getItemsByCategory(String category) {
+        if (category.equals("All")) {
+            return getAllItems();
+        }
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            List<MenuItem> items = itemsByCategory.get(category);
+            return items == null ? new ArrayList<>() : new ArrayList<>(items);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Distinct categories in menu order
+    public static List<String> getCategories() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(itemsByCategory.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Add a new item and persist the menu
+    public static void addItem(MenuItem item) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            itemsById.put(item.getId(), item);
+            savedStock.put(item.getId(), new AtomicInteger(item.getStock()));
+            reindexCategories();
+            save();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Persist changes made to an item's fields (category changes are re-indexed); its stock is taken as set
+    public static void updateItem(MenuItem item) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            itemsById.put(item.getId(), item);
+            savedStock.put(item.getId(), new AtomicInteger(item.getStock()));
+            reindexCategories();
+            save();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Remove an item and persist the menu
+    public static void removeItem(String id) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            if (itemsById.remove(id) != null) {
+                savedStock.remove(id);
+                reindexCategories();
+                save();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deduct the stock for every item in an order and persist the menu.
+     * Returns false, leaving stock untouched, if any item has run out.
+     */
+    public static boolean deductStock(Order order) {
+        StockLedger.Reservation reservation = StockLedger.reserve(order.getOrderItems());
+        if (reservation == null) {
+            return false;
+        }
+        reservation.commit();
+        return true;
+    }
+
+    /**
+     * Persist the stock taken (sign -1) or given back (sign 1) for one order
+     * as a single line in stock.txt. Returns false if it could not be written.
+     */
+    static boolean saveStockChange(List<MenuItem> items, List<Integer> quantities, int sign) {
+        ensureLoaded();
+        stockLock.readLock().lock();
+        try {
+            if (!DatabaseHandler.appendStockChange(items, quantities, sign)) {
+                return false;
+            }
+            for (int i = 0; i < items.size(); i++) {
+                savedStock.computeIfAbsent(items.get(i).getId(), id -> new AtomicInteger())
+                        .addAndGet(sign * quantities.get(i));
+            }
+        } finally {
+            stockLock.readLock().unlock();
+        }
+        if (stockChanges.incrementAndGet() >= STOCK_COMPACT_AFTER) {
+            saveStock();
+        }
+        return true;
+    }
+
+    // Write the saved stock into menu.txt and empty stock.txt
+    public static void saveStock() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            save();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Drop the in-memory menu and read files/menu.txt and files/stock.txt again
+    public static void reload() {
+        List<MenuItem> items = DatabaseHandler.loadMenuItems();
+        lock.writeLock().lock();
+        stockLock.writeLock().lock();
+        try {
+            Map<String, Integer> changes = new HashMap<>();
+            stockChanges.set(DatabaseHandler.loadStockChanges(changes));
+            itemsById.clear();
+            savedStock.clear();
+            for (MenuItem item : items) {
+                item.setStock(item.getStock() + changes.getOrDefault(item.getId(), 0));
+                itemsById.put(item.getId(), item);
+                savedStock.put(item.getId(), new AtomicInteger(item.getStock()));
+            }
+            reindexCategories();
+            loaded = true;
+        } finally {
+            stockLock.writeLock().unlock();
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void ensureLoaded() {
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        synchronized (MenuCatalog.class) {
+            if (!loaded) {
+                reload();
+            }
+        }
+    }
+
+    // Caller must hold the write lock
+    private static void reindexCategories() {
+        itemsByCategory.clear();
+        for (MenuItem item : itemsById.values()) {
+            itemsByCategory.computeIfAbsent(item.getCategory(), c -> new ArrayList<>()).add(item);
+        }
+    }
+
+    // Caller must hold the read or write lock
+    private static void save() {
+        stockLock.writeLock().lock();
+        try {
+            DatabaseHandler.saveMenuItems(new ArrayList<>(itemsById.values()), item -> {
+                AtomicInteger stock = savedStock.get(item.getId());
+                return stock == null ? item.getStock() : stock.get();
+            });
+            stockChanges.set(0);
+        } finally {
+            stockLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package database;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+
+/**
+ * Order ids of the form ORD-yyyyMMdd-NNNNN, numbered per day.
+ *
+ * Numbers are handed out from memory and reserved in blocks: before the first
+ * number of a block is used, the end of the block is written to
+ * files/order_sequence.txt through {@link StorageEngine}. After a restart the
+ * day continues after the saved end, so no number is handed out twice; at most
+ * the rest of one block is skipped. An id that the orders journal already
+ * knows, such as a random id given out before the sequence existed, is passed
+ * over.
+ */
+public class OrderIdSequence {
+    private static final String SEQUENCE_FILE = Utils.dataFile("order_sequence.txt");
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // Numbers reserved per write of the sequence file
+    private static final int BLOCK_SIZE = 100;
+
+    private static String day;
+    private static long next;
+    private static long reservedUntil;
+
+    // Next free order id for today
+    public static String nextId() {
+        LocalDate today = LocalDate.now();
+        YearMonth month = YearMonth.from(today);
+        while (true) {
+            String id = "ORD-" + today.format(DAY) + "-" + String.format("%05d", next(today));
+            if (SalesAggregates.statusOf(id, month) == null) {
+                return id;
+            }
+        }
+    }
+
+    private static synchronized long next(LocalDate today) {
+        String key = today.format(DAY);
+        if (day == null) {
+            load();
+        }
+        if (!key.equals(day)) {
+            day = key;
+            next = 1;
+            reservedUntil = 0;
+        }
+        if (next > reservedUntil) {
+            long end = next + BLOCK_SIZE - 1;
+            try {
+                StorageEngine.replace(SEQUENCE_FILE, Collections.singletonList(day + " " + end));
+                reservedUntil = end;
+            } catch (IOException e) {
+                // Keep going from memory; after a restart the journal check passes over numbers used meanwhile
+                System.err.println("Error saving order sequence: " + e.getMessage());
+            }
+        }
+        return next++;
+    }
+
+    // Continue after the last reserved block of the saved day
+    private static void load() {
+        day = "";
+        try (BufferedReader reader = StorageEngine.open(SEQUENCE_FILE)) {
+            String line = reader.readLine();
+            if (line != null) {
+                String[] parts = line.trim().split(" ");
+                long end = Long.parseLong(parts[1]);
+                day = parts[0];
+                next = end + 1;
+                reservedUntil = end;
+            }
+        } catch (FileNotFoundException e) {
+            // No order placed yet
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading order sequence: " + e.getMessage());
+        }
+    }
+}
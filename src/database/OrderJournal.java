@@ -0,0 +1,97 @@
+package database;
+
+import models.Money;
+import models.Order;
+import models.OrderItem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal over an order file (see {@link OrderStore} for how the
+ * files are laid out).
+ *
+ * Each placed or updated order is written as one pipe-delimited line at the end
+ * of the file through {@link StorageEngine}, so checkout cost no longer depends
+ * on the size of the history. When the same order id appears more than once the
+ * last record wins; the superseded records are dropped by
+ * {@link #compact(String, List)} once enough of them have piled up.
+ */
+public class OrderJournal {
+    // Compact once this many superseded records are found while loading
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    // Append a single order record - false if it could not be written
+    public static boolean append(String file, Order order) {
+        try {
+            StorageEngine.append(file, formatOrder(order));
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error appending order: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Folds journal records so that only the latest record per order id is kept.
+     * Orders stay in the position of their first appearance.
+     */
+    public static List<Order> fold(List<Order> records) {
+        Map<String, Order> latest = new LinkedHashMap<>();
+        for (Order order : records) {
+            latest.put(order.getOrderId(), order);
+        }
+        if (latest.size() == records.size()) {
+            return records;
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    // True when the journal carries enough superseded records to be worth rewriting
+    public static boolean needsCompaction(int recordCount, int liveCount) {
+        return recordCount - liveCount >= COMPACTION_THRESHOLD;
+    }
+
+    // Rewrite the journal with only the live records
+    public static void compact(String file, List<Order> liveOrders) {
+        List<String> lines = new ArrayList<>();
+        for (Order order : liveOrders) {
+            lines.add(formatOrder(order));
+        }
+        try {
+            StorageEngine.replace(file, lines);
+        } catch (IOException e) {
+            System.err.println("Error compacting orders: " + e.getMessage());
+        }
+    }
+
+    // Format an order as a single journal line:
+    // orderId|customer|table|staff|status|itemId:itemName:qty:price;...|orderTimeMillis
+    public static String formatOrder(Order order) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(order.getOrderId()).append("|")
+                .append(order.getCustomerName()).append("|")
+                .append(order.getTableNumber()).append("|")
+                .append(order.getStaffName()).append("|")
+                .append(order.getStatus()).append("|");
+
+        // Append order items - the field is always written, even when empty
+        boolean first = true;
+        for (OrderItem item : order.getOrderItems()) {
+            if (!first) {
+                sb.append(";");
+            }
+            sb.append(item.getItemId()).append(":")
+                    .append(item.getItemName()).append(":")
+                    .append(item.getQuantity()).append(":");
+            Money.appendTo(sb, item.getPriceCents());
+            first = false;
+        }
+
+        sb.append("|").append(order.getOrderTime().getTime());
+        return sb.toString();
+    }
+}
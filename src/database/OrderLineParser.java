@@ -0,0 +1,385 @@
+package database;
+
+import models.Money;
+import models.Order;
+import models.OrderItem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Hand-rolled parser for order journal lines:
+ * orderId|customer|table|staff|status|itemId:itemName:qty:price;...|orderTimeMillis
+ *
+ * Lines written before the order time was stored end after the items (or the
+ * status). Their time is taken from the date in an ORD-yyyyMMdd-nnnnn order id,
+ * or left at the load time when the id carries no date.
+ *
+ * Fields are located by scanning the bytes for delimiters, numbers are parsed
+ * in place and repeated strings (item ids and names, customers, staff,
+ * statuses) are interned in a table keyed by their bytes, so after warm-up a
+ * line only allocates its Order, OrderItems and order id. Lines that do not
+ * parse are skipped.
+ *
+ * A parser instance is not thread-safe; use one per thread.
+ */
+public class OrderLineParser {
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FIELDS = 7;
+
+    // Start and end offsets of the fields of the current line / item
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private final int[] partStart = new int[4];
+    private final int[] partEnd = new int[4];
+
+    // Interned strings, open addressing keyed by byte content
+    private byte[][] internKeys = new byte[1024][];
+    private String[] internValues = new String[1024];
+    private int internCount = 0;
+
+    // Parse every line of a stream
+    public List<Order> parseAll(InputStream in) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer view = ByteBuffer.wrap(buffer);
+        int length = 0;
+
+        while (true) {
+            if (length == buffer.length) {
+                // A single line longer than the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                view = ByteBuffer.wrap(buffer);
+            }
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    addIfParsed(orders, view, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            // Keep the incomplete last line for the next read
+            System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+            length -= lineStart;
+        }
+        addIfParsed(orders, view, 0, length);
+        return orders;
+    }
+
+    // Parse every line in [start, end) of a buffer
+    public void parseRange(ByteBuffer buffer, int start, int end, List<Order> out) {
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                addIfParsed(out, buffer, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        addIfParsed(out, buffer, lineStart, end);
+    }
+
+    private void addIfParsed(List<Order> out, ByteBuffer buffer, int start, int end) {
+        Order order = parseLine(buffer, start, end);
+        if (order != null) {
+            out.add(order);
+        }
+    }
+
+    /**
+     * Parse one line held in [start, end) of a buffer, without the line break.
+     * Returns null for blank or malformed lines.
+     */
+    public Order parseLine(ByteBuffer buffer, int start, int end) {
+        // Trim surrounding whitespace, including a '\r' from Windows line breaks
+        while (start < end && buffer.get(start) <= ' ') start++;
+        while (end > start && buffer.get(end - 1) <= ' ') end--;
+        if (start == end) {
+            return null;
+        }
+
+        int fields = split(buffer, start, end, (byte) '|', fieldStart, fieldEnd);
+        if (fields < 5) {
+            return null;
+        }
+
+        int tableNumber = parseInt(buffer, fieldStart[2], fieldEnd[2]);
+        if (tableNumber == Integer.MIN_VALUE) {
+            return null;
+        }
+
+        List<OrderItem> items = new ArrayList<>(4);
+        if (fields > 5) {
+            int itemStart = fieldStart[5];
+            int itemsEnd = fieldEnd[5];
+            while (itemStart <= itemsEnd) {
+                int itemEnd = indexOf(buffer, itemStart, itemsEnd, (byte) ';');
+                OrderItem item = parseItem(buffer, itemStart, itemEnd);
+                if (item != null) {
+                    items.add(item);
+                }
+                itemStart = itemEnd + 1;
+            }
+        }
+
+        Order order = new Order(
+                string(buffer, fieldStart[0], fieldEnd[0]),
+                intern(buffer, fieldStart[1], fieldEnd[1]),
+                tableNumber,
+                intern(buffer, fieldStart[3], fieldEnd[3]),
+                intern(buffer, fieldStart[4], fieldEnd[4]),
+                items);
+
+        long orderTime = fields > 6 ? parseLong(buffer, fieldStart[6], fieldEnd[6]) : Long.MIN_VALUE;
+        if (orderTime == Long.MIN_VALUE) {
+            orderTime = timeFromOrderId(buffer, fieldStart[0], fieldEnd[0]);
+        }
+        if (orderTime != Long.MIN_VALUE) {
+            order.setOrderTime(new Date(orderTime));
+        }
+        return order;
+    }
+
+    // Start of the day in an ORD-yyyyMMdd-nnnnn id, or Long.MIN_VALUE
+    private static long timeFromOrderId(ByteBuffer buffer, int start, int end) {
+        if (end - start < 13 || buffer.get(start) != 'O' || buffer.get(start + 1) != 'R'
+                || buffer.get(start + 2) != 'D' || buffer.get(start + 3) != '-' || buffer.get(start + 12) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int date = parseInt(buffer, start + 4, start + 12);
+        int month = date / 100 % 100;
+        int day = date % 100;
+        if (date == Integer.MIN_VALUE || month < 1 || month > 12 || day < 1 || day > 31) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return LocalDate.of(date / 10000, month, day).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private OrderItem parseItem(ByteBuffer buffer, int start, int end) {
+        if (split(buffer, start, end, (byte) ':', partStart, partEnd) < 4) {
+            return null;
+        }
+        int quantity = parseInt(buffer, partStart[2], partEnd[2]);
+        long priceCents = parseCents(buffer, partStart[3], partEnd[3]);
+        if (quantity == Integer.MIN_VALUE || priceCents == Long.MIN_VALUE) {
+            return null;
+        }
+        OrderItem item = new OrderItem(intern(buffer, partStart[0], partEnd[0]),
+                intern(buffer, partStart[1], partEnd[1]), quantity, 0);
+        item.setPriceCents(priceCents);
+        return item;
+    }
+
+    // Record up to starts.length fields; the last field runs to the end of the range
+    private static int split(ByteBuffer buffer, int start, int end, byte delimiter, int[] starts, int[] ends) {
+        int count = 0;
+        int fieldBegin = start;
+        for (int i = start; i < end && count < starts.length - 1; i++) {
+            if (buffer.get(i) == delimiter) {
+                starts[count] = fieldBegin;
+                ends[count] = i;
+                count++;
+                fieldBegin = i + 1;
+            }
+        }
+        starts[count] = fieldBegin;
+        ends[count] = end;
+        count++;
+        // The last field may still contain delimiters beyond what we need
+        if (count == starts.length) {
+            ends[count - 1] = indexOf(buffer, fieldBegin, end, delimiter);
+        }
+        return count;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int start, int end, byte b) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    // Returns Integer.MIN_VALUE when the field is not an integer
+    static int parseInt(ByteBuffer buffer, int start, int end) {
+        if (start >= end) {
+            return Integer.MIN_VALUE;
+        }
+        boolean negative = buffer.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 9) {
+            return Integer.MIN_VALUE;
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // Returns Long.MIN_VALUE when the field is not a non-negative integer
+    static long parseLong(ByteBuffer buffer, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parses an amount such as 2.5 or 12.75 straight into cents, rounding half up
+     * after the second decimal like {@link Money#parse}, which handles anything
+     * unusual (exponents, very long numbers). Returns Long.MIN_VALUE when the
+     * field is not a number.
+     */
+    static long parseCents(ByteBuffer buffer, int start, int end) {
+        if (start >= end) {
+            return Long.MIN_VALUE;
+        }
+        boolean negative = buffer.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        long cents = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean roundUp = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9' && digits < 15) {
+                digits++;
+                if (fractionDigits < 0) {
+                    cents = cents * 10 + (b - '0');
+                } else if (fractionDigits < 2) {
+                    cents = cents * 10 + (b - '0');
+                    fractionDigits++;
+                } else if (fractionDigits == 2) {
+                    roundUp = b >= '5';
+                    fractionDigits++;
+                }
+            } else {
+                return slowParseCents(buffer, start, end);
+            }
+        }
+        if (digits == 0) {
+            return Long.MIN_VALUE;
+        }
+        // Scale to cents: no decimals and one decimal need padding
+        if (fractionDigits <= 0) {
+            cents *= 100;
+        } else if (fractionDigits == 1) {
+            cents *= 10;
+        }
+        if (roundUp) {
+            cents++;
+        }
+        return negative ? -cents : cents;
+    }
+
+    private static long slowParseCents(ByteBuffer buffer, int start, int end) {
+        try {
+            return Money.parse(string(buffer, start, end));
+        } catch (NumberFormatException | ArithmeticException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static String string(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    // Return the shared String for these bytes, creating it on first sight
+    private String intern(ByteBuffer buffer, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        int mask = internKeys.length - 1;
+        int slot = mix(hash) & mask;
+        while (internKeys[slot] != null) {
+            if (matches(internKeys[slot], buffer, start, end)) {
+                return internValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        byte[] key = new byte[end - start];
+        buffer.get(start, key);
+        String value = new String(key, CHARSET);
+        internKeys[slot] = key;
+        internValues[slot] = value;
+        if (++internCount * 2 > internKeys.length) {
+            growInternTable();
+        }
+        return value;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growInternTable() {
+        byte[][] oldKeys = internKeys;
+        String[] oldValues = internValues;
+        internKeys = new byte[oldKeys.length * 2][];
+        internValues = new String[oldKeys.length * 2];
+        int mask = internKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            byte[] key = oldKeys[i];
+            if (key == null) {
+                continue;
+            }
+            int slot = mix(Arrays.hashCode(key)) & mask;
+            while (internKeys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            internKeys[slot] = key;
+            internValues[slot] = oldValues[i];
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
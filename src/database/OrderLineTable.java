@@ -0,0 +1,257 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column-per-field copy of order lines for report queries: one row per order
+ * item, stored in parallel primitive arrays, so revenue and ranking queries are
+ * plain loops over arrays instead of walks over Order and OrderItem objects.
+ *
+ * Item names and staff names are stored as dense indexes into
+ * {@link ItemIndexMap}s and prices as cents. Adding an order that is already
+ * in the table marks its old rows as superseded, so the table can be kept up to
+ * date with journal records as they come in. {@link SalesAggregates} sums a
+ * table of the whole history when it rebuilds its running totals.
+ *
+ * Not thread-safe.
+ */
+public class OrderLineTable {
+    public static final byte PENDING = 0;
+    public static final byte COMPLETED = 1;
+    public static final byte CANCELLED = 2;
+    public static final byte OTHER = 3;
+    public static final byte SUPERSEDED = -1;
+
+    private final ItemIndexMap items = new ItemIndexMap();
+    private final ItemIndexMap staff = new ItemIndexMap();
+    private final ItemIndexMap orders = new ItemIndexMap();
+
+    // Row columns
+    private int[] itemIndex;
+    private int[] qty;
+    private long[] priceCents;
+    private int[] staffIndex;
+    private long[] epochMinute;
+    private byte[] status;
+    private int rows = 0;
+
+    // Per order: first row, number of rows, staff index and minute of its latest record
+    private int[] orderFirstRow = new int[64];
+    private int[] orderRowCount = new int[64];
+    private int[] orderStaffIndex = new int[64];
+    private long[] orderMinute = new long[64];
+
+    public OrderLineTable() {
+        this(1024);
+    }
+
+    public OrderLineTable(int expectedRows) {
+        int capacity = Math.max(16, expectedRows);
+        itemIndex = new int[capacity];
+        qty = new int[capacity];
+        priceCents = new long[capacity];
+        staffIndex = new int[capacity];
+        epochMinute = new long[capacity];
+        status = new byte[capacity];
+    }
+
+    // Build a table from a list of orders, e.g. straight from the loader
+    public static OrderLineTable of(List<Order> orders) {
+        OrderLineTable table = new OrderLineTable(orders.size() * 3);
+        for (Order order : orders) {
+            table.add(order);
+        }
+        return table;
+    }
+
+    // Add an order, replacing the rows of an earlier record with the same id
+    public void add(Order order) {
+        int knownOrders = orders.size();
+        int orderIndex = orders.add(order.getOrderId());
+        if (orderIndex < knownOrders) {
+            // Known order: retire the rows of its previous record
+            int first = orderFirstRow[orderIndex];
+            Arrays.fill(status, first, first + orderRowCount[orderIndex], SUPERSEDED);
+        } else if (orderIndex == orderFirstRow.length) {
+            orderFirstRow = Arrays.copyOf(orderFirstRow, orderFirstRow.length * 2);
+            orderRowCount = Arrays.copyOf(orderRowCount, orderRowCount.length * 2);
+            orderStaffIndex = Arrays.copyOf(orderStaffIndex, orderStaffIndex.length * 2);
+            orderMinute = Arrays.copyOf(orderMinute, orderMinute.length * 2);
+        }
+
+        List<OrderItem> orderItems = order.getOrderItems();
+        ensureCapacity(rows + orderItems.size());
+        byte statusCode = statusCode(order.getStatus());
+        int staffRow = staff.add(order.getStaffName() == null ? "" : order.getStaffName());
+        long minute = order.getOrderTime().getTime() / 60_000;
+
+        orderFirstRow[orderIndex] = rows;
+        orderRowCount[orderIndex] = orderItems.size();
+        orderStaffIndex[orderIndex] = staffRow;
+        orderMinute[orderIndex] = minute;
+        for (int i = 0; i < orderItems.size(); i++) {
+            OrderItem item = orderItems.get(i);
+            itemIndex[rows] = items.add(item.getItemName());
+            qty[rows] = item.getQuantity();
+            priceCents[rows] = item.getPriceCents();
+            staffIndex[rows] = staffRow;
+            epochMinute[rows] = minute;
+            status[rows] = statusCode;
+            rows++;
+        }
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public int itemCount() {
+        return items.size();
+    }
+
+    public String itemName(int index) {
+        return items.key(index);
+    }
+
+    public int orderCount() {
+        return orders.size();
+    }
+
+    public int staffCount() {
+        return staff.size();
+    }
+
+    public String staffName(int index) {
+        return staff.key(index);
+    }
+
+    // Revenue in cents over every live row
+    public long revenueCents() {
+        long total = 0;
+        for (int row = 0; row < rows; row++) {
+            if (status[row] != SUPERSEDED) {
+                total += qty[row] * priceCents[row];
+            }
+        }
+        return total;
+    }
+
+    // Revenue in cents of orders placed in [fromMinute, toMinute)
+    public long revenueCents(long fromMinute, long toMinute) {
+        long total = 0;
+        for (int row = 0; row < rows; row++) {
+            long minute = epochMinute[row];
+            if (status[row] != SUPERSEDED && minute >= fromMinute && minute < toMinute) {
+                total += qty[row] * priceCents[row];
+            }
+        }
+        return total;
+    }
+
+    // Revenue in cents per period: period i is [startMinutes[i], startMinutes[i + 1]),
+    // the last one is open-ended and rows before the first start are left out
+    public long[] revenueCents(long[] startMinutes) {
+        long[] revenue = new long[startMinutes.length];
+        for (int row = 0; row < rows; row++) {
+            if (status[row] != SUPERSEDED) {
+                int period = period(startMinutes, epochMinute[row]);
+                if (period >= 0) {
+                    revenue[period] += qty[row] * priceCents[row];
+                }
+            }
+        }
+        return revenue;
+    }
+
+    // Number of orders per period, with the periods of revenueCents(long[])
+    public int[] orderCounts(long[] startMinutes) {
+        int[] counts = new int[startMinutes.length];
+        for (int order = 0; order < orders.size(); order++) {
+            int period = period(startMinutes, orderMinute[order]);
+            if (period >= 0) {
+                counts[period]++;
+            }
+        }
+        return counts;
+    }
+
+    // Earliest order minute, or Long.MAX_VALUE when the table is empty
+    public long firstMinute() {
+        long first = Long.MAX_VALUE;
+        for (int order = 0; order < orders.size(); order++) {
+            first = Math.min(first, orderMinute[order]);
+        }
+        return first;
+    }
+
+    // Latest order minute, or Long.MIN_VALUE when the table is empty
+    public long lastMinute() {
+        long last = Long.MIN_VALUE;
+        for (int order = 0; order < orders.size(); order++) {
+            last = Math.max(last, orderMinute[order]);
+        }
+        return last;
+    }
+
+    // Quantity sold per item index, optionally only over completed orders
+    public long[] itemQuantities(boolean completedOnly) {
+        long[] quantities = new long[items.size()];
+        for (int row = 0; row < rows; row++) {
+            byte s = status[row];
+            if (completedOnly ? s == COMPLETED : s != SUPERSEDED) {
+                quantities[itemIndex[row]] += qty[row];
+            }
+        }
+        return quantities;
+    }
+
+    // Revenue in cents per staff index
+    public long[] staffRevenueCents() {
+        long[] revenue = new long[staff.size()];
+        for (int row = 0; row < rows; row++) {
+            if (status[row] != SUPERSEDED) {
+                revenue[staffIndex[row]] += qty[row] * priceCents[row];
+            }
+        }
+        return revenue;
+    }
+
+    // Number of orders per staff index
+    public int[] staffOrderCounts() {
+        int[] counts = new int[staff.size()];
+        for (int order = 0; order < orders.size(); order++) {
+            counts[orderStaffIndex[order]]++;
+        }
+        return counts;
+    }
+
+    static byte statusCode(String status) {
+        if ("PENDING".equalsIgnoreCase(status)) return PENDING;
+        if ("COMPLETED".equalsIgnoreCase(status)) return COMPLETED;
+        if ("CANCELLED".equalsIgnoreCase(status)) return CANCELLED;
+        return OTHER;
+    }
+
+    // Period a minute falls in, or -1 before the first start
+    private static int period(long[] startMinutes, long minute) {
+        int found = Arrays.binarySearch(startMinutes, minute);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= itemIndex.length) {
+            return;
+        }
+        int capacity = Math.max(needed, itemIndex.length * 2);
+        itemIndex = Arrays.copyOf(itemIndex, capacity);
+        qty = Arrays.copyOf(qty, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        staffIndex = Arrays.copyOf(staffIndex, capacity);
+        epochMinute = Arrays.copyOf(epochMinute, capacity);
+        status = Arrays.copyOf(status, capacity);
+    }
+}
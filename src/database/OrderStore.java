@@ -0,0 +1,308 @@
+package database;
+
+import models.Order;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Order history split into one journal file per month:
+ * files/orders/yyyy-MM.txt, chosen by the order time, so every record of an
+ * order lands in the same file. Range queries only open the months they
+ * cover. Old months can be gzipped into yyyy-MM.txt.gz with
+ * {@link #archive(YearMonth)}; a late record for an archived month simply
+ * starts a new yyyy-MM.txt next to the archive.
+ *
+ * The single files/orders.txt used before partitioning is still read, ahead of
+ * all months, but no longer written to.
+ *
+ * Appends and reads share the journal read lock. Rewrites (compaction, full
+ * replace, archiving) take the write lock so no append can slip in between
+ * reading a file and replacing it, and no reader sees a file half replaced.
+ * Reading never checkpoints the storage log: records not checkpointed yet are
+ * read from it alongside the file on disk.
+ */
+public class OrderStore {
+    private static final String LEGACY_FILE = Utils.dataFile("orders.txt");
+    private static final String PARTITION_DIR = Utils.dataFile("orders");
+    private static final String ARCHIVE_SUFFIX = ".gz";
+
+    private static final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
+    // Bumped whenever a journal file is rewritten rather than appended to
+    private static volatile long generation = 0;
+    // Month file last created by materialise(), cleared when files are removed
+    private static volatile String materialised;
+
+    static {
+        new File(PARTITION_DIR).mkdirs();
+    }
+
+    static ReentrantReadWriteLock journalLock() {
+        return journalLock;
+    }
+
+    static long generation() {
+        return generation;
+    }
+
+    // Journal file for the orders of one month
+    public static String partitionFile(YearMonth month) {
+        return PARTITION_DIR + "/" + month + ".txt";
+    }
+
+    public static YearMonth monthOf(Order order) {
+        return YearMonth.from(order.getOrderTime().toInstant().atZone(ZoneId.systemDefault()));
+    }
+
+    // Append an order record to its month - false if it could not be written
+    public static boolean append(Order order) {
+        journalLock.readLock().lock();
+        try {
+            String file = partitionFile(monthOf(order));
+            return materialise(file) && OrderJournal.append(file, order);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    // Every live order, compacting files that carry many superseded records
+    public static List<Order> loadAll() throws IOException {
+        List<Order> records = new ArrayList<>();
+        for (File file : files(null, null)) {
+            List<Order> fileRecords = read(file);
+            List<Order> live = OrderJournal.fold(fileRecords);
+            if (!isArchive(file) && OrderJournal.needsCompaction(fileRecords.size(), live.size())) {
+                live = compact(file);
+            }
+            records.addAll(live);
+        }
+        return OrderJournal.fold(records);
+    }
+
+    // Every live order, without rewriting anything
+    public static List<Order> readAll() throws IOException {
+        return loadRange(null, null);
+    }
+
+    // Live orders placed on any day between from and to, inclusive
+    public static List<Order> loadRange(LocalDate from, LocalDate to) throws IOException {
+        List<Order> records = new ArrayList<>();
+        journalLock.readLock().lock();
+        try {
+            for (File file : files(from == null ? null : YearMonth.from(from), to == null ? null : YearMonth.from(to))) {
+                records.addAll(readFile(file));
+            }
+        } finally {
+            journalLock.readLock().unlock();
+        }
+        List<Order> orders = OrderJournal.fold(records);
+        if (from == null && to == null) {
+            return orders;
+        }
+
+        List<Order> inRange = new ArrayList<>();
+        for (Order order : orders) {
+            LocalDate day = order.getOrderTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            if ((from == null || !day.isBefore(from)) && (to == null || !day.isAfter(to))) {
+                inRange.add(order);
+            }
+        }
+        return inRange;
+    }
+
+    public static List<Order> loadMonth(YearMonth month) throws IOException {
+        return loadRange(month.atDay(1), month.atEndOfMonth());
+    }
+
+    public static List<Order> loadToday() throws IOException {
+        LocalDate today = LocalDate.now();
+        return loadRange(today, today);
+    }
+
+    /**
+     * Replace the whole order history. Months that no longer have orders and the
+     * old orders.txt are removed; archived months are left as they are.
+     *
+     * Every file is rewritten in one storage transaction, so a crash leaves
+     * either the old history or the new one. Files that drop out are emptied in
+     * that transaction and only deleted once it has been checkpointed.
+     */
+    public static void replaceAll(List<Order> orders) throws IOException {
+        Map<String, List<String>> contents = new TreeMap<>();
+        for (Order order : orders) {
+            contents.computeIfAbsent(partitionFile(monthOf(order)), f -> new ArrayList<>())
+                    .add(OrderJournal.formatOrder(order));
+        }
+
+        journalLock.writeLock().lock();
+        try {
+            List<File> removed = new ArrayList<>();
+            for (File file : files(null, null)) {
+                if (!isArchive(file) && !contents.containsKey(file.getPath())) {
+                    contents.put(file.getPath(), Collections.emptyList());
+                    removed.add(file);
+                }
+            }
+            for (String file : contents.keySet()) {
+                if (!materialise(file)) {
+                    throw new IOException("Could not create " + file);
+                }
+            }
+            StorageEngine.replace(contents);
+            generation++;
+
+            StorageEngine.checkpoint();
+            materialised = null;
+            for (File file : removed) {
+                Files.deleteIfExists(file.toPath());
+            }
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gzip every month before the given one. Returns the number of months archived.
+     */
+    public static int archive(YearMonth before) throws IOException {
+        journalLock.writeLock().lock();
+        try {
+            StorageEngine.checkpoint();
+            materialised = null;
+            int archived = 0;
+            for (File file : files(null, before.minusMonths(1))) {
+                if (isArchive(file) || file.getPath().equals(LEGACY_FILE)) {
+                    continue;
+                }
+                archiveFile(file);
+                archived++;
+            }
+            if (archived > 0) {
+                generation++;
+            }
+            return archived;
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Journal files overlapping [from, to] (null for open ends), in read order:
+     * the old orders.txt first, then per month the archive before the live file.
+     */
+    static List<File> files(YearMonth from, YearMonth to) {
+        List<File> files = new ArrayList<>();
+        File legacy = new File(LEGACY_FILE);
+        if (legacy.exists()) {
+            files.add(legacy);
+        }
+
+        File[] partitions = new File(PARTITION_DIR).listFiles();
+        if (partitions == null) {
+            return files;
+        }
+        TreeMap<String, File> sorted = new TreeMap<>();
+        for (File file : partitions) {
+            YearMonth month = partitionMonth(file);
+            if (month == null || (from != null && month.isBefore(from)) || (to != null && month.isAfter(to))) {
+                continue;
+            }
+            // Sort key puts yyyy-MM.txt.gz ahead of yyyy-MM.txt
+            sorted.put(month + (isArchive(file) ? "a" : "b"), file);
+        }
+        files.addAll(sorted.values());
+        return files;
+    }
+
+    static boolean isArchive(File file) {
+        return file.getName().endsWith(ARCHIVE_SUFFIX);
+    }
+
+    // Month of a partition file name, or null for anything else in the directory
+    private static YearMonth partitionMonth(File file) {
+        String name = file.getName();
+        if (!name.matches("\\d{4}-\\d{2}\\.txt(\\.gz)?")) {
+            return null;
+        }
+        return YearMonth.parse(name.substring(0, 7));
+    }
+
+    /**
+     * Create a month file on disk before its first record is written, so it is
+     * listed by {@link #files(YearMonth, YearMonth)} while its records are
+     * still only in the storage log. Done once per month: afterwards the file
+     * stays on disk until it is archived or the history is replaced.
+     */
+    private static boolean materialise(String file) {
+        if (file.equals(materialised)) {
+            return true;
+        }
+        try {
+            new File(file).createNewFile();
+            materialised = file;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error creating " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static List<Order> read(File file) throws IOException {
+        journalLock.readLock().lock();
+        try {
+            return readFile(file);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the journal lock, so the file cannot be rewritten while it is read
+    private static List<Order> readFile(File file) throws IOException {
+        if (isArchive(file)) {
+            try (InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                return new OrderLineParser().parseAll(in);
+            }
+        }
+        return MappedOrderReader.readRecords(file.getPath());
+    }
+
+    // Rewrite a journal file with only its live records
+    private static List<Order> compact(File file) throws IOException {
+        journalLock.writeLock().lock();
+        try {
+            List<Order> live = OrderJournal.fold(MappedOrderReader.readRecords(file.getPath()));
+            OrderJournal.compact(file.getPath(), live);
+            generation++;
+            return live;
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    // Append a month file to its archive (creating it if needed) and delete it
+    private static void archiveFile(File file) throws IOException {
+        File archive = new File(file.getPath() + ARCHIVE_SUFFIX);
+        Path temp = Paths.get(archive.getPath() + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            if (archive.exists()) {
+                try (InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(archive)))) {
+                    in.transferTo(out);
+                }
+            }
+            Files.copy(file.toPath(), out);
+        }
+        try {
+            Files.move(temp, archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.delete(file.toPath());
+    }
+}
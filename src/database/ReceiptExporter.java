@@ -0,0 +1,158 @@
+package database;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports archived receipts in bulk into one file, e.g. at the end of the day.
+ *
+ * Receipts are read from the {@link ReceiptStore} and rendered on a pool of
+ * worker threads (cafe.export.threads, one per core by default) while the
+ * calling thread writes them out in order. At most cafe.export.window receipts
+ * are read or rendered ahead of the writer, so memory stays bounded however
+ * many are exported.
+ */
+public class ReceiptExporter {
+    private static final int THREADS = Integer.getInteger("cafe.export.threads",
+            Runtime.getRuntime().availableProcessors());
+    private static final int WINDOW = Integer.getInteger("cafe.export.window", THREADS * 16);
+    private static final int REPORT_EVERY = 256;
+
+    public enum Format {
+        // Receipts one after another, separated by a blank line
+        TEXT,
+        // One receipt per page: each is followed by a form feed, for sending to a printer in one job
+        SPOOL
+    }
+
+    // Progress of an export: done out of total receipts
+    @FunctionalInterface
+    public interface Listener {
+        void progress(long done, long total);
+    }
+
+    public static class Result {
+        private final int exported;
+        private final int missing;
+        private final long nanos;
+
+        Result(int exported, int missing, long nanos) {
+            this.exported = exported;
+            this.missing = missing;
+            this.nanos = nanos;
+        }
+
+        public int getExported() {
+            return exported;
+        }
+
+        // Order ids that had no archived receipt
+        public int getMissing() {
+            return missing;
+        }
+
+        public long getMillis() {
+            return nanos / 1_000_000;
+        }
+
+        public double getReceiptsPerSecond() {
+            return nanos == 0 ? 0 : exported * 1e9 / nanos;
+        }
+    }
+
+    // Export the receipts of the given orders into a file, replacing it
+    public static Result export(List<String> orderIds, Path file, Format format, Listener listener) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return export(orderIds, out, format, listener);
+        }
+    }
+
+    public static Result export(List<String> orderIds, OutputStream sink, Format format, Listener listener)
+            throws IOException {
+        long start = System.nanoTime();
+        int total = orderIds.size();
+        byte[] separator = format == Format.SPOOL ? new byte[]{'\f'} : new byte[]{'\n'};
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "receipt-export-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Rendered receipts in order; null for an order without a receipt
+        ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        OutputStream out = new BufferedOutputStream(sink, 64 * 1024);
+        int submitted = 0;
+        int exported = 0;
+        int missing = 0;
+        try {
+            for (int done = 0; done < total; done++) {
+                // Keep the workers busy, but never more than WINDOW receipts ahead of the writer
+                while (submitted < total && inFlight.size() < WINDOW) {
+                    String orderId = orderIds.get(submitted++);
+                    inFlight.add(workers.submit(() -> render(orderId)));
+                }
+                byte[] receipt = take(inFlight.poll());
+                if (receipt == null) {
+                    missing++;
+                } else {
+                    if (exported > 0 && format == Format.TEXT) {
+                        out.write(separator);
+                    }
+                    out.write(receipt);
+                    if (format == Format.SPOOL) {
+                        out.write(separator);
+                    }
+                    exported++;
+                }
+                if (listener != null && (done % REPORT_EVERY == 0 || done == total - 1)) {
+                    listener.progress(done + 1, total);
+                }
+            }
+            out.flush();
+        } finally {
+            workers.shutdownNow();
+        }
+
+        Result result = new Result(exported, missing, System.nanoTime() - start);
+        Logger.log("Exported " + exported + " receipts in " + result.getMillis() + " ms ("
+                + Math.round(result.getReceiptsPerSecond()) + " receipts/s)");
+        return result;
+    }
+
+    private static byte[] render(String orderId) throws IOException {
+        ReceiptStore.StoredReceipt receipt = ReceiptStore.load(orderId);
+        if (receipt == null) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        receipt.writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] take(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Receipt export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not render receipt: " + cause.getMessage(), cause);
+        }
+    }
+}
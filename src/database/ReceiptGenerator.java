@@ -1,60 +1,23 @@
 package database;
 
 import models.Order;
-import models.OrderItem;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
 
 public class ReceiptGenerator {
+    // Receipt text dated now; the layout is in ReceiptTemplate
     public static String generateReceipt(Order order, double discount) {
-        StringBuilder receipt = new StringBuilder();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
-
-        // Header
-        receipt.append("===================================\n");
-        receipt.append("           CODEBREW CAFE            \n");
-        receipt.append("===================================\n\n");
-
-        // Receipt details
-        receipt.append("Receipt No: ").append(order.getOrderId()).append("\n");
-        receipt.append("Date: ").append(dateFormat.format(new Date())).append("\n");
-        receipt.append("Staff: ").append(order.getStaffName()).append("\n\n");
-
-        // Customer info
-        receipt.append("Customer: ").append(order.getCustomerName()).append("\n");
-        receipt.append("Table No: ").append(order.getTableNumber()).append("\n\n");
-
-        // Order items
-        receipt.append("Items:\n");
-        receipt.append(String.format("%-20s %-5s %-8s %-8s\n", "Item", "Qty", "Price", "Total"));
-        receipt.append("-----------------------------------\n");
-
-        double subtotal = 0;
-        for (OrderItem item : order.getOrderItems()) {
-            double itemTotal = item.getPrice() * item.getQuantity();
-            subtotal += itemTotal;
-            receipt.append(String.format("%-20s %-5d $%-7.2f $%-7.2f\n",
-                    item.getItemName(), item.getQuantity(), item.getPrice(), itemTotal));
-        }
-
-        // Totals
-        receipt.append("-----------------------------------\n");
-        receipt.append(String.format("%-34s $%-7.2f\n", "Subtotal:", subtotal));
-
-        if (discount > 0) {
-            double discountAmount = subtotal * (discount / 100);
-            receipt.append(String.format("%-34s $%-7.2f\n", "Discount (" + discount + "%):", discountAmount));
-            receipt.append(String.format("%-34s $%-7.2f\n", "Total:", subtotal - discountAmount));
-        } else {
-            receipt.append(String.format("%-34s $%-7.2f\n", "Total:", subtotal));
-        }
+        return generateReceipt(order, discount, LocalDateTime.now());
+    }
 
-        // Footer
-        receipt.append("\n===================================\n");
-        receipt.append("          Thank you for visiting!          \n");
-        receipt.append("          Please come again!          \n");
-        receipt.append("===================================\n");
+    public static String generateReceipt(Order order, double discount, LocalDateTime time) {
+        return ReceiptTemplate.render(order, discount, time);
+    }
 
-        return receipt.toString();
+    // Write the receipt as UTF-8 to a sink without building a String
+    public static void writeReceipt(Order order, double discount, OutputStream sink) throws IOException {
+        ReceiptTemplate.write(order, discount, LocalDateTime.now(), sink);
     }
-}
\ No newline at end of file
+}
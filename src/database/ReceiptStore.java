@@ -0,0 +1,549 @@
+package database;
+
+import models.Order;
+import models.OrderItem;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Receipt archive with lookup by order id, replacing the free-text
+ * receipts.txt.
+ *
+ * A receipt is stored as the order it was printed for, its discount and its
+ * time; the text is rendered from those through {@link ReceiptTemplate} only
+ * when it is asked for, and comes out the same as when it was printed.
+ *
+ * Records are appended to numbered segment files in files/receipts
+ * (000001.seg, ...), each an int length, a flags byte and the record. A new
+ * segment is started once the current one passes cafe.receipts.segmentBytes.
+ * index.dat lists order id, segment and offset of every record and is read
+ * into a map on first use, so a reprint is one map lookup and one positioned
+ * read. A receipt saved again for the same order replaces the earlier one.
+ *
+ * With cafe.receipts.compress set, a segment is rewritten as a .segz file of
+ * deflated records once a newer segment is started.
+ *
+ * Receipts from the old receipts.txt are imported as text the first time the
+ * archive is opened empty; the file itself is left alone.
+ */
+public class ReceiptStore {
+    private static final String DIR = Utils.dataFile("receipts");
+    private static final String LEGACY_FILE = Utils.dataFile("receipts.txt");
+    private static final String INDEX_FILE = DIR + "/index.dat";
+    private static final long SEGMENT_BYTES = Long.getLong("cafe.receipts.segmentBytes", 8L * 1024 * 1024);
+    private static final boolean COMPRESS = Boolean.getBoolean("cafe.receipts.compress");
+
+    private static final byte FLAG_DEFLATED = 1;
+    private static final byte FLAG_TEXT = 2;
+    private static final int RECORD_HEADER = 5;
+
+    // Location of each receipt by order id: segment << 40 | compressed << 39 | offset
+    private static Map<String, Long> index;
+    private static int segment;                 // segment appended to
+    private static long segmentLength;
+
+    private static final Map<Path, FileChannel> readers = new HashMap<>();
+
+    /**
+     * A stored receipt. Receipts imported from receipts.txt only have their
+     * text; the others render it on demand.
+     */
+    public static class StoredReceipt {
+        private final String orderId;
+        private final Order order;
+        private final double discount;
+        private final LocalDateTime time;
+        private final String text;
+
+        private StoredReceipt(String orderId, Order order, double discount, LocalDateTime time, String text) {
+            this.orderId = orderId;
+            this.order = order;
+            this.discount = discount;
+            this.time = time;
+            this.text = text;
+        }
+
+        public String getOrderId() {
+            return orderId;
+        }
+
+        // The order as it was when the receipt was printed; null for imported receipts
+        public Order getOrder() {
+            return order;
+        }
+
+        public double getDiscount() {
+            return discount;
+        }
+
+        public LocalDateTime getTime() {
+            return time;
+        }
+
+        public String render() {
+            return text != null ? text : ReceiptTemplate.render(order, discount, time);
+        }
+
+        public void writeTo(OutputStream sink) throws IOException {
+            if (text != null) {
+                sink.write(text.getBytes(StandardCharsets.UTF_8));
+            } else {
+                ReceiptTemplate.write(order, discount, time, sink);
+            }
+        }
+    }
+
+    // Archive the receipt of an order - false if it could not be written
+    public static synchronized boolean save(Order order, double discount, LocalDateTime time) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(order.getOrderId());
+            out.writeLong(time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            out.writeDouble(discount);
+            writeOrder(out, order);
+            append(order.getOrderId(), (byte) 0, bytes.toByteArray());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving receipt: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The receipt of an order, or null if none was archived
+    public static StoredReceipt load(String orderId) throws IOException {
+        Long location = locate(orderId);
+        if (location == null) {
+            return null;
+        }
+        try {
+            return read(location);
+        } catch (NoSuchFileException | ClosedChannelException e) {
+            // The segment was compressed in the meantime; the index points to the new file
+            location = locate(orderId);
+            return location == null ? null : read(location);
+        }
+    }
+
+    private static synchronized Long locate(String orderId) throws IOException {
+        open();
+        return index.get(orderId);
+    }
+
+    // Receipt text of an order for a reprint, or null if none was archived
+    public static String reprint(String orderId) throws IOException {
+        StoredReceipt receipt = load(orderId);
+        return receipt == null ? null : receipt.render();
+    }
+
+    // Order ids of every archived receipt, in the order they were first saved
+    public static synchronized List<String> orderIds() throws IOException {
+        open();
+        return new ArrayList<>(index.keySet());
+    }
+
+    public static synchronized int size() throws IOException {
+        open();
+        return index.size();
+    }
+
+    private static void append(String orderId, byte flags, byte[] record) throws IOException {
+        open();
+        if (segmentLength >= SEGMENT_BYTES) {
+            int closed = segment;
+            segment++;
+            segmentLength = 0;
+            if (COMPRESS) {
+                compress(closed);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER + record.length);
+        buffer.putInt(record.length).put(flags).put(record).flip();
+        Path file = segmentFile(segment, false);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long position = segmentLength;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+        long location = location(segment, false, segmentLength);
+        segmentLength += RECORD_HEADER + record.length;
+        writeIndex(orderId, location);
+    }
+
+    private static void writeIndex(String orderId, long location) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(INDEX_FILE, true)))) {
+            out.writeUTF(orderId);
+            out.writeLong(location);
+        }
+        index.put(orderId, location);
+    }
+
+    private static StoredReceipt read(long location) throws IOException {
+        int segmentNumber = (int) (location >>> 40);
+        boolean compressed = (location & (1L << 39)) != 0;
+        long offset = location & ((1L << 39) - 1);
+        byte[] record;
+        byte flags;
+        FileChannel channel = reader(segmentFile(segmentNumber, compressed));
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        readFully(channel, header, offset);
+        record = new byte[header.getInt(0)];
+        flags = header.get(4);
+        readFully(channel, ByteBuffer.wrap(record), offset + RECORD_HEADER);
+        if ((flags & FLAG_DEFLATED) != 0) {
+            record = inflate(record);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        String orderId = in.readUTF();
+        if ((flags & FLAG_TEXT) != 0) {
+            return new StoredReceipt(orderId, null, 0, null, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneId.systemDefault());
+        double discount = in.readDouble();
+        return new StoredReceipt(orderId, readOrder(in, orderId), discount, time, null);
+    }
+
+    // Open read channel of a segment; positioned reads can share it across threads
+    private static FileChannel reader(Path file) throws IOException {
+        synchronized (readers) {
+            FileChannel channel = readers.get(file);
+            if (channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+                readers.put(file, channel);
+            }
+            return channel;
+        }
+    }
+
+    private static void closeReader(Path file) {
+        synchronized (readers) {
+            FileChannel channel = readers.remove(file);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing receipt segment: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void writeOrder(DataOutputStream out, Order order) throws IOException {
+        out.writeUTF(order.getCustomerName());
+        out.writeInt(order.getTableNumber());
+        out.writeUTF(order.getStaffName());
+        out.writeUTF(order.getStatus());
+        out.writeLong(order.getOrderTime().getTime());
+        out.writeInt(order.getOrderItems().size());
+        for (OrderItem item : order.getOrderItems()) {
+            out.writeUTF(item.getItemId());
+            out.writeUTF(item.getItemName());
+            out.writeInt(item.getQuantity());
+            out.writeLong(item.getPriceCents());
+        }
+    }
+
+    private static Order readOrder(DataInputStream in, String orderId) throws IOException {
+        String customer = in.readUTF();
+        int table = in.readInt();
+        String staff = in.readUTF();
+        String status = in.readUTF();
+        long orderTime = in.readLong();
+        int itemCount = in.readInt();
+        List<OrderItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            OrderItem item = new OrderItem(in.readUTF(), in.readUTF(), in.readInt(), 0);
+            item.setPriceCents(in.readLong());
+            items.add(item);
+        }
+        Order order = new Order(orderId, customer, table, staff, status, items);
+        order.setOrderTime(new Date(orderTime));
+        return order;
+    }
+
+    // Load the index on first use, recovering records written after the last index entry
+    private static void open() throws IOException {
+        if (index != null) {
+            return;
+        }
+        new File(DIR).mkdirs();
+        Map<String, Long> loaded = new LinkedHashMap<>();
+        Path indexFile = Paths.get(INDEX_FILE);
+        if (Files.exists(indexFile)) {
+            byte[] bytes = Files.readAllBytes(indexFile);
+            ByteArrayInputStream entries = new ByteArrayInputStream(bytes);
+            DataInputStream in = new DataInputStream(entries);
+            int valid = 0;
+            while (entries.available() > 0) {
+                try {
+                    String orderId = in.readUTF();
+                    loaded.put(orderId, in.readLong());
+                } catch (EOFException e) {
+                    break;
+                }
+                valid = bytes.length - entries.available();
+            }
+            if (valid < bytes.length) {
+                // An entry cut off by a crash; its record is indexed again below
+                try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+        }
+        index = loaded;
+
+        // Append to the highest segment, unless it was already compressed
+        segment = 1;
+        File[] files = new File(DIR).listFiles((dir, name) -> name.endsWith(".seg") || name.endsWith(".segz"));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                int number = Integer.parseInt(name.substring(0, name.indexOf('.')));
+                segment = Math.max(segment, name.endsWith(".segz") ? number + 1 : number);
+            }
+        }
+        recoverSegment();
+
+        if (index.isEmpty()) {
+            importLegacy();
+        }
+    }
+
+    /**
+     * Index records of the last segment that were written but not indexed, and
+     * cut off a record that was only partly written.
+     */
+    private static void recoverSegment() throws IOException {
+        Path file = segmentFile(segment, false);
+        if (!Files.exists(file)) {
+            segmentLength = 0;
+            return;
+        }
+        long length = Files.size(file);
+        // Records up to the last indexed one are in the index already
+        long lastIndexed = -1;
+        for (long location : index.values()) {
+            if ((location >>> 40) == segment && (location & (1L << 39)) == 0) {
+                lastIndexed = Math.max(lastIndexed, location & ((1L << 39) - 1));
+            }
+        }
+        long position = Math.max(0, lastIndexed);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            while (position + RECORD_HEADER <= length) {
+                header.clear();
+                readFully(channel, header, position);
+                int recordLength = header.getInt(0);
+                long end = position + RECORD_HEADER + recordLength;
+                if (recordLength < 0 || end > length) {
+                    break;
+                }
+                if (position > lastIndexed) {
+                    // Written after the last index entry: read its order id and index it
+                    byte[] record = new byte[recordLength];
+                    readFully(channel, ByteBuffer.wrap(record), position + RECORD_HEADER);
+                    if ((header.get(4) & FLAG_DEFLATED) != 0) {
+                        record = inflate(record);
+                    }
+                    String orderId = new DataInputStream(new ByteArrayInputStream(record)).readUTF();
+                    writeIndex(orderId, location(segment, false, position));
+                }
+                position = end;
+            }
+            if (position < length) {
+                System.err.println("Error reading receipts: dropping " + (length - position)
+                        + " unreadable bytes at the end of " + file);
+                channel.truncate(position);
+            }
+        }
+        segmentLength = position;
+    }
+
+    // Import the receipts written to receipts.txt before the archive existed
+    private static void importLegacy() {
+        File legacy = new File(LEGACY_FILE);
+        if (!legacy.exists()) {
+            return;
+        }
+        int imported = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(legacy))) {
+            StringBuilder text = null;
+            String orderId = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals("=== NEW RECEIPT ===")) {
+                    text = new StringBuilder();
+                    orderId = null;
+                } else if (text != null && line.equals("===================")) {
+                    // The receipt ends with a newline, written as an empty line before the marker
+                    if (orderId != null) {
+                        appendText(orderId, text.substring(0, Math.max(0, text.length() - 1)));
+                        imported++;
+                    }
+                    text = null;
+                } else if (text != null) {
+                    if (orderId == null && line.startsWith("Receipt No: ")) {
+                        orderId = line.substring("Receipt No: ".length());
+                    }
+                    text.append(line).append('\n');
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error importing receipts: " + e.getMessage());
+        }
+        if (imported > 0) {
+            System.out.println("Imported " + imported + " receipts from " + LEGACY_FILE);
+        }
+    }
+
+    private static void appendText(String orderId, String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(orderId);
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        append(orderId, FLAG_TEXT, bytes.toByteArray());
+    }
+
+    /**
+     * Rewrite a finished segment as deflated records in a .segz file and point
+     * the index at it. The .seg file is removed only after the index entries
+     * are written, so a crash in between leaves the old locations valid.
+     */
+    private static void compress(int segmentNumber) {
+        Path source = segmentFile(segmentNumber, false);
+        Path target = segmentFile(segmentNumber, true);
+        if (!Files.exists(source)) {
+            return;
+        }
+        try {
+            Map<Long, Long> moved = new LinkedHashMap<>();
+            Path temp = Paths.get(target + ".tmp");
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                long length = in.size();
+                long position = 0;
+                long written = 0;
+                ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+                Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+                while (position + RECORD_HEADER <= length) {
+                    header.clear();
+                    readFully(in, header, position);
+                    byte[] record = new byte[header.getInt(0)];
+                    readFully(in, ByteBuffer.wrap(record), position + RECORD_HEADER);
+                    byte flags = header.get(4);
+                    if ((flags & FLAG_DEFLATED) == 0) {
+                        record = deflate(deflater, record);
+                        flags |= FLAG_DEFLATED;
+                    }
+                    ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER + record.length);
+                    buffer.putInt(record.length).put(flags).put(record).flip();
+                    moved.put(location(segmentNumber, false, position), location(segmentNumber, true, written));
+                    while (buffer.hasRemaining()) {
+                        written += out.write(buffer, written);
+                    }
+                    position += RECORD_HEADER + header.getInt(0);
+                }
+                deflater.end();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (Map.Entry<String, Long> entry : new ArrayList<>(index.entrySet())) {
+                Long location = moved.get(entry.getValue());
+                if (location != null) {
+                    writeIndex(entry.getKey(), location);
+                }
+            }
+            closeReader(source);
+            Files.delete(source);
+        } catch (IOException e) {
+            // The segment stays uncompressed
+            System.err.println("Error compressing receipts: " + e.getMessage());
+        }
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        byte[] chunk = new byte[4096];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(chunk);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed receipt");
+                }
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed receipt: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long location(int segmentNumber, boolean compressed, long offset) {
+        return ((long) segmentNumber << 40) | (compressed ? 1L << 39 : 0) | offset;
+    }
+
+    private static Path segmentFile(int segmentNumber, boolean compressed) {
+        return Paths.get(DIR, String.format("%06d", segmentNumber) + (compressed ? ".segz" : ".seg"));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Receipt record is cut off");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package database;
+
+import models.Money;
+import models.Order;
+import models.OrderItem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The receipt layout, compiled once into segments: fixed text, already
+ * encoded as UTF-8, and fields with the width they are left-aligned in.
+ *
+ * A receipt is rendered into a buffer kept per thread. Numbers, amounts and
+ * the date are formatted into a reused StringBuilder and copied into the
+ * buffer, so rendering creates no Strings; {@link #write} hands the bytes to a
+ * sink in one call.
+ *
+ * Fields are padded by characters, like String.format, so the output is the
+ * same as the format-based receipt it replaces.
+ */
+public final class ReceiptTemplate {
+    private static final String RULE = "===================================\n";
+    private static final String LINE = "-----------------------------------\n";
+
+    private static final Segment[] HEADER = compile(RULE
+            + "           CODEBREW CAFE            \n"
+            + RULE + "\n"
+            + "Receipt No: {orderId}\n"
+            + "Date: {date}\n"
+            + "Staff: {staff}\n\n"
+            + "Customer: {customer}\n"
+            + "Table No: {table}\n\n"
+            + "Items:\n"
+            + "Item                 Qty   Price    Total   \n"
+            + LINE);
+    private static final Segment[] ITEM = compile("{itemName:20} {quantity:5} ${price:7} ${itemTotal:7}\n");
+    private static final Segment[] TOTALS_RULE = compile(LINE);
+    private static final Segment[] TOTAL = compile("{label:34} ${amount:7}\n");
+    private static final Segment[] FOOTER = compile("\n" + RULE
+            + "          Thank you for visiting!          \n"
+            + "          Please come again!          \n"
+            + RULE);
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    // Buffers bigger than this are not kept after a render
+    private static final int MAX_KEPT_BUFFER = 64 * 1024;
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    private enum Field {
+        ORDER_ID, DATE, STAFF, CUSTOMER, TABLE, ITEM_NAME, QUANTITY, PRICE, ITEM_TOTAL, LABEL, AMOUNT
+    }
+
+    // Either fixed bytes or a field left-aligned in width characters
+    private static final class Segment {
+        final byte[] text;
+        final Field field;
+        final int width;
+
+        Segment(byte[] text, Field field, int width) {
+            this.text = text;
+            this.field = field;
+            this.width = width;
+        }
+    }
+
+    private ReceiptTemplate() {
+    }
+
+    // Render a receipt as text
+    public static String render(Order order, double discount, LocalDateTime time) {
+        Buffer buffer = fill(order, discount, time);
+        String receipt = new String(buffer.bytes, 0, buffer.size, StandardCharsets.UTF_8);
+        release(buffer);
+        return receipt;
+    }
+
+    // Render a receipt as UTF-8 straight into a sink
+    public static void write(Order order, double discount, LocalDateTime time, OutputStream sink) throws IOException {
+        Buffer buffer = fill(order, discount, time);
+        try {
+            sink.write(buffer.bytes, 0, buffer.size);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private static Buffer fill(Order order, double discount, LocalDateTime time) {
+        Buffer buffer = BUFFER.get();
+        buffer.size = 0;
+        Values values = buffer.values;
+        values.order = order;
+        values.time = time;
+        render(HEADER, values, buffer);
+
+        long subtotal = 0;
+        for (OrderItem item : order.getOrderItems()) {
+            values.item = item;
+            values.itemTotal = item.getTotalCents();
+            subtotal += values.itemTotal;
+            render(ITEM, values, buffer);
+        }
+        values.item = null;
+
+        render(TOTALS_RULE, values, buffer);
+        total(buffer, "Subtotal:", -1, subtotal);
+        if (discount > 0) {
+            long discountAmount = Money.percentOf(subtotal, discount);
+            total(buffer, "Discount (", discount, discountAmount);
+            total(buffer, "Total:", -1, subtotal - discountAmount);
+        } else {
+            total(buffer, "Total:", -1, subtotal);
+        }
+        render(FOOTER, values, buffer);
+        values.order = null;
+        return buffer;
+    }
+
+    // A total line; with a discount percent the label becomes e.g. "Discount (10.0%):"
+    private static void total(Buffer buffer, String label, double percent, long cents) {
+        Values values = buffer.values;
+        values.label.setLength(0);
+        values.label.append(label);
+        if (percent >= 0) {
+            values.label.append(percent).append("%):");
+        }
+        values.amount = cents;
+        render(TOTAL, values, buffer);
+    }
+
+    private static void release(Buffer buffer) {
+        if (buffer.bytes.length > MAX_KEPT_BUFFER) {
+            BUFFER.remove();
+        }
+    }
+
+    private static void render(Segment[] segments, Values values, Buffer buffer) {
+        for (Segment segment : segments) {
+            if (segment.text != null) {
+                buffer.append(segment.text);
+                continue;
+            }
+            StringBuilder scratch = buffer.scratch;
+            scratch.setLength(0);
+            switch (segment.field) {
+                case ORDER_ID: buffer.pad(buffer.append(values.order.getOrderId()), segment.width); continue;
+                case STAFF: buffer.pad(buffer.append(values.order.getStaffName()), segment.width); continue;
+                case CUSTOMER: buffer.pad(buffer.append(values.order.getCustomerName()), segment.width); continue;
+                case ITEM_NAME: buffer.pad(buffer.append(values.item.getItemName()), segment.width); continue;
+                case LABEL: buffer.pad(buffer.append(values.label), segment.width); continue;
+                case DATE: DATE_FORMAT.formatTo(values.time, scratch); break;
+                case TABLE: scratch.append(values.order.getTableNumber()); break;
+                case QUANTITY: scratch.append(values.item.getQuantity()); break;
+                case PRICE: Money.appendTo(scratch, values.item.getPriceCents()); break;
+                case ITEM_TOTAL: Money.appendTo(scratch, values.itemTotal); break;
+                case AMOUNT: Money.appendTo(scratch, values.amount); break;
+            }
+            buffer.pad(buffer.append(scratch), segment.width);
+        }
+    }
+
+    /**
+     * Split a layout into segments. "{name}" is a field, "{name:width}" a field
+     * left-aligned in width characters; names are the Field constants in camel
+     * case.
+     */
+    private static Segment[] compile(String layout) {
+        List<Segment> segments = new ArrayList<>();
+        int position = 0;
+        while (position < layout.length()) {
+            int open = layout.indexOf('{', position);
+            if (open < 0) {
+                open = layout.length();
+            }
+            if (open > position) {
+                segments.add(new Segment(layout.substring(position, open).getBytes(StandardCharsets.UTF_8), null, 0));
+            }
+            if (open == layout.length()) {
+                break;
+            }
+            int close = layout.indexOf('}', open);
+            String[] parts = layout.substring(open + 1, close).split(":");
+            String name = parts[0].replaceAll("([A-Z])", "_$1").toUpperCase();
+            segments.add(new Segment(null, Field.valueOf(name), parts.length > 1 ? Integer.parseInt(parts[1]) : 0));
+            position = close + 1;
+        }
+        return segments.toArray(new Segment[0]);
+    }
+
+    // What the fields of the line being rendered show
+    private static final class Values {
+        Order order;
+        LocalDateTime time;
+        OrderItem item;
+        long itemTotal;
+        final StringBuilder label = new StringBuilder(32);
+        long amount;
+    }
+
+    // Growable UTF-8 byte buffer, reused by each thread
+    private static final class Buffer {
+        byte[] bytes = new byte[2048];
+        int size;
+        final StringBuilder scratch = new StringBuilder(32);
+        final Values values = new Values();
+
+        void append(byte[] text) {
+            ensure(text.length);
+            System.arraycopy(text, 0, bytes, size, text.length);
+            size += text.length;
+        }
+
+        // Append text as UTF-8 and return its length in chars; null is written as "null" like StringBuilder
+        int append(CharSequence text) {
+            if (text == null) {
+                text = "null";
+            }
+            int length = text.length();
+            ensure(length * 3);
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    bytes[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xC0 | (c >> 6));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogate, replaced like String.getBytes does
+                    bytes[size++] = '?';
+                } else {
+                    bytes[size++] = (byte) (0xE0 | (c >> 12));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return length;
+        }
+
+        // Spaces after a field of length chars to fill width
+        void pad(int length, int width) {
+            int spaces = width - length;
+            if (spaces > 0) {
+                ensure(spaces);
+                for (int i = 0; i < spaces; i++) {
+                    bytes[size++] = ' ';
+                }
+            }
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -1,75 +1,110 @@
 package database;
 
+import models.Money;
 import models.Order;
 import models.OrderItem;
 
-import java.io.File;
 import java.text.SimpleDateFormat;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class ReportGenerator {
 
-    private static int month,year;
-
     /**
      * Calculates total revenue from all orders.
      */
     public static double calculateTotalRevenue(List<Order> orders) {
-        return orders.stream()
-                .mapToDouble(Order::calculateTotal)
-                .sum();
+        long total = 0;
+        for (Order order : orders) {
+            total += order.calculateTotalCents();
+        }
+        return Money.toDouble(total);
     }
 
     /**
-     * Calculates revenue for a specific month and year.
+     * Calculates revenue for the current month.
      */
     public static double calculateMonthlyIncome(List<Order> orders) {
-        return orders.stream()
-                .filter(order -> {
-                    Calendar cal = Calendar.getInstance();
-                    cal.setTime(order.getOrderTime());
-                    return cal.get(Calendar.MONTH) == (month - 1) && cal.get(Calendar.YEAR) == year;
-                })
-                .mapToDouble(Order::calculateTotal)
-                .sum();
+        return calculateMonthlyIncome(orders, YearMonth.now());
     }
 
     /**
-     * Returns the name of the top-selling item.
+     * Calculates revenue for a specific month and year.
      */
-    public static String getTopSellingItem(List<Order> orders) {
-        Map<String, Integer> itemCountMap = new HashMap<>();
+    public static double calculateMonthlyIncome(List<Order> orders, YearMonth month) {
+        ZoneId zone = ZoneId.systemDefault();
+        long start = month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
 
+        long total = 0;
         for (Order order : orders) {
-            for (OrderItem item : order.getOrderItems()) {
-                itemCountMap.put(item.getItemName(),
-                        itemCountMap.getOrDefault(item.getItemName(), 0) + item.getQuantity());
+            long time = order.getOrderTime().getTime();
+            if (time >= start && time < end) {
+                total += order.calculateTotalCents();
             }
         }
+        return Money.toDouble(total);
+    }
+
+    /**
+     * Returns the name of the top-selling item.
+     */
+    public static String getTopSellingItem(List<Order> orders) {
+        ItemIndexMap itemCounts = countItems(orders, false);
+        int top = itemCounts.maxLongIndex();
+        return top < 0 ? "No Items Found" : itemCounts.key(top);
+    }
 
-        return itemCountMap.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("No Items Found");
+    /**
+     * Returns the n best-selling items over completed orders and their sold
+     * quantity (descending), without sorting every item.
+     */
+    public static List<Map.Entry<String, Long>> getTopSellingItems(List<Order> orders, int n) {
+        ItemIndexMap itemCounts = countItems(orders, true);
+        TopSellers topSellers = TopSellers.exact(n);
+        for (int i = 0; i < itemCounts.size(); i++) {
+            topSellers.add(itemCounts.key(i), itemCounts.getLong(i));
+        }
+        return topSellers.top(n);
     }
 
     /**
      * Returns a sorted list of all items and their sold quantity (descending).
      */
     public static List<Map.Entry<String, Integer>> getAllItemSalesRanking(List<Order> orders) {
-        Map<String, Integer> itemCountMap = new HashMap<>();
+        ItemIndexMap itemCounts = countItems(orders, false);
+
+        List<Map.Entry<String, Integer>> ranking = new ArrayList<>(itemCounts.size());
+        for (int i = 0; i < itemCounts.size(); i++) {
+            ranking.add(new AbstractMap.SimpleEntry<>(itemCounts.key(i), (int) itemCounts.getLong(i)));
+        }
+        ranking.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        return ranking;
+    }
 
+    // Quantity sold per item name, without boxing per order line. Each item id is
+    // resolved to the index of its name once (kept as index + 1 in the id map's int
+    // column) and lines add by that index; a renamed item is resolved again.
+    private static ItemIndexMap countItems(List<Order> orders, boolean completedOnly) {
+        ItemIndexMap itemCounts = new ItemIndexMap();
+        ItemIndexMap itemIds = new ItemIndexMap();
         for (Order order : orders) {
-            for (OrderItem item : order.getOrderItems()) {
-                itemCountMap.put(item.getItemName(),
-                        itemCountMap.getOrDefault(item.getItemName(), 0) + item.getQuantity());
+            if (completedOnly && !"COMPLETED".equalsIgnoreCase(order.getStatus())) continue;
+            List<OrderItem> items = order.getOrderItems();
+            for (int i = 0; i < items.size(); i++) {
+                OrderItem item = items.get(i);
+                String name = item.getItemName();
+                int id = itemIds.add(item.getItemId());
+                int index = itemIds.getInt(id) - 1;
+                if (index < 0 || (itemCounts.key(index) != name && !itemCounts.key(index).equals(name))) {
+                    index = itemCounts.add(name);
+                    itemIds.setInt(id, index + 1);
+                }
+                itemCounts.addLong(index, item.getQuantity());
             }
         }
-
-        return itemCountMap.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .collect(Collectors.toList());
+        return itemCounts;
     }
 
     /**
@@ -91,78 +126,8 @@ public class ReportGenerator {
     }
 
     public static String findTopSellingItem(List<Order> orders) {
-        Map<String, Integer> itemSalesMap = new HashMap<>();
-
-        for (Order order : orders) {
-            if (!"COMPLETED".equalsIgnoreCase(order.getStatus())) continue; // Only count completed orders
-            for (OrderItem item : order.getOrderItems()) {
-                String name = item.getItemName();
-                int qty = item.getQuantity();
-                itemSalesMap.put(name, itemSalesMap.getOrDefault(name, 0) + qty);
-            }
-        }
-
-        String topItem = "N/A";
-        int maxQty = 0;
-
-        for (Map.Entry<String, Integer> entry : itemSalesMap.entrySet()) {
-            if (entry.getValue() > maxQty) {
-                topItem = entry.getKey();
-                maxQty = entry.getValue();
-            }
-        }
-
-        return topItem;
+        ItemIndexMap itemCounts = countItems(orders, true); // Only count completed orders
+        int top = itemCounts.maxLongIndex();
+        return top < 0 ? "N/A" : itemCounts.key(top);
     }
-
-    public static List<Order> loadOrdersFromFile(String s) {
-        List<Order> orders = new ArrayList<>();
-
-        File file = new File("files/orders.txt");  // <-- Make sure this is correct
-        if (!file.exists()) {
-            System.err.println("orders.txt not found at: " + file.getAbsolutePath());
-            return orders;
-        }
-
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
-
-                String[] parts = line.split("\\|");
-                if (parts.length < 6) continue;
-
-                String orderId = parts[0];
-                String customer = parts[1];
-                int table = Integer.parseInt(parts[2]);
-                String staff = parts[3];
-                String status = parts[4];
-                String itemsStr = parts[5];
-
-                List<OrderItem> orderItems = new ArrayList<>();
-                for (String item : itemsStr.split(";")) {
-                    String[] itemParts = item.split(":");
-                    if (itemParts.length == 4) {
-                        String itemId = itemParts[0];
-                        String itemName = itemParts[1];
-                        int qty = Integer.parseInt(itemParts[2]);
-                        double price = Double.parseDouble(itemParts[3]);
-
-                        orderItems.add(new OrderItem(itemId, itemName, qty, price));
-                    }
-                }
-
-                Order order = new Order(orderId, customer, table, staff, status, orderItems);
-
-                orders.add(order);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        return orders;
-    }
-
-
 }
-
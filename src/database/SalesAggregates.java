@@ -0,0 +1,656 @@
+package database;
+
+import models.Money;
+import models.Order;
+import models.OrderItem;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Running sales totals kept up to date as orders are committed, so the reports
+ * do not have to rescan the whole order history.
+ *
+ * Totals follow the definitions in {@link ReportGenerator}: revenue, monthly
+ * revenue and staff totals count every live order, item quantities only count
+ * COMPLETED orders. When a later journal record replaces an order, the old
+ * record's contribution is taken back out first. COMPLETED and CANCELLED are
+ * final - the order service refuses any change after them - so a contribution
+ * is only kept, by order id, while the order is still open. The saved totals
+ * therefore hold the running sums plus the open orders, not the history.
+ *
+ * The totals are saved to files/sales_aggregates.dat together with the journal
+ * files of {@link OrderStore} and the length of each they cover, counting
+ * records still in the storage log. On the next start only the records written
+ * after that point are read, so every record is applied exactly once. If a
+ * covered file was rewritten or a month archived in the meantime the totals
+ * are rebuilt from the whole journal, summed over an {@link OrderLineTable}.
+ */
+public class SalesAggregates {
+    private static final String CHECKPOINT_FILE = Utils.dataFile("sales_aggregates.dat");
+    private static final int FORMAT_VERSION = 1;
+    // Best sellers kept ready for the reports
+    private static final int TOP_SELLERS = 10;
+
+    // Bytes before the watermark used to recognise an unchanged journal file
+    private static final int FINGERPRINT_BYTES = 256;
+
+    // Appenders share the read lock; loading and saving take the write lock so
+    // the saved totals always match the journal length they are saved with
+    private static final ReentrantReadWriteLock journalLock = OrderStore.journalLock();
+
+    private static boolean loaded = false;
+    private static boolean dirty = false;
+    // OrderStore generation when last saved; compaction or archiving makes the saved lengths stale
+    private static long savedGeneration = -1;
+
+    // Revenue is summed in cents so the totals do not drift over many orders
+    private static long totalRevenue = 0;
+    private static final TopSellers itemQuantities = TopSellers.exact(TOP_SELLERS);
+    private static final Map<String, Long> monthlyRevenue = new TreeMap<>();
+    private static final Map<String, Long> staffRevenue = new HashMap<>();
+    private static final Map<String, Integer> staffOrders = new HashMap<>();
+
+    // Contribution of the latest record of every order that is neither COMPLETED nor CANCELLED
+    private static final Map<String, Contribution> openOrders = new HashMap<>();
+    // Final status of the closed orders of one month, read from the journal when first asked for
+    private static YearMonth closedMonth;
+    private static final Map<String, String> closedOrders = new HashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SalesAggregates::save, "sales-aggregates-shutdown"));
+    }
+
+    // What a single order record adds to the totals, and its status
+    private static class Contribution {
+        private static final String[] NO_NAMES = new String[0];
+        private static final int[] NO_QUANTITIES = new int[0];
+
+        final long total;
+        final String status;
+        final String staff;
+        final String month;
+        final String[] itemNames;
+        final int[] quantities;
+
+        // Status, staff, month and item names repeat across orders and are interned
+        Contribution(long total, String status, String staff, String month, String[] itemNames, int[] quantities) {
+            this.total = total;
+            this.status = status.intern();
+            this.staff = staff.intern();
+            this.month = month.intern();
+            this.itemNames = itemNames;
+            this.quantities = quantities;
+        }
+
+        static Contribution of(Order order) {
+            String[] names = NO_NAMES;
+            int[] quantities = NO_QUANTITIES;
+            if ("COMPLETED".equalsIgnoreCase(order.getStatus())) {
+                List<OrderItem> items = order.getOrderItems();
+                names = new String[items.size()];
+                quantities = new int[items.size()];
+                for (int i = 0; i < items.size(); i++) {
+                    names[i] = items.get(i).getItemName().intern();
+                    quantities[i] = items.get(i).getQuantity();
+                }
+            }
+            String month = OrderStore.monthOf(order).toString();
+            String status = order.getStatus() == null ? "" : order.getStatus().toUpperCase();
+            String staff = order.getStaffName() == null ? "" : order.getStaffName();
+            return new Contribution(order.calculateTotalCents(), status, staff, month, names, quantities);
+        }
+
+        boolean isFinal() {
+            return isFinal(status);
+        }
+
+        static boolean isFinal(String status) {
+            return "COMPLETED".equals(status) || "CANCELLED".equals(status);
+        }
+
+        void apply(int sign) {
+            totalRevenue += sign * total;
+            addTo(monthlyRevenue, month, sign * total);
+            addTo(staffRevenue, staff, sign * total);
+            staffOrders.merge(staff, sign, (a, b) -> a + b == 0 ? null : a + b);
+            for (int i = 0; i < itemNames.length; i++) {
+                itemQuantities.add(itemNames[i], (long) sign * quantities[i]);
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(total);
+            out.writeUTF(status);
+            out.writeUTF(staff);
+            out.writeUTF(month);
+            out.writeInt(itemNames.length);
+            for (int i = 0; i < itemNames.length; i++) {
+                out.writeUTF(itemNames[i]);
+                out.writeInt(quantities[i]);
+            }
+        }
+
+        static Contribution read(DataInputStream in) throws IOException {
+            long total = in.readLong();
+            String status = in.readUTF();
+            String staff = in.readUTF();
+            String month = in.readUTF();
+            int count = in.readInt();
+            String[] names = count == 0 ? NO_NAMES : new String[count];
+            int[] quantities = count == 0 ? NO_QUANTITIES : new int[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = in.readUTF().intern();
+                quantities[i] = in.readInt();
+            }
+            return new Contribution(total, status, staff, month, names, quantities);
+        }
+    }
+
+    /**
+     * Writes an order record through the given journal append and folds it into
+     * the totals if the append succeeded.
+     */
+    public static boolean commit(Order order, BooleanSupplier append) {
+        journalLock.readLock().lock();
+        try {
+            if (!append.getAsBoolean()) {
+                return false;
+            }
+            synchronized (SalesAggregates.class) {
+                if (loaded) {
+                    apply(order);
+                }
+            }
+            return true;
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    // Forget the totals after orders.txt was replaced wholesale; they are rebuilt on next use
+    public static void invalidate() {
+        journalLock.writeLock().lock();
+        try {
+            synchronized (SalesAggregates.class) {
+                reset();
+                loaded = false;
+            }
+            new File(CHECKPOINT_FILE).delete();
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    public static double getTotalRevenue() {
+        ensureLoaded();
+        synchronized (SalesAggregates.class) {
+            return Money.toDouble(totalRevenue);
+        }
+    }
+
+    // Revenue for one month, e.g. YearMonth.now()
+    public static double getMonthlyRevenue(YearMonth month) {
+        ensureLoaded();
+        synchronized (SalesAggregates.class) {
+            return Money.toDouble(monthlyRevenue.getOrDefault(month.toString(), 0L));
+        }
+    }
+
+    // Revenue per month keyed by yyyy-MM, oldest first
+    public static Map<String, Double> getMonthlyRevenue() {
+        ensureLoaded();
+        synchronized (SalesAggregates.class) {
+            return toAmounts(monthlyRevenue, new TreeMap<>());
+        }
+    }
+
+    // Quantity sold per item name over completed orders
+    public static Map<String, Integer> getItemQuantities() {
+        ensureLoaded();
+        synchronized (SalesAggregates.class) {
+            Map<String, Integer> quantities = new HashMap<>();
+            for (Map.Entry<String, Long> entry : itemQuantities.counts().entrySet()) {
+                quantities.put(entry.getKey(), entry.getValue().intValue());
+            }
+            return quantities;
+        }
+    }
+
+    // Name of the item with the largest quantity sold, or "N/A"
+    public static String getTopSellingItem() {
+        ensureLoaded();
+        synchronized (SalesAggregates.class) {
+            return itemQuantities.topItem("N/A");
+        }
+    }
+
+    // Up to n best sellers with the quantity sold, highest first (n is capped at 10)
+    public static List<Map.Entry<String, Long>> getTopSellers(int n) {
+        ensureLoaded();
+        synchronized (SalesAggregates.class) {
+            return itemQuantities.top(n);
+        }
+    }
+
+    public static Map<String, Double> getStaffRevenue() {
+        ensureLoaded();
+        synchronized (SalesAggregates.class) {
+            return toAmounts(staffRevenue, new HashMap<>());
+        }
+    }
+
+    public static Map<String, Integer> getStaffOrderCounts() {
+        ensureLoaded();
+        synchronized (SalesAggregates.class) {
+            return new HashMap<>(staffOrders);
+        }
+    }
+
+    /**
+     * Status of the latest journal record of an order, upper case, or null if
+     * the journal has none. Open orders are answered from memory; otherwise the
+     * closed orders of the order's month are read once and kept until another
+     * month is asked for.
+     */
+    public static String statusOf(Order order) {
+        return statusOf(order.getOrderId(), OrderStore.monthOf(order));
+    }
+
+    // Status of an order whose records are in the journal of the given month
+    public static String statusOf(String orderId, YearMonth month) {
+        ensureLoaded();
+        synchronized (SalesAggregates.class) {
+            Contribution contribution = openOrders.get(orderId);
+            if (contribution != null) {
+                return contribution.status;
+            }
+            if (month.equals(closedMonth)) {
+                return closedOrders.get(orderId);
+            }
+        }
+
+        // No appends while the month is read, so none is missed before it is cached
+        journalLock.writeLock().lock();
+        try {
+            List<Order> orders = OrderStore.loadMonth(month);
+            synchronized (SalesAggregates.class) {
+                closedMonth = month;
+                closedOrders.clear();
+                for (Order closed : orders) {
+                    String status = closed.getStatus() == null ? "" : closed.getStatus().toUpperCase();
+                    if (Contribution.isFinal(status)) {
+                        closedOrders.put(closed.getOrderId(), status.intern());
+                    }
+                }
+                Contribution open = openOrders.get(orderId);
+                return open != null ? open.status : closedOrders.get(orderId);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading orders of " + month + ": " + e.getMessage());
+            return null;
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    // Load the saved totals and catch up on newer journal records, or rebuild from scratch
+    public static void ensureLoaded() {
+        synchronized (SalesAggregates.class) {
+            if (loaded) {
+                return;
+            }
+        }
+        journalLock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            Map<String, Long> covered = loadCheckpoint();
+            if (covered != null) {
+                dirty = catchUp(covered) > 0;
+            } else {
+                rebuild();
+                dirty = true;
+            }
+            loaded = true;
+        } catch (IOException e) {
+            System.err.println("Error loading sales totals: " + e.getMessage());
+            try {
+                rebuild();
+                loaded = true;
+                dirty = true;
+            } catch (IOException ex) {
+                System.err.println("Error rebuilding sales totals: " + ex.getMessage());
+            }
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+        save();
+    }
+
+    /**
+     * Save the totals with the journal files and the lengths they cover.
+     * Records still in the storage log are covered too: they are committed, and
+     * reach the file at the offsets they were logged at when the log is
+     * checkpointed or replayed.
+     */
+    public static void save() {
+        journalLock.writeLock().lock();
+        try {
+            if (!loaded || (!dirty && savedGeneration == OrderStore.generation())) {
+                return;
+            }
+            List<File> files = OrderStore.files(null, null);
+
+            Path target = Paths.get(CHECKPOINT_FILE);
+            Path temp = Paths.get(CHECKPOINT_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(files.size());
+                for (File file : files) {
+                    out.writeUTF(file.getPath());
+                    if (OrderStore.isArchive(file)) {
+                        out.writeLong(file.length());
+                        out.writeLong(0);
+                    } else {
+                        StorageEngine.View view = StorageEngine.view(file.getPath());
+                        long length = view.fileLength + view.pending.length;
+                        out.writeLong(length);
+                        out.writeLong(fingerprint(file, view, length));
+                    }
+                }
+                synchronized (SalesAggregates.class) {
+                    out.writeLong(totalRevenue);
+                    writeLongMap(out, itemQuantities.counts());
+                    writeLongMap(out, monthlyRevenue);
+                    writeLongMap(out, staffRevenue);
+                    writeIntMap(out, staffOrders);
+                    writeContributions(out, openOrders);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+            savedGeneration = OrderStore.generation();
+        } catch (IOException e) {
+            System.err.println("Error saving sales totals: " + e.getMessage());
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Caller holds the write lock. Reads the saved totals and returns the length
+     * covered per journal file, or null if there is no usable checkpoint: a
+     * covered file was rewritten or removed, or a month was archived since.
+     */
+    private static Map<String, Long> loadCheckpoint() throws IOException {
+        File file = new File(CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        List<File> files = OrderStore.files(null, null);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            Map<String, Long> covered = new HashMap<>();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                File journal = new File(in.readUTF());
+                long length = in.readLong();
+                long fingerprint = in.readLong();
+                if (!journal.exists()) {
+                    return null;
+                }
+                if (OrderStore.isArchive(journal)) {
+                    if (journal.length() != length) {
+                        return null;
+                    }
+                } else {
+                    StorageEngine.View view = StorageEngine.view(journal.getPath());
+                    if (view.fileLength + view.pending.length < length || fingerprint(journal, view, length) != fingerprint) {
+                        return null;
+                    }
+                }
+                covered.put(journal.getPath(), length);
+            }
+            for (File journal : files) {
+                if (OrderStore.isArchive(journal) && !covered.containsKey(journal.getPath())) {
+                    return null;
+                }
+            }
+
+            synchronized (SalesAggregates.class) {
+                reset();
+                totalRevenue = in.readLong();
+                int items = in.readInt();
+                for (int i = 0; i < items; i++) {
+                    itemQuantities.add(in.readUTF(), in.readLong());
+                }
+                readLongMap(in, monthlyRevenue);
+                readLongMap(in, staffRevenue);
+                readIntMap(in, staffOrders);
+                readContributions(in, openOrders);
+            }
+            return covered;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable sales totals: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Apply journal records written past the covered length of each file,
+     * including records still in the storage log.
+     */
+    private static int catchUp(Map<String, Long> covered) throws IOException {
+        int applied = 0;
+        for (File file : OrderStore.files(null, null)) {
+            if (OrderStore.isArchive(file)) {
+                continue;
+            }
+            long start = covered.getOrDefault(file.getPath(), 0L);
+            StorageEngine.View view = StorageEngine.view(file.getPath());
+            List<Order> records = new ArrayList<>();
+            if (view.fileLength > start) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    int length = (int) (view.fileLength - start);
+                    MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                    new OrderLineParser().parseRange(bytes, 0, length, records);
+                }
+            }
+            int pendingStart = (int) Math.max(0, start - view.fileLength);
+            if (view.pending.length > pendingStart) {
+                new OrderLineParser().parseRange(ByteBuffer.wrap(view.pending), pendingStart, view.pending.length, records);
+            }
+            synchronized (SalesAggregates.class) {
+                for (Order order : records) {
+                    apply(order);
+                }
+            }
+            applied += records.size();
+        }
+        return applied;
+    }
+
+    // Totals of the latest record of every order, as loops over a columnar copy of their lines
+    private static void rebuild() throws IOException {
+        List<Order> orders = OrderStore.readAll();
+        OrderLineTable table = OrderLineTable.of(orders);
+
+        // One period per calendar month from the first order to the last
+        List<YearMonth> months = new ArrayList<>();
+        if (table.orderCount() > 0) {
+            YearMonth last = monthOfMinute(table.lastMinute());
+            for (YearMonth month = monthOfMinute(table.firstMinute()); !month.isAfter(last); month = month.plusMonths(1)) {
+                months.add(month);
+            }
+        }
+        long[] monthStarts = new long[months.size()];
+        for (int i = 0; i < monthStarts.length; i++) {
+            monthStarts[i] = months.get(i).atDay(1).atStartOfDay(ZoneId.systemDefault()).toEpochSecond() / 60;
+        }
+
+        synchronized (SalesAggregates.class) {
+            reset();
+            totalRevenue = table.revenueCents();
+            long[] monthRevenue = table.revenueCents(monthStarts);
+            int[] monthOrders = table.orderCounts(monthStarts);
+            for (int i = 0; i < monthStarts.length; i++) {
+                if (monthOrders[i] > 0) {
+                    monthlyRevenue.put(months.get(i).toString(), monthRevenue[i]);
+                }
+            }
+            long[] staffCents = table.staffRevenueCents();
+            int[] staffCounts = table.staffOrderCounts();
+            for (int i = 0; i < staffCounts.length; i++) {
+                if (staffCounts[i] > 0) {
+                    String staff = table.staffName(i).intern();
+                    staffRevenue.put(staff, staffCents[i]);
+                    staffOrders.put(staff, staffCounts[i]);
+                }
+            }
+            long[] quantities = table.itemQuantities(true);
+            for (int i = 0; i < quantities.length; i++) {
+                if (quantities[i] != 0) {
+                    itemQuantities.add(table.itemName(i).intern(), quantities[i]);
+                }
+            }
+            for (Order order : orders) {
+                String status = order.getStatus() == null ? "" : order.getStatus().toUpperCase();
+                if (!Contribution.isFinal(status)) {
+                    openOrders.put(order.getOrderId(), Contribution.of(order));
+                }
+            }
+            dirty = true;
+        }
+    }
+
+    private static YearMonth monthOfMinute(long minute) {
+        return YearMonth.from(Instant.ofEpochSecond(minute * 60).atZone(ZoneId.systemDefault()));
+    }
+
+    // Caller holds the class lock
+    private static void apply(Order order) {
+        Contribution contribution = Contribution.of(order);
+        Contribution previous = openOrders.remove(order.getOrderId());
+        if (previous != null) {
+            previous.apply(-1);
+        }
+        contribution.apply(1);
+        if (!contribution.isFinal()) {
+            openOrders.put(order.getOrderId(), contribution);
+        } else if (closedMonth != null && closedMonth.toString().equals(contribution.month)) {
+            closedOrders.put(order.getOrderId(), contribution.status);
+        }
+        dirty = true;
+    }
+
+    private static void reset() {
+        totalRevenue = 0;
+        itemQuantities.clear();
+        monthlyRevenue.clear();
+        staffRevenue.clear();
+        staffOrders.clear();
+        openOrders.clear();
+        closedMonth = null;
+        closedOrders.clear();
+    }
+
+    private static void addTo(Map<String, Long> map, String key, long cents) {
+        map.merge(key, cents, Long::sum);
+    }
+
+    // Copy of a map of cents as dollar amounts for the public getters
+    private static Map<String, Double> toAmounts(Map<String, Long> cents, Map<String, Double> amounts) {
+        for (Map.Entry<String, Long> entry : cents.entrySet()) {
+            amounts.put(entry.getKey(), Money.toDouble(entry.getValue()));
+        }
+        return amounts;
+    }
+
+    // CRC of the committed bytes of a journal file just before the watermark, on disk or still in the log
+    private static long fingerprint(File file, StorageEngine.View view, long watermark) throws IOException {
+        CRC32 crc = new CRC32();
+        if (watermark > 0) {
+            long position = watermark - Math.min(FINGERPRINT_BYTES, watermark);
+            if (position < view.fileLength) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) (Math.min(watermark, view.fileLength) - position));
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    while (buffer.hasRemaining()) {
+                        int read = channel.read(buffer, position + buffer.position());
+                        if (read < 0) {
+                            break;
+                        }
+                    }
+                }
+                crc.update(buffer.array(), 0, buffer.position());
+            }
+            if (watermark > view.fileLength) {
+                int from = (int) Math.max(0, position - view.fileLength);
+                crc.update(view.pending, from, (int) (watermark - view.fileLength) - from);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void writeIntMap(DataOutputStream out, Map<String, Integer> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    private static void writeLongMap(DataOutputStream out, Map<String, Long> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Long> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    private static void writeContributions(DataOutputStream out, Map<String, Contribution> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Contribution> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    private static void readIntMap(DataInputStream in, Map<String, Integer> map) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            map.put(in.readUTF(), in.readInt());
+        }
+    }
+
+    private static void readLongMap(DataInputStream in, Map<String, Long> map) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            map.put(in.readUTF(), in.readLong());
+        }
+    }
+
+    private static void readContributions(DataInputStream in, Map<String, Contribution> map) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            map.put(in.readUTF(), Contribution.read(in));
+        }
+    }
+}
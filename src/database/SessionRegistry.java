@@ -0,0 +1,223 @@
+package database;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Open login sessions, safe to use from any thread.
+ *
+ * Each login gets a session id. A user can be logged in at several tills at
+ * once (this till is cafe.till, "till-1" by default) but only once per till;
+ * logging in again at the same till ends the earlier session. Sessions are
+ * found by id or by user and till in constant time.
+ *
+ * A session that has seen no {@link #touch(String)} for
+ * cafe.session.idleTimeoutMs (30 minutes by default, 0 to never time out) is
+ * ended by a sweeper that runs on a daemon thread.
+ *
+ * Counts and the average length of ended sessions are kept as sessions start
+ * and end, so they need no log parsing.
+ */
+public class SessionRegistry {
+    public static final String TILL = System.getProperty("cafe.till", "till-1");
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("cafe.session.idleTimeoutMs", 30L * 60 * 1000);
+
+    public enum EndReason {
+        LOGOUT, REPLACED, IDLE_TIMEOUT
+    }
+
+    public static class Session {
+        private final String id;
+        private final String username;
+        private final String till;
+        private final LocalDateTime loginTime;
+        private final long loginMillis;
+        private volatile long lastActivityMillis;
+
+        Session(String id, String username, String till) {
+            this.id = id;
+            this.username = username;
+            this.till = till;
+            this.loginTime = LocalDateTime.now();
+            this.loginMillis = System.currentTimeMillis();
+            this.lastActivityMillis = loginMillis;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getTill() {
+            return till;
+        }
+
+        public LocalDateTime getLoginTime() {
+            return loginTime;
+        }
+
+        public long getLastActivityMillis() {
+            return lastActivityMillis;
+        }
+
+        // Time since login
+        public Duration getDuration() {
+            return Duration.ofMillis(System.currentTimeMillis() - loginMillis);
+        }
+    }
+
+    private static final Map<String, Session> sessionsById = new ConcurrentHashMap<>();
+    // Sessions by user and till, see key()
+    private static final Map<String, Session> sessionsByUserTill = new ConcurrentHashMap<>();
+
+    private static final AtomicLong started = new AtomicLong();
+    private static final AtomicLong ended = new AtomicLong();
+    private static final AtomicLong timedOut = new AtomicLong();
+    private static final AtomicLong endedMillis = new AtomicLong();
+
+    // Told about every session that ends, on the thread that ended it
+    private static volatile BiConsumer<Session, EndReason> endListener;
+
+    private static ScheduledExecutorService sweeper;
+
+    // Start a session for a user at this till
+    public static Session open(String username) {
+        return open(username, TILL);
+    }
+
+    public static Session open(String username, String till) {
+        Session session = new Session(UUID.randomUUID().toString(), username, till);
+        sessionsById.put(session.id, session);
+        started.incrementAndGet();
+        Session previous = sessionsByUserTill.put(key(username, till), session);
+        if (previous != null) {
+            end(previous, EndReason.REPLACED);
+        }
+        startSweeper();
+        return session;
+    }
+
+    public static Session get(String sessionId) {
+        return sessionId == null ? null : sessionsById.get(sessionId);
+    }
+
+    // The session of a user at a till, or null
+    public static Session find(String username, String till) {
+        return sessionsByUserTill.get(key(username, till));
+    }
+
+    // Record activity so the session does not time out
+    public static void touch(String sessionId) {
+        Session session = get(sessionId);
+        if (session != null) {
+            session.lastActivityMillis = System.currentTimeMillis();
+        }
+    }
+
+    // End a session; returns it, or null if it had already ended
+    public static Session close(String sessionId) {
+        Session session = get(sessionId);
+        return session != null && end(session, EndReason.LOGOUT) ? session : null;
+    }
+
+    // End the session of a user at this till; returns it, or null if there was none
+    public static Session closeUser(String username) {
+        Session session = find(username, TILL);
+        return session != null && end(session, EndReason.LOGOUT) ? session : null;
+    }
+
+    public static List<Session> activeSessions() {
+        return new ArrayList<>(sessionsById.values());
+    }
+
+    public static int activeCount() {
+        return sessionsById.size();
+    }
+
+    public static long startedCount() {
+        return started.get();
+    }
+
+    public static long endedCount() {
+        return ended.get();
+    }
+
+    public static long timedOutCount() {
+        return timedOut.get();
+    }
+
+    // Average length of the sessions ended so far, 0 if none
+    public static long averageDurationMillis() {
+        long count = ended.get();
+        return count == 0 ? 0 : endedMillis.get() / count;
+    }
+
+    public static void setEndListener(BiConsumer<Session, EndReason> listener) {
+        endListener = listener;
+    }
+
+    // Only the caller that removes the session ends it
+    private static boolean end(Session session, EndReason reason) {
+        if (!sessionsById.remove(session.id, session)) {
+            return false;
+        }
+        sessionsByUserTill.remove(key(session.username, session.till), session);
+        ended.incrementAndGet();
+        endedMillis.addAndGet(System.currentTimeMillis() - session.loginMillis);
+        if (reason == EndReason.IDLE_TIMEOUT) {
+            timedOut.incrementAndGet();
+        }
+        BiConsumer<Session, EndReason> listener = endListener;
+        if (listener != null) {
+            listener.accept(session, reason);
+        }
+        return true;
+    }
+
+    // End sessions idle for longer than the timeout
+    static void sweep() {
+        long cutoff = System.currentTimeMillis() - IDLE_TIMEOUT_MS;
+        for (Session session : sessionsById.values()) {
+            if (session.lastActivityMillis < cutoff) {
+                end(session, EndReason.IDLE_TIMEOUT);
+            }
+        }
+    }
+
+    private static synchronized void startSweeper() {
+        if (sweeper != null || IDLE_TIMEOUT_MS <= 0) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Check a few times per timeout, but at most every minute
+        long period = Math.max(1, Math.min(IDLE_TIMEOUT_MS / 4, 60_000));
+        sweeper.scheduleAtFixedRate(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                System.err.println("Error ending idle sessions: " + e.getMessage());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static String key(String username, String till) {
+        return username + '\u0000' + till;
+    }
+}
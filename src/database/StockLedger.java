@@ -0,0 +1,122 @@
+package database;
+
+import models.MenuItem;
+import models.OrderItem;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * All-or-nothing stock reservations for orders.
+ *
+ * Every menu item carries its own atomic stock counter, so tills reserving
+ * different items never contend and tills reserving the same item only retry a
+ * compare-and-set. A reservation either takes stock for every line of the order
+ * or for none of them; it is then committed when the order goes through, which
+ * persists the deduction as one line of stock changes (see {@link MenuCatalog}),
+ * or released when the order is cancelled. Stock of an order that was committed
+ * earlier, possibly before a restart, is given back through {@link #taken(List)}.
+ */
+public class StockLedger {
+
+    /**
+     * Stock taken for one order. {@link #commit()} only has an effect on an
+     * open reservation and {@link #release()} only once; other calls are
+     * ignored.
+     */
+    public static class Reservation {
+        private static final int OPEN = 0;
+        private static final int COMMITTED = 1;
+        private static final int RELEASED = 2;
+
+        private final List<MenuItem> items;
+        private final List<Integer> quantities;
+        private final AtomicInteger state;
+
+        private Reservation(List<MenuItem> items, List<Integer> quantities, int state) {
+            this.items = items;
+            this.quantities = quantities;
+            this.state = new AtomicInteger(state);
+        }
+
+        // Make the deduction permanent
+        public void commit() {
+            if (state.compareAndSet(OPEN, COMMITTED)) {
+                MenuCatalog.saveStockChange(items, quantities, -1);
+            }
+        }
+
+        // Give the stock back; once committed, the return is persisted as well
+        public void release() {
+            if (state.compareAndSet(OPEN, RELEASED)) {
+                giveBack();
+            } else if (state.compareAndSet(COMMITTED, RELEASED)) {
+                giveBack();
+                MenuCatalog.saveStockChange(items, quantities, 1);
+            }
+        }
+
+        private void giveBack() {
+            for (int i = 0; i < items.size(); i++) {
+                items.get(i).increaseStock(quantities.get(i));
+            }
+        }
+    }
+
+    /**
+     * Reserves stock for every line of an order. Returns null, with nothing
+     * reserved, if any item does not have enough stock left. Lines for items
+     * that are not on the menu are ignored.
+     */
+    public static Reservation reserve(List<OrderItem> orderItems) {
+        Map<String, Integer> wanted = merge(orderItems);
+
+        List<MenuItem> taken = new ArrayList<>(wanted.size());
+        List<Integer> quantities = new ArrayList<>(wanted.size());
+        for (Map.Entry<String, Integer> entry : wanted.entrySet()) {
+            MenuItem item = MenuCatalog.getItem(entry.getKey());
+            if (item == null) {
+                continue;
+            }
+            if (!item.decreaseStock(entry.getValue())) {
+                // Roll back what this order already took
+                for (int i = 0; i < taken.size(); i++) {
+                    taken.get(i).increaseStock(quantities.get(i));
+                }
+                return null;
+            }
+            taken.add(item);
+            quantities.add(entry.getValue());
+        }
+        return new Reservation(taken, quantities, Reservation.OPEN);
+    }
+
+    /**
+     * The committed reservation of an order whose stock was taken earlier,
+     * e.g. a PENDING order in the journal. Releasing it gives the stock back.
+     */
+    public static Reservation taken(List<OrderItem> orderItems) {
+        List<MenuItem> items = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : merge(orderItems).entrySet()) {
+            MenuItem item = MenuCatalog.getItem(entry.getKey());
+            if (item != null) {
+                items.add(item);
+                quantities.add(entry.getValue());
+            }
+        }
+        return new Reservation(items, quantities, Reservation.COMMITTED);
+    }
+
+    // Quantity per item id, repeated lines for the same item added up
+    private static Map<String, Integer> merge(List<OrderItem> orderItems) {
+        Map<String, Integer> wanted = new LinkedHashMap<>();
+        for (OrderItem orderItem : orderItems) {
+            wanted.merge(orderItem.getItemId(), orderItem.getQuantity(), Integer::sum);
+        }
+        return wanted;
+    }
+}
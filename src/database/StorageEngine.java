@@ -0,0 +1,446 @@
+package database;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead logged storage for the text data files (menu, users, orders).
+ *
+ * A transaction is one record appended to files/storage.wal. Records from
+ * concurrent callers are written and fsynced together by a single committer
+ * thread (group commit), and each caller returns once its record is durable.
+ * The data files themselves are only brought up to date at checkpoints, which
+ * rewrite snapshot files through a temp file plus atomic rename and append
+ * journal lines in place. Readers go through {@link #open(String)} so they see
+ * committed data that has not been checkpointed yet; readers that want the
+ * file on disk itself, e.g. to map it, use {@link #view(String)} instead.
+ *
+ * Records left in the log after a crash are replayed the next time the class
+ * is loaded. Replay is idempotent: snapshots simply overwrite, and appends carry
+ * the file offset they were written at so an append that already reached the
+ * data file is skipped.
+ */
+public class StorageEngine {
+    private static final String WAL_FILE = Utils.dataFile("storage.wal");
+
+    // Checkpoint once the log grows past this size
+    private static final long CHECKPOINT_BYTES = 4L * 1024 * 1024;
+    // Maximum number of records fsynced together
+    private static final int GROUP_COMMIT_MAX = 512;
+
+    private static final byte OP_REPLACE = 1;
+    private static final byte OP_APPEND = 2;
+    // Several OP_REPLACE payloads in one record, applied together
+    private static final byte OP_REPLACE_ALL = 3;
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(CHARSET);
+
+    // Committed changes per data file that are not yet checkpointed
+    private static final Map<String, Pending> pending = new HashMap<>();
+    private static final LinkedBlockingQueue<Commit> commitQueue = new LinkedBlockingQueue<>();
+
+    private static FileChannel wal;
+
+    static {
+        try {
+            new File(WAL_FILE).getParentFile().mkdirs();
+            recover();
+            wal = FileChannel.open(Paths.get(WAL_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+
+        Thread committer = new Thread(StorageEngine::runCommitter, "storage-committer");
+        committer.setDaemon(true);
+        committer.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                System.err.println("Error checkpointing data files: " + e.getMessage());
+            }
+        }, "storage-shutdown"));
+    }
+
+    private static class Pending {
+        List<String> snapshot;          // full replacement contents, or null
+        final List<String> appended = new ArrayList<>();
+        long length = -1;               // logical file length in bytes
+    }
+
+    /**
+     * The committed contents of a data file without checkpointing it: the first
+     * fileLength bytes of the file on disk, then the pending bytes.
+     */
+    public static final class View {
+        public final long fileLength;   // 0 if the file was replaced since the last checkpoint
+        public final byte[] pending;
+
+        View(long fileLength, byte[] pending) {
+            this.fileLength = fileLength;
+            this.pending = pending;
+        }
+    }
+
+    private static class Commit {
+        final byte[] record;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Commit(byte[] record) {
+            this.record = record;
+        }
+    }
+
+    // Replace the whole contents of a data file
+    public static void replace(String file, List<String> lines) throws IOException {
+        Commit commit;
+        synchronized (StorageEngine.class) {
+            Pending p = pendingFor(file);
+            p.snapshot = new ArrayList<>(lines);
+            p.appended.clear();
+            p.length = byteLength(p.snapshot);
+            commit = enqueue(encode(OP_REPLACE, file, 0, p.snapshot));
+        }
+        await(commit);
+    }
+
+    /**
+     * Replace several data files in one transaction: after a crash either all
+     * of them have their new contents or none has.
+     */
+    public static void replace(Map<String, List<String>> files) throws IOException {
+        Commit commit;
+        synchronized (StorageEngine.class) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(OP_REPLACE_ALL);
+            out.writeInt(files.size());
+            for (Map.Entry<String, List<String>> entry : files.entrySet()) {
+                Pending p = pendingFor(entry.getKey());
+                p.snapshot = new ArrayList<>(entry.getValue());
+                p.appended.clear();
+                p.length = byteLength(p.snapshot);
+                writeChange(out, OP_REPLACE, entry.getKey(), 0, p.snapshot);
+            }
+            out.flush();
+            commit = enqueue(seal(payload.toByteArray()));
+        }
+        await(commit);
+    }
+
+    // Append a single line to a data file
+    public static void append(String file, String line) throws IOException {
+        Commit commit;
+        synchronized (StorageEngine.class) {
+            Pending p = pendingFor(file);
+            long offset = p.length;
+            p.appended.add(line);
+            p.length += byteLength(Collections.singletonList(line));
+            commit = enqueue(encode(OP_APPEND, file, offset, Collections.singletonList(line)));
+        }
+        await(commit);
+    }
+
+    // Open a reader over the committed contents of a data file
+    public static BufferedReader open(String file) throws IOException {
+        return new BufferedReader(new InputStreamReader(openStream(file), CHARSET));
+    }
+
+    // Open a raw byte stream over the committed contents of a data file
+    public static synchronized InputStream openStream(String file) throws IOException {
+        Pending p = pending.get(file);
+        if (p == null) {
+            return new FileInputStream(file);
+        }
+
+        InputStream tail = new ByteArrayInputStream(toBytes(p.appended));
+        if (p.snapshot != null) {
+            return new SequenceInputStream(new ByteArrayInputStream(toBytes(p.snapshot)), tail);
+        } else if (new File(file).exists()) {
+            return new SequenceInputStream(new FileInputStream(file), tail);
+        }
+        return tail;
+    }
+
+    public static synchronized View view(String file) {
+        File onDisk = new File(file);
+        Pending p = pending.get(file);
+        if (p == null) {
+            return new View(onDisk.length(), new byte[0]);
+        }
+        if (p.snapshot != null) {
+            List<String> lines = new ArrayList<>(p.snapshot);
+            lines.addAll(p.appended);
+            return new View(0, toBytes(lines));
+        }
+        return new View(onDisk.length(), toBytes(p.appended));
+    }
+
+    // Bring all data files up to date and empty the log
+    public static synchronized void checkpoint() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            String file = entry.getKey();
+            Pending p = entry.getValue();
+            if (p.snapshot != null) {
+                List<String> lines = new ArrayList<>(p.snapshot);
+                lines.addAll(p.appended);
+                writeAtomically(file, lines);
+            } else if (!p.appended.isEmpty()) {
+                appendDurably(file, toBytes(p.appended));
+            }
+        }
+        pending.clear();
+        synchronized (commitQueue) {
+            wal.truncate(0);
+            wal.force(true);
+        }
+    }
+
+    private static Pending pendingFor(String file) {
+        return pending.computeIfAbsent(file, f -> {
+            Pending p = new Pending();
+            File onDisk = new File(f);
+            p.length = onDisk.exists() ? onDisk.length() : 0;
+            return p;
+        });
+    }
+
+    private static Commit enqueue(byte[] record) {
+        Commit commit = new Commit(record);
+        commitQueue.add(commit);
+        return commit;
+    }
+
+    private static void await(Commit commit) throws IOException {
+        try {
+            commit.done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    // Single writer: drain whatever is queued, write it and fsync once
+    private static void runCommitter() {
+        List<Commit> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(commitQueue.take());
+                commitQueue.drainTo(batch, GROUP_COMMIT_MAX - 1);
+
+                IOException failure = null;
+                try {
+                    synchronized (commitQueue) {
+                        for (Commit commit : batch) {
+                            ByteBuffer buffer = ByteBuffer.wrap(commit.record);
+                            while (buffer.hasRemaining()) {
+                                wal.write(buffer);
+                            }
+                        }
+                        wal.force(false);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+
+                for (Commit commit : batch) {
+                    if (failure == null) {
+                        commit.done.complete(null);
+                    } else {
+                        commit.done.completeExceptionally(failure);
+                    }
+                }
+                batch.clear();
+
+                if (failure == null && wal.size() > CHECKPOINT_BYTES) {
+                    checkpoint();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Error checkpointing data files: " + e.getMessage());
+            }
+        }
+    }
+
+    // Record layout: length, CRC32 of payload, payload (op, file, offset, lines)
+    private static byte[] encode(byte op, String file, long offset, List<String> lines) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        writeChange(out, op, file, offset, lines);
+        out.flush();
+        return seal(payload.toByteArray());
+    }
+
+    private static void writeChange(DataOutputStream out, byte op, String file, long offset, List<String> lines)
+            throws IOException {
+        out.writeByte(op);
+        out.writeUTF(file);
+        out.writeLong(offset);
+        out.writeInt(lines.size());
+        for (String line : lines) {
+            byte[] bytes = line.getBytes(CHARSET);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    // Frame a payload with its length and CRC32
+    private static byte[] seal(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        ByteBuffer record = ByteBuffer.allocate(12 + body.length);
+        record.putInt(body.length);
+        record.putLong(crc.getValue());
+        record.put(body);
+        return record.array();
+    }
+
+    // Replay every complete record left in the log, then empty it
+    private static void recover() throws IOException {
+        File walFile = new File(WAL_FILE);
+        if (!walFile.exists() || walFile.length() == 0) {
+            return;
+        }
+
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(walFile)))) {
+            while (true) {
+                byte[] body;
+                long expectedCrc;
+                try {
+                    int length = in.readInt();
+                    expectedCrc = in.readLong();
+                    if (length < 0 || length > walFile.length()) {
+                        break;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    break; // torn tail from a crash mid-write
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if (crc.getValue() != expectedCrc) {
+                    break;
+                }
+                applyRecord(body);
+                replayed++;
+            }
+        }
+
+        if (replayed > 0) {
+            System.err.println("Recovered " + replayed + " storage transaction(s) from " + WAL_FILE);
+        }
+        try (FileChannel channel = FileChannel.open(walFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+            channel.force(true);
+        }
+    }
+
+    private static void applyRecord(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte op = in.readByte();
+        if (op == OP_REPLACE_ALL) {
+            int files = in.readInt();
+            for (int i = 0; i < files; i++) {
+                applyChange(in, in.readByte());
+            }
+        } else {
+            applyChange(in, op);
+        }
+    }
+
+    private static void applyChange(DataInputStream in, byte op) throws IOException {
+        String file = in.readUTF();
+        long offset = in.readLong();
+        int count = in.readInt();
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            lines.add(new String(bytes, CHARSET));
+        }
+
+        if (op == OP_REPLACE) {
+            writeAtomically(file, lines);
+        } else if (op == OP_APPEND) {
+            byte[] bytes = toBytes(lines);
+            File target = new File(file);
+            long length = target.exists() ? target.length() : 0;
+            if (length >= offset + bytes.length) {
+                return; // already applied before the crash
+            }
+            if (length > offset) {
+                // Partially applied: cut back to where the record starts
+                try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(offset);
+                }
+            }
+            appendDurably(file, bytes);
+        }
+    }
+
+    // Write to a temp file, fsync it, then rename it over the target
+    private static void writeAtomically(String file, List<String> lines) throws IOException {
+        Path target = Paths.get(file);
+        Path temp = Paths.get(file + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(toBytes(lines));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void appendDurably(String file, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static byte[] toBytes(List<String> lines) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String line : lines) {
+            out.writeBytes(line.getBytes(CHARSET));
+            out.writeBytes(NEWLINE);
+        }
+        return out.toByteArray();
+    }
+
+    private static long byteLength(List<String> lines) {
+        long length = 0;
+        for (String line : lines) {
+            length += line.getBytes(CHARSET).length + NEWLINE.length;
+        }
+        return length;
+    }
+}
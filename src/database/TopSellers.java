@@ -0,0 +1,298 @@
+package database;
+
+import java.util.*;
+
+/**
+ * Streaming best-seller tracker: quantities are added (or taken back) one order
+ * line at a time and the current top K items can be read without sorting the
+ * whole menu.
+ *
+ * The top K are held in a min-heap, so an update costs O(log K) and reading
+ * them O(K log K). In exact mode every item's count is kept as well, in an
+ * {@link ItemIndexMap} so counting does not box; when an item in the heap is
+ * taken back far enough that another item might overtake it, the heap is
+ * rebuilt from the counts on the next read. In approximate mode
+ * counts live in a count-min sketch of fixed size instead, which overestimates
+ * by at most epsilon * total with probability 1 - delta, and items that drop
+ * out of the heap only come back once they are sold again.
+ *
+ * Not thread-safe; callers synchronise.
+ */
+public class TopSellers {
+    private final int k;
+    private final ItemIndexMap exactCounts;        // null in approximate mode
+    private final CountMinSketch sketch;           // null in exact mode
+
+    // Min-heap of the current top K, weakest at index 0
+    private final String[] heapNames;
+    private final long[] heapCounts;
+    private final Map<String, Integer> heapIndex = new HashMap<>();
+    private int heapSize = 0;
+    private boolean stale = false;
+
+    private TopSellers(int k, boolean exact, CountMinSketch sketch) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.k = k;
+        this.exactCounts = exact ? new ItemIndexMap() : null;
+        this.sketch = sketch;
+        this.heapNames = new String[k];
+        this.heapCounts = new long[k];
+    }
+
+    // Track the top k items with exact counts
+    public static TopSellers exact(int k) {
+        return new TopSellers(k, true, null);
+    }
+
+    // Track the top k items with counts from a count-min sketch of fixed size
+    public static TopSellers approximate(int k, double epsilon, double delta) {
+        return new TopSellers(k, false, new CountMinSketch(epsilon, delta));
+    }
+
+    public boolean isExact() {
+        return exactCounts != null;
+    }
+
+    // Add (or with a negative quantity, take back) sales of an item
+    public void add(String item, long quantity) {
+        if (quantity == 0) {
+            return;
+        }
+        long count;
+        if (exactCounts != null) {
+            int itemIndex = exactCounts.add(item);
+            count = Math.max(0, exactCounts.getLong(itemIndex) + quantity);
+            exactCounts.setLong(itemIndex, count);
+        } else {
+            count = sketch.add(item, quantity);
+        }
+
+        Integer index = heapIndex.get(item);
+        if (index != null) {
+            if (count <= 0) {
+                removeAt(index);
+                stale = exactCounts != null;
+            } else {
+                heapCounts[index] = count;
+                if (quantity > 0) {
+                    siftDown(index);
+                } else {
+                    siftUp(index);
+                    // An item outside the heap may now outsell it
+                    stale = exactCounts != null;
+                }
+            }
+        } else if (quantity > 0 && !stale) {
+            offer(item, count);
+        }
+    }
+
+    // Current count of an item (an upper bound in approximate mode)
+    public long count(String item) {
+        if (exactCounts != null) {
+            int index = exactCounts.indexOf(item);
+            return index < 0 ? 0 : exactCounts.getLong(index);
+        }
+        return Math.max(0, sketch.estimate(item));
+    }
+
+    // Exact counts of every item; empty in approximate mode
+    public Map<String, Long> counts() {
+        Map<String, Long> counts = new HashMap<>();
+        if (exactCounts != null) {
+            for (int i = 0; i < exactCounts.size(); i++) {
+                if (exactCounts.getLong(i) > 0) {
+                    counts.put(exactCounts.key(i), exactCounts.getLong(i));
+                }
+            }
+        }
+        return counts;
+    }
+
+    // Up to n best sellers, highest first (n is capped at k)
+    public List<Map.Entry<String, Long>> top(int n) {
+        if (stale) {
+            rebuild();
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(heapNames[i], heapCounts[i]));
+        }
+        entries.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? a.getKey().compareTo(b.getKey())
+                : Long.compare(b.getValue(), a.getValue()));
+        return new ArrayList<>(entries.subList(0, Math.min(n, entries.size())));
+    }
+
+    // The best seller, or the given default when nothing was sold
+    public String topItem(String none) {
+        List<Map.Entry<String, Long>> top = top(1);
+        return top.isEmpty() ? none : top.get(0).getKey();
+    }
+
+    public void clear() {
+        if (exactCounts != null) {
+            exactCounts.clear();
+        } else {
+            sketch.clear();
+        }
+        heapIndex.clear();
+        Arrays.fill(heapNames, null);
+        heapSize = 0;
+        stale = false;
+    }
+
+    // Exact mode: refill the heap from the counts
+    private void rebuild() {
+        heapIndex.clear();
+        Arrays.fill(heapNames, null);
+        heapSize = 0;
+        stale = false;
+        for (int i = 0; i < exactCounts.size(); i++) {
+            if (exactCounts.getLong(i) > 0) {
+                offer(exactCounts.key(i), exactCounts.getLong(i));
+            }
+        }
+    }
+
+    // Put an item not in the heap into it if it beats the weakest one
+    private void offer(String item, long count) {
+        if (heapSize < k) {
+            heapNames[heapSize] = item;
+            heapCounts[heapSize] = count;
+            heapIndex.put(item, heapSize);
+            siftUp(heapSize++);
+        } else if (weaker(heapNames[0], heapCounts[0], item, count)) {
+            heapIndex.remove(heapNames[0]);
+            heapNames[0] = item;
+            heapCounts[0] = count;
+            heapIndex.put(item, 0);
+            siftDown(0);
+        }
+    }
+
+    private void removeAt(int index) {
+        heapIndex.remove(heapNames[index]);
+        heapSize--;
+        if (index != heapSize) {
+            move(heapSize, index);
+            siftDown(index);
+            siftUp(index);
+        }
+        heapNames[heapSize] = null;
+    }
+
+    // Lower count ranks lower; on equal counts the later name ranks lower
+    private static boolean weaker(String nameA, long countA, String nameB, long countB) {
+        return countA != countB ? countA < countB : nameA.compareTo(nameB) > 0;
+    }
+
+    private boolean weaker(int a, int b) {
+        return weaker(heapNames[a], heapCounts[a], heapNames[b], heapCounts[b]);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!weaker(index, parent)) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && weaker(child + 1, child)) {
+                child++;
+            }
+            if (!weaker(child, index)) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String name = heapNames[a];
+        long count = heapCounts[a];
+        move(b, a);
+        heapNames[b] = name;
+        heapCounts[b] = count;
+        heapIndex.put(name, b);
+    }
+
+    private void move(int from, int to) {
+        heapNames[to] = heapNames[from];
+        heapCounts[to] = heapCounts[from];
+        heapIndex.put(heapNames[to], to);
+    }
+
+    /**
+     * Count-min sketch: depth rows of width counters, each row indexed by its
+     * own hash. The estimate is the smallest of an item's counters.
+     */
+    static class CountMinSketch {
+        private static final long PRIME = (1L << 31) - 1;
+
+        private final long[][] counters;
+        private final long[] hashA;
+        private final long[] hashB;
+        private final int width;
+
+        CountMinSketch(double epsilon, double delta) {
+            if (epsilon <= 0 || delta <= 0 || delta >= 1) {
+                throw new IllegalArgumentException("epsilon must be positive and delta between 0 and 1");
+            }
+            width = (int) Math.ceil(Math.E / epsilon);
+            int depth = (int) Math.ceil(Math.log(1 / delta));
+            counters = new long[depth][width];
+            hashA = new long[depth];
+            hashB = new long[depth];
+            Random random = new Random(0x5eed);
+            for (int i = 0; i < depth; i++) {
+                hashA[i] = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+                hashB[i] = random.nextInt(Integer.MAX_VALUE);
+            }
+        }
+
+        // Add to every row and return the new estimate
+        long add(String item, long quantity) {
+            long hash = item.hashCode() & 0xffffffffL;
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < counters.length; row++) {
+                int column = column(row, hash);
+                counters[row][column] += quantity;
+                estimate = Math.min(estimate, counters[row][column]);
+            }
+            return estimate;
+        }
+
+        long estimate(String item) {
+            long hash = item.hashCode() & 0xffffffffL;
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < counters.length; row++) {
+                estimate = Math.min(estimate, counters[row][column(row, hash)]);
+            }
+            return estimate;
+        }
+
+        void clear() {
+            for (long[] row : counters) {
+                Arrays.fill(row, 0);
+            }
+        }
+
+        private int column(int row, long hash) {
+            return (int) (((hashA[row] * hash + hashB[row]) % PRIME) % width);
+        }
+    }
+}
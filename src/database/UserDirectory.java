@@ -0,0 +1,238 @@
+package database;
+
+import models.User;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Users by name, with salted password hashes.
+ *
+ * Passwords are stored in users.txt as pbkdf2$iterations$salt$hash
+ * (PBKDF2-HMAC-SHA256, salt and hash in Base64). The number of iterations
+ * for new hashes is cafe.auth.iterations: raise it as far as the login
+ * latency budget allows. Plaintext passwords left from before hashing are
+ * hashed when the directory is loaded; a hash with fewer iterations than
+ * configured is redone at the user's next successful login.
+ *
+ * Hashing is slow by design, so a successful login is remembered for
+ * cafe.auth.cacheMillis as a keyed HMAC of the password. A repeated login at a
+ * till only computes that HMAC. The key is random per run and the cache is
+ * never written anywhere.
+ *
+ * The directory is read from users.txt on first use and read again after
+ * {@link DatabaseHandler#saveUsers(List)} changes the file.
+ */
+public class UserDirectory {
+    private static final String SCHEME = "pbkdf2";
+    private static final int ITERATIONS = Integer.getInteger("cafe.auth.iterations", 210_000);
+    private static final long CACHE_MILLIS = Long.getLong("cafe.auth.cacheMillis", 8L * 60 * 60 * 1000);
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom random = new SecureRandom();
+    private static final byte[] cacheKey = new byte[32];
+    // Checked for unknown users so they take as long as a wrong password
+    private static final String DUMMY_HASH = hashPassword("no such user");
+
+    private static Map<String, User> usersByName;
+    // Recently verified logins by username
+    private static final Map<String, CachedLogin> verified = new HashMap<>();
+    // Saves of upgraded hashes go one at a time, so an older user list never overwrites a newer one
+    private static final Object saveLock = new Object();
+
+    static {
+        random.nextBytes(cacheKey);
+    }
+
+    private static class CachedLogin {
+        final String storedHash;        // the hash the password was checked against
+        final byte[] mac;
+        final long expires;
+
+        CachedLogin(String storedHash, byte[] mac, long expires) {
+            this.storedHash = storedHash;
+            this.mac = mac;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * The user with this name and password, or null. Unknown users take as long
+     * as a wrong password, so the answer does not tell which names exist.
+     */
+    public static User authenticate(String username, String password) {
+        User user;
+        synchronized (UserDirectory.class) {
+            ensureLoaded();
+            user = usersByName.get(username);
+            if (user != null) {
+                CachedLogin cached = verified.get(username);
+                if (cached != null && cached.storedHash.equals(user.getPassword())
+                        && cached.expires > System.currentTimeMillis()
+                        && MessageDigest.isEqual(cached.mac, mac(username, password))) {
+                    return user;
+                }
+            }
+        }
+
+        if (user == null) {
+            // Same work as a real check
+            verify(password, DUMMY_HASH);
+            return null;
+        }
+        String stored = user.getPassword();
+        if (!verify(password, stored)) {
+            return null;
+        }
+        if (iterations(stored) < ITERATIONS) {
+            // The slow hashing runs without the lock
+            upgrade(username, user, stored, hashPassword(password));
+            return user;
+        }
+        synchronized (UserDirectory.class) {
+            verified.put(username, new CachedLogin(stored, mac(username, password),
+                    System.currentTimeMillis() + CACHE_MILLIS));
+        }
+        return user;
+    }
+
+    /**
+     * Swap in a hash with the configured iterations, unless the password was
+     * changed or the directory reloaded since it was checked, and save the
+     * users. Only the swap holds the directory lock.
+     */
+    private static void upgrade(String username, User user, String stored, String upgraded) {
+        synchronized (saveLock) {
+            List<User> users;
+            synchronized (UserDirectory.class) {
+                if (usersByName == null || usersByName.get(username) != user || !stored.equals(user.getPassword())) {
+                    return;
+                }
+                user.setPassword(upgraded);
+                users = new ArrayList<>(usersByName.values());
+            }
+            DatabaseHandler.saveUsers(users);
+        }
+    }
+
+    // Encoded salted hash of a password, for storing in a User
+    public static String hashPassword(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return SCHEME + "$" + ITERATIONS + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(pbkdf2(password, salt, ITERATIONS));
+    }
+
+    // True if stored is in the hashed format
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(SCHEME + "$");
+    }
+
+    // Check a password against a stored hash, or against a plaintext password from before hashing
+    public static boolean verify(String password, String stored) {
+        if (stored == null || password == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8),
+                    password.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error reading password hash: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Forget the loaded users and cached logins; the next lookup reads users.txt again
+    public static synchronized void invalidate() {
+        usersByName = null;
+        verified.clear();
+    }
+
+    // Read the users now rather than at the first login
+    public static synchronized void load() {
+        ensureLoaded();
+    }
+
+    // Read the users, hashing any password still stored as plaintext
+    private static void ensureLoaded() {
+        if (usersByName != null) {
+            return;
+        }
+        List<User> users = DatabaseHandler.loadUsers();
+        int migrated = 0;
+        for (User user : users) {
+            if (!isHashed(user.getPassword())) {
+                user.setPassword(hashPassword(user.getPassword()));
+                migrated++;
+            }
+        }
+        if (migrated > 0) {
+            DatabaseHandler.saveUsers(users);
+            Logger.log("Hashed " + migrated + " stored password(s)");
+        }
+        Map<String, User> byName = new LinkedHashMap<>();
+        for (User user : users) {
+            byName.put(user.getUsername(), user);
+        }
+        usersByName = byName;
+    }
+
+    // Iterations of a stored hash, 0 for plaintext
+    private static int iterations(String stored) {
+        if (!isHashed(stored)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(stored.split("\\$")[1]);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available: " + e.getMessage(), e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] mac(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(cacheKey, "HmacSHA256"));
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available: " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,31 +1,27 @@
 package database;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
-import java.util.Random;
 import models.MenuItem;
+import models.Money;
 import models.User;
 
 public class Utils {
-    private static final Random random = new Random();
+    // Directory holding the data files - override with -Dcafe.data.dir=<path>
+    public static final String DATA_DIR = System.getProperty("cafe.data.dir", "files");
+
+    // Path of a file inside the data directory
+    public static String dataFile(String name) {
+        return DATA_DIR + "/" + name;
+    }
 
     // Generate a unique order ID
     public static String generateOrderId() {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd");
-        String datePrefix = dateFormat.format(new Date());
-        int randomNum = 10000 + random.nextInt(90000); // 5-digit random number
-        return "ORD-" + datePrefix + "-" + randomNum;
+        return OrderIdSequence.nextId();
     }
 
     // Validate login
-    public static User validateLogin(List<User> users, String username, String password) {
-        for (User user : users) {
-            if (user.getUsername().equals(username) && user.getPassword().equals(password)) {
-                return user;
-            }
-        }
-        return null;
+    public static User validateLogin(String username, String password) {
+        return UserDirectory.authenticate(username, password);
     }
 
     // Filter menu items by category
@@ -35,6 +31,11 @@ public class Utils {
                 .collect(java.util.stream.Collectors.toList());
     }
 
+    // Filter the shared menu by category using the catalog's category index
+    public static List<MenuItem> filterMenuByCategory(String category) {
+        return MenuCatalog.getItemsByCategory(category);
+    }
+
     // Get all categories from menu items
     public static List<String> getAllCategories(List<MenuItem> menuItems) {
         List<String> categories = menuItems.stream()
@@ -45,20 +46,38 @@ public class Utils {
         return categories;
     }
 
+    // Get all categories of the shared menu
+    public static List<String> getAllCategories() {
+        List<String> categories = MenuCatalog.getCategories();
+        categories.add(0, "All"); // Add "All" option at the beginning
+        return categories;
+    }
+
     // Calculate total from order items
     public static double calculateTotal(List<models.OrderItem> items) {
-        return items.stream()
-                .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                .sum();
+        return Money.toDouble(calculateTotalCents(items));
+    }
+
+    public static long calculateTotalCents(List<models.OrderItem> items) {
+        long total = 0;
+        for (models.OrderItem item : items) {
+            total += item.getTotalCents();
+        }
+        return total;
     }
 
     // Calculate discounted total
     public static double calculateDiscountedTotal(double total, double discountPercentage) {
-        return total - (total * (discountPercentage / 100));
+        return Money.toDouble(calculateDiscountedTotalCents(Money.fromDouble(total), discountPercentage));
+    }
+
+    // Discounted total in cents, with the discount rounded to the nearest cent
+    public static long calculateDiscountedTotalCents(long totalCents, double discountPercentage) {
+        return Money.discounted(totalCents, discountPercentage);
     }
 
     // Ensure directories exist
     public static void ensureDirectoriesExist() {
-        new java.io.File("files").mkdirs();
+        new java.io.File(DATA_DIR).mkdirs();
     }
 }
\ No newline at end of file
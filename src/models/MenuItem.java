@@ -1,27 +1,29 @@
 package models;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class MenuItem {
     private String id;
     private String name;
-    private double price;
+    private long priceCents;
     private String category;
-    private int stock; // New field for tracking stock
+    private final AtomicInteger stock; // Updated atomically so concurrent orders cannot oversell
 
     public MenuItem(String id, String name, double price, String category) {
         this.id = id;
         this.name = name;
-        this.price = price;
+        this.priceCents = Money.fromDouble(price);
         this.category = category;
-        this.stock = 0; // Default stock is 0
+        this.stock = new AtomicInteger(0); // Default stock is 0
     }
 
     // Constructor with stock parameter
     public MenuItem(String id, String name, double price, String category, int stock) {
         this.id = id;
         this.name = name;
-        this.price = price;
+        this.priceCents = Money.fromDouble(price);
         this.category = category;
-        this.stock = stock;
+        this.stock = new AtomicInteger(stock);
     }
 
     public String getId() {
@@ -41,11 +43,19 @@ public class MenuItem {
     }
 
     public double getPrice() {
-        return price;
+        return Money.toDouble(priceCents);
     }
 
     public void setPrice(double price) {
-        this.price = price;
+        this.priceCents = Money.fromDouble(price);
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
     }
 
     public String getCategory() {
@@ -58,29 +68,38 @@ public class MenuItem {
 
     // Getter and setter for stock
     public int getStock() {
-        return stock;
+        return stock.get();
     }
 
     public void setStock(int stock) {
-        this.stock = stock;
+        this.stock.set(stock);
     }
 
-    // Method to decrease stock when ordered
+    // Method to decrease stock when ordered - never goes below zero
     public boolean decreaseStock(int quantity) {
-        if (stock >= quantity) {
-            stock -= quantity;
-            return true;
+        while (true) {
+            int current = stock.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (stock.compareAndSet(current, current - quantity)) {
+                return true;
+            }
         }
-        return false;
+    }
+
+    // Method to put stock back, e.g. when a reservation is released
+    public void increaseStock(int quantity) {
+        stock.addAndGet(quantity);
     }
 
     // Method to check if item is in stock
     public boolean isInStock() {
-        return stock > 0;
+        return stock.get() > 0;
     }
 
     @Override
     public String toString() {
-        return name + " - $" + price;
+        return name + " - $" + Money.format(priceCents);
     }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money amounts as a long number of cents.
+ *
+ * Prices and totals are kept in cents so sums are exact no matter how many
+ * lines are added up. Doubles are only used at the edges (user input and the
+ * old double getters) and are rounded to the nearest cent on the way in.
+ */
+public final class Money {
+    private Money() {
+    }
+
+    // Nearest number of cents to an amount in dollars
+    public static long fromDouble(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    // Price of a number of units
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, (long) quantity);
+    }
+
+    // A percentage of an amount, rounded half up to the cent
+    public static long percentOf(long cents, double percent) {
+        return Math.round(cents * percent / 100.0);
+    }
+
+    // An amount after taking off a percentage
+    public static long discounted(long cents, double percent) {
+        return cents - percentOf(cents, percent);
+    }
+
+    /**
+     * Parses a decimal amount such as "2.5", "2.50" or "3" into cents, rounding
+     * half up after the second decimal. Throws NumberFormatException like
+     * Double.parseDouble for anything that is not a number.
+     */
+    public static long parse(String text) {
+        String s = text.trim();
+        int length = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+
+        long whole = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else if (c >= '0' && c <= '9' && (seenDot || whole < Long.MAX_VALUE / 1000)) {
+                seenDigit = true;
+                if (!seenDot) {
+                    whole = whole * 10 + (c - '0');
+                } else if (fractionDigits < 2) {
+                    fraction = fraction * 10 + (c - '0');
+                    fractionDigits++;
+                } else if (fractionDigits == 2) {
+                    roundUp = c >= '5';
+                    fractionDigits++;
+                }
+            } else {
+                // Exponents, very long numbers and the like
+                return new BigDecimal(s).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            }
+        }
+        if (!seenDigit) {
+            throw new NumberFormatException("Not an amount: \"" + text + "\"");
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        long cents = whole * 100 + fraction + (roundUp ? 1 : 0);
+        return negative ? -cents : cents;
+    }
+
+    // Amount with two decimals, e.g. 2.50
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(8), cents).toString();
+    }
+
+    // Append the amount with two decimals without creating intermediate strings
+    public static StringBuilder appendTo(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+            cents = -cents;
+        }
+        long remainder = cents % 100;
+        sb.append(cents / 100).append('.');
+        if (remainder < 10) {
+            sb.append('0');
+        }
+        return sb.append(remainder);
+    }
+}
@@ -61,6 +61,10 @@ public class Order {
         return orderTime;
     }
 
+    public void setOrderTime(Date orderTime) {
+        this.orderTime = orderTime;
+    }
+
     public String getStatus() {
         return status;
     }
@@ -90,8 +94,15 @@ public class Order {
     }
 
     public double calculateTotal() {
-        return orderItems.stream()
-                .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                .sum();
+        return Money.toDouble(calculateTotalCents());
+    }
+
+    // Exact total in cents
+    public long calculateTotalCents() {
+        long total = 0;
+        for (OrderItem item : orderItems) {
+            total += item.getTotalCents();
+        }
+        return total;
     }
 }
\ No newline at end of file
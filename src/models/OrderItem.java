@@ -4,13 +4,13 @@ public class OrderItem {
     private String itemId;
     private String itemName;
     private int quantity;
-    private double price;
+    private long priceCents;
 
     public OrderItem(String itemId, String itemName, int quantity, double price) {
         this.itemId = itemId;
         this.itemName = itemName;
         this.quantity = quantity;
-        this.price = price;
+        this.priceCents = Money.fromDouble(price);
     }
 
     public String getItemId() {
@@ -30,10 +30,22 @@ public class OrderItem {
     }
 
     public double getPrice() {
-        return price;
+        return Money.toDouble(priceCents);
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
     }
 
     public double getTotal() {
-        return price * quantity;
+        return Money.toDouble(getTotalCents());
+    }
+
+    public long getTotalCents() {
+        return Money.times(priceCents, quantity);
     }
 }
\ No newline at end of file
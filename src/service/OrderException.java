@@ -0,0 +1,13 @@
+package service;
+
+/**
+ * Thrown when an order cannot be placed, completed or cancelled.
+ * The message is meant to be shown to the user as is.
+ */
+public class OrderException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public OrderException(String message) {
+        super(message);
+    }
+}
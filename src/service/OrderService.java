@@ -0,0 +1,146 @@
+package service;
+
+import database.DatabaseHandler;
+import database.Logger;
+import database.MenuCatalog;
+import database.ReceiptGenerator;
+import database.ReceiptStore;
+import database.SalesAggregates;
+import database.StockLedger;
+import database.Utils;
+import models.MenuItem;
+import models.Money;
+import models.Order;
+import models.OrderItem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Order processing without any Swing code, so it can be driven by the
+ * dashboards, a load generator or a benchmark alike.
+ *
+ * Stock is taken when an order is placed and given back when a placed order
+ * is cancelled. An order that is completed without being placed first takes
+ * its stock at completion. Whether an order was placed is read from the status
+ * of its latest record in the orders journal, so it holds across restarts.
+ */
+public class OrderService {
+    // Status changes of the same order are made one at a time
+    private static final Object[] orderLocks = new Object[64];
+
+    static {
+        for (int i = 0; i < orderLocks.length; i++) {
+            orderLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Lists the order lines that cannot be supplied, one description per line.
+     * Empty when everything is in stock.
+     */
+    public static List<String> findShortages(Order order) {
+        List<String> shortages = new ArrayList<>();
+        for (OrderItem orderItem : order.getOrderItems()) {
+            MenuItem menuItem = MenuCatalog.getItem(orderItem.getItemId());
+            if (menuItem == null) {
+                shortages.add(orderItem.getItemName() + " (not available)");
+            } else if (menuItem.getStock() < orderItem.getQuantity()) {
+                shortages.add(menuItem.getName() + " (Available: " + menuItem.getStock() +
+                        ", Ordered: " + orderItem.getQuantity() + ")");
+            }
+        }
+        return shortages;
+    }
+
+    // Place an order as PENDING and take its stock
+    public static void placeOrder(Order order) throws OrderException {
+        validate(order);
+        synchronized (lockFor(order)) {
+            if (SalesAggregates.statusOf(order) != null) {
+                throw new OrderException("Order " + order.getOrderId() + " has already been placed.");
+            }
+            reserveStock(order);
+            order.setStatus("PENDING");
+            DatabaseHandler.appendOrder(order);
+        }
+    }
+
+    /**
+     * Complete an order, save its receipt and return the receipt text.
+     * Takes the stock first if the order was not placed before.
+     */
+    public static String completeOrder(Order order, double discount) throws OrderException {
+        validate(order);
+        checkDiscount(discount);
+        synchronized (lockFor(order)) {
+            String status = SalesAggregates.statusOf(order);
+            if ("COMPLETED".equals(status) || "CANCELLED".equals(status)) {
+                throw new OrderException("Order " + order.getOrderId() + " is already " + status.toLowerCase() + ".");
+            }
+            if (status == null) {
+                reserveStock(order);
+            }
+
+            order.setStatus("COMPLETED");
+            // The archive keeps the order and time, so a reprint renders the same text
+            LocalDateTime printedAt = LocalDateTime.now();
+            String receipt = ReceiptGenerator.generateReceipt(order, discount, printedAt);
+            ReceiptStore.save(order, discount, printedAt);
+            DatabaseHandler.appendOrder(order);
+            return receipt;
+        }
+    }
+
+    // Cancel an order that is not completed, giving back the stock if it was placed
+    public static void cancelOrder(Order order) throws OrderException {
+        synchronized (lockFor(order)) {
+            String status = SalesAggregates.statusOf(order);
+            if ("COMPLETED".equals(status) || "CANCELLED".equals(status)) {
+                throw new OrderException("Order " + order.getOrderId() + " is already " + status.toLowerCase() + ".");
+            }
+            if ("PENDING".equals(status)) {
+                StockLedger.taken(order.getOrderItems()).release();
+            }
+
+            order.setStatus("CANCELLED");
+            DatabaseHandler.appendOrder(order);
+        }
+        Logger.log("Order " + order.getOrderId() + " cancelled by " + order.getStaffName());
+    }
+
+    // Total of an order after a percentage discount
+    public static double applyDiscount(Order order, double discount) throws OrderException {
+        checkDiscount(discount);
+        return Money.toDouble(Utils.calculateDiscountedTotalCents(order.calculateTotalCents(), discount));
+    }
+
+    private static void validate(Order order) throws OrderException {
+        if (order.getOrderItems().isEmpty()) {
+            throw new OrderException("Please add items to the order first.");
+        }
+        if (order.getCustomerName() == null || order.getCustomerName().trim().isEmpty()) {
+            throw new OrderException("Please enter customer name.");
+        }
+    }
+
+    private static void checkDiscount(double discount) throws OrderException {
+        if (discount < 0 || discount > 100) {
+            throw new OrderException("Discount must be between 0 and 100%.");
+        }
+    }
+
+    private static Object lockFor(Order order) {
+        return orderLocks[(order.getOrderId().hashCode() & 0x7fffffff) % orderLocks.length];
+    }
+
+    private static void reserveStock(Order order) throws OrderException {
+        StockLedger.Reservation reservation = StockLedger.reserve(order.getOrderItems());
+        if (reservation == null) {
+            throw new OrderException("The following items don't have enough stock:\n- " +
+                    String.join("\n- ", findShortages(order)));
+        }
+        reservation.commit();
+    }
+}
@@ -1,31 +1,55 @@
 package ui;
 
-import com.sun.tools.javac.Main;
+import database.ActivityLog;
 import database.DatabaseHandler;
+import database.LineOffsetIndex;
 import database.Logger;
-import database.ReportGenerator;
+import database.MenuCatalog;
+import database.ReceiptExporter;
+import database.ReceiptStore;
+import database.SalesAggregates;
+import database.SessionRegistry;
+import database.UserDirectory;
+import database.Utils;
 import models.Admin;
 import models.MenuItem;
+import models.Money;
 import models.Order;
 import models.Staff;
 import models.User;
 
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.io.File;
 import java.io.IOException;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.io.FileWriter;
 
 import javax.swing.*;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.text.SimpleDateFormat;
+import java.awt.event.HierarchyEvent;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class AdminDashboard extends JPanel {
+    // How often a followed log is checked for new lines
+    private static final int LOG_FOLLOW_INTERVAL_MS = Integer.getInteger("cafe.log.followIntervalMs", 1000);
+
     private JFrame parentFrame;
     private Admin admin;
     private JTabbedPane tabbedPane;
@@ -34,15 +58,19 @@ public class AdminDashboard extends JPanel {
     private List<MenuItem> menuItems;
     private List<Order> orders;
     private List<User> users;
+    private boolean usersLoaded = false;
+
+    // Shown in the top bar while files are read or written in the background
+    private final BackgroundTasks.BusyIndicator busyIndicator = new BackgroundTasks.BusyIndicator();
 
     public AdminDashboard(JFrame parentFrame, Admin admin, Runnable logoutCallback) {
         this.parentFrame = parentFrame;
         this.admin = admin;
 
-        // Load data
-        this.menuItems = DatabaseHandler.loadMenuItems();
-        this.orders = DatabaseHandler.loadOrders();
-        this.users = DatabaseHandler.loadUsers();
+        // Menu comes from the shared catalog; orders and users are read in the background
+        this.menuItems = MenuCatalog.getAllItems();
+        this.orders = new ArrayList<>();
+        this.users = new ArrayList<>();
         this.logoutCallback = logoutCallback;
 
         // Set layout
@@ -55,6 +83,10 @@ public class AdminDashboard extends JPanel {
         welcomeLabel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 0));
         topPanel.add(welcomeLabel, BorderLayout.WEST);
 
+        JPanel busyPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        busyPanel.add(busyIndicator);
+        topPanel.add(busyPanel, BorderLayout.CENTER);
+
         JButton logoutButton = new JButton("Logout");
         logoutButton.addActionListener(e -> logout());
         JPanel buttonPanel = new JPanel();
@@ -72,6 +104,30 @@ public class AdminDashboard extends JPanel {
         tabbedPane.addTab("Log History", createLogPanel());
 
         add(tabbedPane, BorderLayout.CENTER);
+
+        loadData();
+    }
+
+    // Read users and orders off the event thread and fill in their tabs when done
+    private void loadData() {
+        BackgroundTasks.run(busyIndicator, "Loading users", progress -> DatabaseHandler.loadUsers(),
+                loaded -> {
+                    users = loaded;
+                    usersLoaded = true;
+                    tabbedPane.setComponentAt(1, createUserPanel());
+                },
+                ex -> showLoadError("users", ex));
+        BackgroundTasks.run(busyIndicator, "Loading orders", progress -> DatabaseHandler.loadOrders(),
+                loaded -> {
+                    orders = loaded;
+                    tabbedPane.setComponentAt(2, createOrderHistoryPanel());
+                },
+                ex -> showLoadError("orders", ex));
+    }
+
+    private void showLoadError(String what, Exception ex) {
+        JOptionPane.showMessageDialog(this, "Could not load " + what + ": " + ex.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE);
     }
 
 
@@ -178,7 +234,7 @@ public class AdminDashboard extends JPanel {
             try {
                 String id = idField.getText().trim();
                 String name = nameField.getText().trim();
-                double price = Double.parseDouble(priceField.getText().trim());
+                long priceCents = Money.parse(priceField.getText().trim());
                 String category = categoryField.getText().trim();
                 int stock = (int) stockSpinner.getValue(); // Get stock value
 
@@ -189,17 +245,16 @@ public class AdminDashboard extends JPanel {
                 }
 
                 // Check for duplicate ID
-                boolean duplicateId = menuItems.stream()
-                        .anyMatch(item -> item.getId().equals(id));
+                boolean duplicateId = MenuCatalog.getItem(id) != null;
                 if (duplicateId) {
                     JOptionPane.showMessageDialog(this, "Item ID already exists",
                             "Duplicate ID", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
 
-                MenuItem newItem = new MenuItem(id, name, price, category, stock); // Create with stock
-                menuItems.add(newItem);
-                DatabaseHandler.saveMenuItems(menuItems);
+                MenuItem newItem = new MenuItem(id, name, Money.toDouble(priceCents), category, stock); // Create with stock
+                MenuCatalog.addItem(newItem);
+                menuItems = MenuCatalog.getAllItems();
 
                 // Refresh menu tab
                 tabbedPane.setComponentAt(0, createMenuPanel());
@@ -241,7 +296,7 @@ public class AdminDashboard extends JPanel {
         if (result == JOptionPane.OK_OPTION) {
             try {
                 String name = nameField.getText().trim();
-                double price = Double.parseDouble(priceField.getText().trim());
+                long priceCents = Money.parse(priceField.getText().trim());
                 String category = categoryField.getText().trim();
                 int stock = (int) stockSpinner.getValue(); // Get stock value
 
@@ -252,11 +307,12 @@ public class AdminDashboard extends JPanel {
                 }
 
                 item.setName(name);
-                item.setPrice(price);
+                item.setPriceCents(priceCents);
                 item.setCategory(category);
                 item.setStock(stock); // Update stock
 
-                DatabaseHandler.saveMenuItems(menuItems);
+                MenuCatalog.updateItem(item);
+                menuItems = MenuCatalog.getAllItems();
 
                 // Refresh menu tab
                 tabbedPane.setComponentAt(0, createMenuPanel());
@@ -289,7 +345,7 @@ public class AdminDashboard extends JPanel {
         if (result == JOptionPane.OK_OPTION) {
             int newStock = (int) stockSpinner.getValue();
             item.setStock(newStock);
-            DatabaseHandler.saveMenuItems(menuItems);
+            MenuCatalog.updateItem(item);
 
             // Refresh menu tab
             tabbedPane.setComponentAt(0, createMenuPanel());
@@ -307,8 +363,8 @@ public class AdminDashboard extends JPanel {
                 "Confirm Deletion", JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            menuItems.remove(selectedRow);
-            DatabaseHandler.saveMenuItems(menuItems);
+            MenuCatalog.removeItem(item.getId());
+            menuItems = MenuCatalog.getAllItems();
 
             // Refresh menu tab
             tabbedPane.setComponentAt(0, createMenuPanel());
@@ -369,6 +425,11 @@ public class AdminDashboard extends JPanel {
             }
         });
 
+        // Saving before the users are loaded would overwrite the file with a partial list
+        addButton.setEnabled(usersLoaded);
+        resetPasswordButton.setEnabled(usersLoaded);
+        deleteButton.setEnabled(usersLoaded);
+
         buttonPanel.add(addButton);
         buttonPanel.add(resetPasswordButton);
         buttonPanel.add(deleteButton);
@@ -413,11 +474,13 @@ public class AdminDashboard extends JPanel {
                 return;
             }
 
+            // Only the salted hash is kept
+            String passwordHash = UserDirectory.hashPassword(password);
             User newUser;
             if ("ADMIN".equals(role)) {
-                newUser = new Admin(username, password);
+                newUser = new Admin(username, passwordHash);
             } else {
-                newUser = new Staff(username, password);
+                newUser = new Staff(username, passwordHash);
             }
 
             users.add(newUser);
@@ -452,7 +515,7 @@ public class AdminDashboard extends JPanel {
                 return;
             }
 
-            user.setPassword(newPassword);
+            user.setPassword(UserDirectory.hashPassword(newPassword));
             DatabaseHandler.saveUsers(users);
 
             JOptionPane.showMessageDialog(this, "Password reset successfully",
@@ -489,31 +552,8 @@ public class AdminDashboard extends JPanel {
     private JPanel createOrderHistoryPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        // Create table model
-        DefaultTableModel tableModel = new DefaultTableModel(
-                new Object[]{"Order ID", "Customer", "Table", "Staff", "Items", "Total", "Status"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-
-        // Populate table model
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        for (Order order : orders) {
-            String itemsStr = order.getOrderItems().size() + " items";
-            double total = order.calculateTotal();
-
-            tableModel.addRow(new Object[]{
-                    order.getOrderId(),
-                    order.getCustomerName(),
-                    order.getTableNumber(),
-                    order.getStaffName(),
-                    itemsStr,
-                    String.format("$%.2f", total),
-                    order.getStatus()
-            });
-        }
+        // Cells are formatted when shown, so large histories open straight away
+        OrderHistoryTableModel tableModel = new OrderHistoryTableModel(orders);
 
         // Create table
         JTable orderTable = new JTable(tableModel);
@@ -561,7 +601,7 @@ public class AdminDashboard extends JPanel {
 
         double orderTotal = 0;
         for (models.OrderItem item : order.getOrderItems()) {
-            double itemTotal = item.getPrice() * item.getQuantity();
+            double itemTotal = item.getTotal();
             orderTotal += itemTotal;
 
             itemTableModel.addRow(new Object[]{
@@ -586,25 +626,30 @@ public class AdminDashboard extends JPanel {
 
     private JPanel createReportPanel() {
         JPanel panel = new JPanel();
-        panel.setLayout(new GridLayout(3, 2, 10, 10)); // 3 rows, 2 columns, padding
-
-        // Load orders from file
-        List<Order> orders = ReportGenerator.loadOrdersFromFile("files/orders.txt");
+        panel.setLayout(new GridLayout(4, 2, 10, 10)); // 4 rows, 2 columns, padding
 
-        // Get values
-        double totalRevenue = ReportGenerator.calculateTotalRevenue(orders);
-        double monthlyIncome = ReportGenerator.calculateMonthlyIncome(orders);
-        String topItem = ReportGenerator.findTopSellingItem(orders);
-
-        // Labels
+        // Labels - values are filled in once the sales totals are loaded
         JLabel totalRevenueLabel = new JLabel("Total Revenue:");
-        JLabel totalRevenueValue = new JLabel(String.format("$%.2f", totalRevenue));
+        JLabel totalRevenueValue = new JLabel("Loading...");
 
         JLabel monthlyIncomeLabel = new JLabel("Monthly Income:");
-        JLabel monthlyIncomeValue = new JLabel(String.format("$%.2f", monthlyIncome));
+        JLabel monthlyIncomeValue = new JLabel("Loading...");
 
         JLabel topItemLabel = new JLabel("Top Selling Item:");
-        JLabel topItemValue = new JLabel(topItem);
+        JLabel topItemValue = new JLabel("Loading...");
+
+        // Loading the running sales totals may have to read the order journal
+        BackgroundTasks.run(busyIndicator, "Loading reports", progress -> new Object[]{
+                        SalesAggregates.getTotalRevenue(),
+                        SalesAggregates.getMonthlyRevenue(YearMonth.now()),
+                        SalesAggregates.getTopSellingItem()
+                },
+                values -> {
+                    totalRevenueValue.setText(String.format("$%.2f", (Double) values[0]));
+                    monthlyIncomeValue.setText(String.format("$%.2f", (Double) values[1]));
+                    topItemValue.setText((String) values[2]);
+                },
+                ex -> showLoadError("reports", ex));
 
         // Add to panel
         panel.add(totalRevenueLabel);
@@ -616,9 +661,63 @@ public class AdminDashboard extends JPanel {
         panel.add(topItemLabel);
         panel.add(topItemValue);
 
+        JButton exportButton = new JButton("Export Receipts...");
+        exportButton.addActionListener(e -> exportReceipts());
+        panel.add(new JLabel("Receipts:"));
+        panel.add(exportButton);
+
         return panel;
     }
 
+    // Export today's or all archived receipts into one text or print-spool file
+    private void exportReceipts() {
+        JComboBox<String> scopeBox = new JComboBox<>(new String[]{"Today's orders", "All archived receipts"});
+        JComboBox<String> formatBox = new JComboBox<>(new String[]{"Text file", "Print spool (one receipt per page)"});
+        JPanel options = new JPanel(new GridLayout(2, 2, 5, 5));
+        options.add(new JLabel("Receipts:"));
+        options.add(scopeBox);
+        options.add(new JLabel("Format:"));
+        options.add(formatBox);
+        if (JOptionPane.showConfirmDialog(this, options, "Export Receipts",
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        boolean spool = formatBox.getSelectedIndex() == 1;
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("receipts-" + LocalDate.now() + (spool ? ".prn" : ".txt")));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path target = chooser.getSelectedFile().toPath();
+
+        // Order ids of today are taken from the loaded history on the event thread
+        List<String> todaysIds = new ArrayList<>();
+        if (scopeBox.getSelectedIndex() == 0) {
+            Calendar today = Calendar.getInstance();
+            Calendar orderDay = Calendar.getInstance();
+            for (Order order : orders) {
+                orderDay.setTime(order.getOrderTime());
+                if ("COMPLETED".equals(order.getStatus())
+                        && orderDay.get(Calendar.YEAR) == today.get(Calendar.YEAR)
+                        && orderDay.get(Calendar.DAY_OF_YEAR) == today.get(Calendar.DAY_OF_YEAR)) {
+                    todaysIds.add(order.getOrderId());
+                }
+            }
+        }
+        boolean all = scopeBox.getSelectedIndex() == 1;
+        ReceiptExporter.Format format = spool ? ReceiptExporter.Format.SPOOL : ReceiptExporter.Format.TEXT;
+
+        BackgroundTasks.run(busyIndicator, "Exporting receipts", progress ->
+                        ReceiptExporter.export(all ? ReceiptStore.orderIds() : todaysIds, target, format, progress::update),
+                result -> JOptionPane.showMessageDialog(this,
+                        "Exported " + result.getExported() + " receipts to " + target
+                                + (result.getMissing() > 0 ? "\n" + result.getMissing() + " orders had no archived receipt" : "")
+                                + "\n" + String.format("%.0f receipts/s", result.getReceiptsPerSecond()),
+                        "Export Complete", JOptionPane.INFORMATION_MESSAGE),
+                ex -> JOptionPane.showMessageDialog(this, "Could not export receipts: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE));
+    }
+
 
 
     private JPanel createLogPanel() {
@@ -641,14 +740,9 @@ public class AdminDashboard extends JPanel {
     private JPanel createLoginActivityPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        // Create table model
-        DefaultTableModel tableModel = new DefaultTableModel(
-                new Object[]{"Timestamp", "Activity"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Create table model - rows are read from the log file when shown
+        LogTableModel tableModel = new LogTableModel(new String[]{"Timestamp", "Activity"},
+                AdminDashboard::parseLoginActivityLine);
 
         // Create table
         JTable logTable = new JTable(tableModel);
@@ -656,10 +750,13 @@ public class AdminDashboard extends JPanel {
         // Set column widths
         logTable.getColumnModel().getColumn(0).setPreferredWidth(150);
         logTable.getColumnModel().getColumn(1).setPreferredWidth(350);
+        // Filter results have the same columns, keep their widths
+        logTable.setAutoCreateColumnsFromModel(false);
 
         // Load log data
         loadLoginActivityData(tableModel);
 
+        panel.add(createActivityFilterBar(logTable, tableModel, false), BorderLayout.NORTH);
         JScrollPane scrollPane = new JScrollPane(logTable);
         panel.add(scrollPane, BorderLayout.CENTER);
 
@@ -667,12 +764,7 @@ public class AdminDashboard extends JPanel {
         JPanel buttonPanel = new JPanel();
 
         JButton refreshButton = new JButton("Refresh");
-        refreshButton.addActionListener(e -> {
-            // Clear table
-            clearTableModel(tableModel);
-            // Reload data
-            loadLoginActivityData(tableModel);
-        });
+        refreshButton.addActionListener(e -> loadLoginActivityData(tableModel));
 
         JButton clearButton = new JButton("Clear Logs");
         clearButton.addActionListener(e -> {
@@ -682,9 +774,10 @@ public class AdminDashboard extends JPanel {
 
             if (confirm == JOptionPane.YES_OPTION) {
                 try {
-                    new FileWriter("files/login_activity.txt", false).close();
-                    // Clear table
-                    clearTableModel(tableModel);
+                    new FileWriter(Utils.dataFile("login_activity.txt"), false).close();
+                    // Clear table and start the line index over
+                    tableModel.setIndex(null);
+                    loadLogIndex(tableModel, "login_activity.txt", "login logs");
                     JOptionPane.showMessageDialog(panel,
                             "Log file cleared successfully",
                             "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -698,6 +791,7 @@ public class AdminDashboard extends JPanel {
 
         buttonPanel.add(refreshButton);
         buttonPanel.add(clearButton);
+        buttonPanel.add(createFollowCheckBox(panel, logTable, tableModel));
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         return panel;
@@ -706,14 +800,9 @@ public class AdminDashboard extends JPanel {
     private JPanel createSessionLogPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        // Create table model with columns for session data
-        DefaultTableModel tableModel = new DefaultTableModel(
-                new Object[]{"User", "Login Time", "Logout Time", "Duration"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Create table model with columns for session data - rows are read from the log file when shown
+        LogTableModel tableModel = new LogTableModel(new String[]{"User", "Login Time", "Logout Time", "Duration"},
+                AdminDashboard::parseSessionLogLine);
 
         // Create table
         JTable logTable = new JTable(tableModel);
@@ -723,22 +812,26 @@ public class AdminDashboard extends JPanel {
         logTable.getColumnModel().getColumn(1).setPreferredWidth(150);
         logTable.getColumnModel().getColumn(2).setPreferredWidth(150);
         logTable.getColumnModel().getColumn(3).setPreferredWidth(100);
+        // Filter results have the same columns, keep their widths
+        logTable.setAutoCreateColumnsFromModel(false);
 
         // Load log data
         loadSessionLogData(tableModel);
 
+        panel.add(createActivityFilterBar(logTable, tableModel, true), BorderLayout.NORTH);
         JScrollPane scrollPane = new JScrollPane(logTable);
         panel.add(scrollPane, BorderLayout.CENTER);
 
         // Create button panel
         JPanel buttonPanel = new JPanel();
 
+        // Live counts from the session registry
+        JLabel sessionSummary = new JLabel(sessionSummary());
+
         JButton refreshButton = new JButton("Refresh");
         refreshButton.addActionListener(e -> {
-            // Clear table
-            clearTableModel(tableModel);
-            // Reload data
             loadSessionLogData(tableModel);
+            sessionSummary.setText(sessionSummary());
         });
 
         JButton clearButton = new JButton("Clear Logs");
@@ -749,9 +842,10 @@ public class AdminDashboard extends JPanel {
 
             if (confirm == JOptionPane.YES_OPTION) {
                 try {
-                    new FileWriter("files/session_log.txt", false).close();
-                    // Clear table
-                    clearTableModel(tableModel);
+                    new FileWriter(Utils.dataFile("session_log.txt"), false).close();
+                    // Clear table and start the line index over
+                    tableModel.setIndex(null);
+                    loadLogIndex(tableModel, "session_log.txt", "session logs");
                     JOptionPane.showMessageDialog(panel,
                             "Log file cleared successfully",
                             "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -763,88 +857,296 @@ public class AdminDashboard extends JPanel {
             }
         });
 
+        buttonPanel.add(sessionSummary);
         buttonPanel.add(refreshButton);
         buttonPanel.add(clearButton);
+        buttonPanel.add(createFollowCheckBox(panel, logTable, tableModel));
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         return panel;
     }
 
-    private void loadLoginActivityData(DefaultTableModel tableModel) {
-        try {
-            List<String> lines = Files.readAllLines(Paths.get("files/login_activity.txt"));
-            for (String line : lines) {
-                // Parse the log entry (format: "2025-05-11T12:34:56.789 - User logged in")
-                String[] parts = new String[]{"", ""};
-                int dashIndex = line.indexOf(" - ");
-                if (dashIndex > 0) {
-                    parts[0] = line.substring(0, dashIndex);
-                    parts[1] = line.substring(dashIndex + 3);
-                } else {
-                    parts[0] = "";
-                    parts[1] = line;
+    private static String sessionSummary() {
+        return "Active sessions: " + SessionRegistry.activeCount()
+                + " | Average session: " + SessionRegistry.averageDurationMillis() / 60_000 + " min";
+    }
+
+    private void loadLoginActivityData(LogTableModel tableModel) {
+        loadLogIndex(tableModel, "login_activity.txt", "login logs");
+    }
+
+    private void loadSessionLogData(LogTableModel tableModel) {
+        loadLogIndex(tableModel, "session_log.txt", "session logs");
+    }
+
+    /**
+     * Filter bar over the structured activity log. Filtering by user, event
+     * type (login tab only) and dates shows the matching events queried from
+     * {@link Logger#activity()} in place of the text log; "Show All" goes back
+     * to the text log. The session tab lists the logouts, which carry the
+     * session length.
+     */
+    private JPanel createActivityFilterBar(JTable logTable, LogTableModel textLog, boolean sessions) {
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        ActivityLog activity = Logger.activity();
+
+        JComboBox<String> userBox = new JComboBox<>(new String[]{"All users"});
+        // Users are looked up each time the list opens, so new ones show up
+        userBox.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                List<String> known = activity == null ? List.of() : activity.users();
+                for (int i = userBox.getItemCount() - 1; i < known.size(); i++) {
+                    userBox.addItem(known.get(i));
                 }
-                tableModel.addRow(parts);
             }
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(null,
-                    "Could not load login logs: " + ex.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
+        JComboBox<String> typeBox = new JComboBox<>(new String[]{"All events", "Logins", "Failed logins", "Logouts"});
+        JTextField fromField = new JTextField(8);
+        JTextField toField = new JTextField(8);
+        fromField.setToolTipText("yyyy-MM-dd, empty for no limit");
+        toField.setToolTipText("yyyy-MM-dd, empty for no limit");
+
+        JButton filterButton = new JButton("Filter");
+        filterButton.addActionListener(e -> {
+            LocalDate from;
+            LocalDate to;
+            try {
+                from = fromField.getText().isBlank() ? null : LocalDate.parse(fromField.getText().trim());
+                to = toField.getText().isBlank() ? null : LocalDate.parse(toField.getText().trim());
+            } catch (DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(bar, "Dates must be written as yyyy-MM-dd",
+                        "Invalid Date", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            String user = userBox.getSelectedIndex() <= 0 ? null : (String) userBox.getSelectedItem();
+            Set<ActivityLog.EventType> types = sessions
+                    ? EnumSet.of(ActivityLog.EventType.LOGOUT)
+                    : eventTypes(typeBox.getSelectedIndex());
+            ZoneId zone = ZoneId.systemDefault();
+            long fromMillis = from == null ? Long.MIN_VALUE : from.atStartOfDay(zone).toInstant().toEpochMilli();
+            long toMillis = to == null ? Long.MAX_VALUE : to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+
+            BackgroundTasks.run(busyIndicator, "Filtering activity",
+                    progress -> activity.query(user, types, fromMillis, toMillis),
+                    events -> logTable.setModel(sessions ? sessionRows(events) : activityRows(events)),
+                    ex -> showLoadError("activity", ex));
+        });
+
+        JButton showAllButton = new JButton("Show All");
+        showAllButton.addActionListener(e -> logTable.setModel(textLog));
+
+        bar.add(new JLabel("User:"));
+        bar.add(userBox);
+        if (!sessions) {
+            bar.add(new JLabel("Event:"));
+            bar.add(typeBox);
+        }
+        bar.add(new JLabel("From:"));
+        bar.add(fromField);
+        bar.add(new JLabel("To:"));
+        bar.add(toField);
+        bar.add(filterButton);
+        bar.add(showAllButton);
+
+        if (activity == null) {
+            for (Component component : bar.getComponents()) {
+                component.setEnabled(false);
+            }
+            bar.setToolTipText("The activity log could not be opened");
         }
+        return bar;
     }
 
-    private void loadSessionLogData(DefaultTableModel tableModel) {
-        try {
-            List<String> lines = Files.readAllLines(Paths.get("files/session_log.txt"));
-            for (String line : lines) {
-                // Parse the session log entry
-                // Format: "User: admin | Login: 2025-05-15T14:05:23 | Logout: 2025-05-15T14:47:10 | Session Duration: 42 minute(s)"
-                String username = "";
-                String loginTime = "";
-                String logoutTime = "";
-                String duration = "";
-
-                // Extract username
-                int userStart = line.indexOf("User: ");
-                int userEnd = line.indexOf(" | Login:");
-                if (userStart >= 0 && userEnd > userStart) {
-                    username = line.substring(userStart + 6, userEnd);
-                }
-
-                // Extract login time
-                int loginStart = line.indexOf("Login: ");
-                int loginEnd = line.indexOf(" | Logout:");
-                if (loginStart >= 0 && loginEnd > loginStart) {
-                    loginTime = line.substring(loginStart + 7, loginEnd);
-                }
+    // Event types for an entry of the event filter: all, logins, failed logins, logouts
+    private static Set<ActivityLog.EventType> eventTypes(int choice) {
+        switch (choice) {
+            case 1:
+                return EnumSet.of(ActivityLog.EventType.LOGIN);
+            case 2:
+                return EnumSet.of(ActivityLog.EventType.LOGIN_FAILED);
+            case 3:
+                return EnumSet.of(ActivityLog.EventType.LOGOUT);
+            default:
+                return EnumSet.of(ActivityLog.EventType.LOGIN, ActivityLog.EventType.LOGIN_FAILED,
+                        ActivityLog.EventType.LOGOUT);
+        }
+    }
 
-                // Extract logout time
-                int logoutStart = line.indexOf("Logout: ");
-                int logoutEnd = line.indexOf(" | Session Duration:");
-                if (logoutStart >= 0 && logoutEnd > logoutStart) {
-                    logoutTime = line.substring(logoutStart + 8, logoutEnd);
-                }
+    // Rows for the login tab: timestamp and a description like the text log's
+    private static DefaultTableModel activityRows(List<ActivityLog.Event> events) {
+        DefaultTableModel model = readOnlyModel(new String[]{"Timestamp", "Activity"});
+        for (ActivityLog.Event event : events) {
+            String user = event.getUser();
+            String activity;
+            switch (event.getType()) {
+                case LOGIN:
+                    activity = "User (" + user + ") logged in";
+                    break;
+                case LOGIN_FAILED:
+                    activity = "Failed login attempt with username: " + user;
+                    break;
+                case LOGOUT:
+                    long minutes = event.getValue() / 60_000;
+                    if ("IDLE_TIMEOUT".equals(event.getDetail())) {
+                        activity = "Session of user '" + user + "' timed out after being idle (Session: " + minutes + " min)";
+                    } else if ("REPLACED".equals(event.getDetail())) {
+                        activity = "Session of user '" + user + "' ended by a new login (Session: " + minutes + " min)";
+                    } else {
+                        activity = "User '" + user + "' logged out (Session: " + minutes + " min)";
+                    }
+                    break;
+                default:
+                    activity = event.getDetail();
+            }
+            model.addRow(new Object[]{timeOf(event.getTime()), activity});
+        }
+        return model;
+    }
 
-                // Extract duration
-                int durationStart = line.indexOf("Session Duration: ");
-                if (durationStart >= 0) {
-                    duration = line.substring(durationStart + 17);
-                }
+    // Rows for the session tab, one per logout: login time is the logout time less the session length
+    private static DefaultTableModel sessionRows(List<ActivityLog.Event> events) {
+        DefaultTableModel model = readOnlyModel(new String[]{"User", "Login Time", "Logout Time", "Duration"});
+        for (ActivityLog.Event event : events) {
+            model.addRow(new Object[]{
+                    event.getUser(),
+                    timeOf(event.getTime() - event.getValue()),
+                    timeOf(event.getTime()),
+                    event.getValue() / 60_000 + " minute(s)"
+            });
+        }
+        return model;
+    }
 
-                // Add the row to the table
-                tableModel.addRow(new Object[]{username, loginTime, logoutTime, duration});
+    private static DefaultTableModel readOnlyModel(String[] columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
             }
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(null,
-                    "Could not load session logs: " + ex.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
+        };
+    }
+
+    // Epoch millis as local date and time, written like the text logs
+    private static String timeOf(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).toString();
+    }
+
+    // Parse the log entry (format: "2025-05-11T12:34:56.789 - User logged in")
+    private static Object[] parseLoginActivityLine(String line) {
+        String[] parts = new String[]{"", ""};
+        int dashIndex = line.indexOf(" - ");
+        if (dashIndex > 0) {
+            parts[0] = line.substring(0, dashIndex);
+            parts[1] = line.substring(dashIndex + 3);
+        } else {
+            parts[0] = "";
+            parts[1] = line;
         }
+        return parts;
     }
 
-    private void clearTableModel(DefaultTableModel tableModel) {
-        while (tableModel.getRowCount() > 0) {
-            tableModel.removeRow(0);
+    // Parse the session log entry
+    // Format: "User: admin | Login: 2025-05-15T14:05:23 | Logout: 2025-05-15T14:47:10 | Session Duration: 42 minute(s)"
+    private static Object[] parseSessionLogLine(String line) {
+        String username = "";
+        String loginTime = "";
+        String logoutTime = "";
+        String duration = "";
+
+        // Extract username
+        int userStart = line.indexOf("User: ");
+        int userEnd = line.indexOf(" | Login:");
+        if (userStart >= 0 && userEnd > userStart) {
+            username = line.substring(userStart + 6, userEnd);
+        }
+
+        // Extract login time
+        int loginStart = line.indexOf("Login: ");
+        int loginEnd = line.indexOf(" | Logout:");
+        if (loginStart >= 0 && loginEnd > loginStart) {
+            loginTime = line.substring(loginStart + 7, loginEnd);
+        }
+
+        // Extract logout time
+        int logoutStart = line.indexOf("Logout: ");
+        int logoutEnd = line.indexOf(" | Session Duration:");
+        if (logoutStart >= 0 && logoutEnd > logoutStart) {
+            logoutTime = line.substring(logoutStart + 8, logoutEnd);
         }
+
+        // Extract duration
+        int durationStart = line.indexOf("Session Duration: ");
+        if (durationStart >= 0) {
+            duration = line.substring(durationStart + 17);
+        }
+
+        return new Object[]{username, loginTime, logoutTime, duration};
+    }
+
+    // Bring the shared line index of a log up to date in the background, then show the new rows
+    private void loadLogIndex(LogTableModel tableModel, String fileName, String description) {
+        BackgroundTasks.run(busyIndicator, "Loading " + description, progress -> {
+            // Make sure lines still queued in the background writer are on disk
+            Logger.flush();
+            Path path = Paths.get(Utils.dataFile(fileName));
+            if (!Files.exists(path)) {
+                throw new NoSuchFileException(path.toString());
+            }
+            return LineOffsetIndex.shared(path);
+        }, index -> {
+            if (tableModel.getIndex() == index) {
+                tableModel.syncRows();
+            } else {
+                tableModel.setIndex(index);
+            }
+        }, ex -> JOptionPane.showMessageDialog(null,
+                "Could not load " + description + ": " + ex.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    /**
+     * Tail-follow for a log table: while ticked, the log is polled every second
+     * and only lines added since are read; the view scrolls to the newest one.
+     */
+    private JCheckBox createFollowCheckBox(JPanel panel, JTable logTable, LogTableModel tableModel) {
+        JCheckBox followBox = new JCheckBox("Follow");
+        boolean[] polling = {false};
+        Timer timer = new Timer(LOG_FOLLOW_INTERVAL_MS, e -> {
+            LineOffsetIndex index = tableModel.getIndex();
+            if (index == null || polling[0] || !panel.isShowing()) {
+                return;
+            }
+            polling[0] = true;
+            BackgroundTasks.run(null, "Following log", progress -> index.update(), added -> {
+                polling[0] = false;
+                if (tableModel.getIndex() == index && tableModel.syncRows() > 0 && logTable.getModel() == tableModel) {
+                    logTable.scrollRectToVisible(logTable.getCellRect(tableModel.getRowCount() - 1, 0, true));
+                }
+            }, ex -> polling[0] = false);
+        });
+        followBox.addActionListener(e -> {
+            if (followBox.isSelected()) {
+                timer.start();
+            } else {
+                timer.stop();
+            }
+        });
+        // Stop polling once the dashboard is gone
+        panel.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !panel.isDisplayable()) {
+                timer.stop();
+            }
+        });
+        return followBox;
     }
 
     private void logout() {
@@ -853,20 +1155,12 @@ public class AdminDashboard extends JPanel {
                 "Confirm Logout", JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            // ✅ Log the session info before logging out
-            Logger.logLogout(admin.getUsername());
-
             parentFrame.getContentPane().removeAll();
             parentFrame.setSize(400, 300);
             parentFrame.setLocationRelativeTo(null);
 
-            SwingUtilities.invokeLater(() -> {
-                try {
-                    Main.main(new String[0]);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            });
+            // Main ends the session and logs the logout
+            logoutCallback.run();
         }
     }
 
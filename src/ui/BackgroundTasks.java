@@ -0,0 +1,172 @@
+package ui;
+
+import javax.swing.*;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs file work off the Swing event thread and hands the result back on it.
+ *
+ * Tasks run on virtual threads when the JVM has them (Java 21+, looked up
+ * reflectively so the code still builds for 17) and on a pool of daemon threads
+ * otherwise. The success and failure callbacks and every progress update are
+ * delivered with SwingUtilities.invokeLater, so they may touch components
+ * freely. A {@link BusyIndicator} shows while a task runs.
+ */
+public final class BackgroundTasks {
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private BackgroundTasks() {
+    }
+
+    // Work done in the background; may report progress as it goes
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    // Progress of a task: done out of total, total <= 0 when unknown
+    @FunctionalInterface
+    public interface Progress {
+        void update(long done, long total);
+    }
+
+    /**
+     * Runs work in the background. onSuccess gets its result and onFailure any
+     * exception, both on the event thread; either may be null. The indicator,
+     * if given, shows the description until the task ends.
+     */
+    public static <T> Future<?> run(BusyIndicator indicator, String description, Work<T> work,
+                                    Consumer<? super T> onSuccess, Consumer<? super Exception> onFailure) {
+        if (indicator != null) {
+            onEdt(() -> indicator.begin(description));
+        }
+        Progress progress = indicator == null ? (done, total) -> { } : indicator.progressFor(description);
+        return EXECUTOR.submit(() -> {
+            try {
+                T result = work.run(progress);
+                onEdt(() -> {
+                    finish(indicator);
+                    if (onSuccess != null) {
+                        onSuccess.accept(result);
+                    }
+                });
+            } catch (Exception e) {
+                System.err.println("Error in background task (" + description + "): " + e.getMessage());
+                onEdt(() -> {
+                    finish(indicator);
+                    if (onFailure != null) {
+                        onFailure.accept(e);
+                    }
+                });
+            }
+        });
+    }
+
+    // Runs work in the background and ignores its result
+    public static Future<?> run(BusyIndicator indicator, String description, Runnable work) {
+        return run(indicator, description, progress -> {
+            work.run();
+            return null;
+        }, null, null);
+    }
+
+    private static void finish(BusyIndicator indicator) {
+        if (indicator != null) {
+            indicator.end();
+        }
+    }
+
+    private static void onEdt(Runnable runnable) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            runnable.run();
+        } else {
+            SwingUtilities.invokeLater(runnable);
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // No virtual threads on this JVM
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "background-task-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Progress bar that is only visible while background tasks run. Shows the
+     * latest task's description and is indeterminate unless the task reports
+     * how far it got. Only used on the event thread.
+     */
+    public static class BusyIndicator extends JProgressBar {
+        private static final long serialVersionUID = 1L;
+
+        private int running = 0;
+
+        public BusyIndicator() {
+            setStringPainted(true);
+            setVisible(false);
+        }
+
+        void begin(String description) {
+            running++;
+            setIndeterminate(true);
+            setString(description);
+            setVisible(true);
+        }
+
+        void end() {
+            running = Math.max(0, running - 1);
+            if (running == 0) {
+                setVisible(false);
+                setIndeterminate(false);
+                setValue(0);
+            }
+        }
+
+        // Progress reports from a worker, coalesced so the event queue is not flooded
+        Progress progressFor(String description) {
+            AtomicBoolean queued = new AtomicBoolean();
+            long[] latest = new long[2];
+            return (done, total) -> {
+                synchronized (latest) {
+                    latest[0] = done;
+                    latest[1] = total;
+                }
+                if (queued.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(() -> {
+                        queued.set(false);
+                        long d;
+                        long t;
+                        synchronized (latest) {
+                            d = latest[0];
+                            t = latest[1];
+                        }
+                        if (running == 0) {
+                            return;
+                        }
+                        if (t > 0) {
+                            setIndeterminate(false);
+                            setValue((int) Math.min(100, d * 100 / t));
+                            setString(description + " " + getValue() + "%");
+                        } else {
+                            setIndeterminate(true);
+                        }
+                    });
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ui;
+
+import database.LineOffsetIndex;
+
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Table over a log file that reads rows only when they are shown.
+ *
+ * Rows are located through a {@link LineOffsetIndex} and read a page at a time
+ * with {@link BackgroundTasks}, never on the event thread: a row whose page is
+ * not read yet shows a placeholder until the page arrives. Each page is split
+ * into cells when it is read and kept in a small LRU cache, so memory stays
+ * bounded however long the log is. Only used on the event thread.
+ *
+ * {@link #syncRows()} picks up lines the index gained since, so a refresh or
+ * tail-follow only reads the new rows.
+ */
+public class LogTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final int PAGE_ROWS = 128;
+    private static final int CACHED_PAGES = 64;
+    private static final String PLACEHOLDER = "Loading...";
+
+    private final String[] columns;
+    private final Function<String, Object[]> parseLine;
+    private LineOffsetIndex index;
+    private int rowCount = 0;
+    private int seenResets = 0;
+
+    // Parsed pages by page number, least recently used first
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    // Pages being read, each with a token so a read made stale by a reset is dropped
+    private final Map<Integer, Object> loading = new HashMap<>();
+
+    public LogTableModel(String[] columns, Function<String, Object[]> parseLine) {
+        this.columns = columns;
+        this.parseLine = parseLine;
+    }
+
+    // Show the rows of an index, or none when it is null
+    public void setIndex(LineOffsetIndex index) {
+        this.index = index;
+        this.rowCount = index == null ? 0 : index.lineCount();
+        this.seenResets = index == null ? 0 : index.resetCount();
+        pages.clear();
+        loading.clear();
+        fireTableDataChanged();
+    }
+
+    public LineOffsetIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Catch up with the rows the index has gained (or lost, when the log was
+     * cleared) since it was shown. Returns the number of rows added.
+     */
+    public int syncRows() {
+        int count = index == null ? 0 : index.lineCount();
+        int resets = index == null ? 0 : index.resetCount();
+        if (resets != seenResets || count < rowCount) {
+            // The log was cleared (and maybe written again) - start over
+            seenResets = resets;
+            rowCount = count;
+            pages.clear();
+            loading.clear();
+            fireTableDataChanged();
+            return count;
+        }
+        int added = count - rowCount;
+        if (added == 0) {
+            return 0;
+        }
+        // The last row may have been an unfinished line; read its page again
+        int first = rowCount;
+        if (first > 0) {
+            pages.remove((first - 1) / PAGE_ROWS);
+            loading.remove((first - 1) / PAGE_ROWS);
+        }
+        rowCount = count;
+        if (first > 0) {
+            fireTableRowsUpdated(first - 1, first - 1);
+        }
+        fireTableRowsInserted(first, count - 1);
+        return added;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Object[][] rows = page(row / PAGE_ROWS);
+        if (rows == null) {
+            return column == 0 ? PLACEHOLDER : "";
+        }
+        Object[] cells = rows[row % PAGE_ROWS];
+        return cells != null && column < cells.length ? cells[column] : "";
+    }
+
+    // A cached page, or null after starting to read it
+    private Object[][] page(int page) {
+        Object[][] rows = pages.get(page);
+        if (rows == null && index != null && !loading.containsKey(page)) {
+            Object token = new Object();
+            loading.put(page, token);
+            LineOffsetIndex source = index;
+            BackgroundTasks.run(null, "Reading log rows", progress -> readPage(source, page),
+                    read -> {
+                        if (loading.remove(page, token)) {
+                            pages.put(page, read);
+                            int first = page * PAGE_ROWS;
+                            int last = Math.min(first + PAGE_ROWS, rowCount) - 1;
+                            if (first <= last) {
+                                fireTableRowsUpdated(first, last);
+                            }
+                        }
+                    },
+                    ex -> {
+                        System.err.println("Error reading log rows: " + ex.getMessage());
+                        // Keep the placeholders rather than retrying on every repaint
+                        if (loading.remove(page, token)) {
+                            pages.put(page, new Object[PAGE_ROWS][]);
+                        }
+                    });
+        }
+        return rows;
+    }
+
+    private Object[][] readPage(LineOffsetIndex source, int page) throws IOException {
+        Object[][] rows = new Object[PAGE_ROWS][];
+        List<String> lines = source.readLines(page * PAGE_ROWS, PAGE_ROWS);
+        for (int i = 0; i < lines.size(); i++) {
+            rows[i] = parseLine.apply(lines.get(i));
+        }
+        return rows;
+    }
+}
@@ -1,9 +1,11 @@
 package ui;
 import database.DatabaseHandler;
+import database.MenuCatalog;
 import database.Utils;
 import models.MenuItem;
 import models.Order;
 import models.OrderItem;
+import service.OrderService;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -25,14 +27,15 @@ public class OrderForm extends JPanel {
     private JButton placeOrderButton;
     private JButton clearOrderButton;
     private JSpinner quantitySpinner;
+    private final BackgroundTasks.BusyIndicator busyIndicator = new BackgroundTasks.BusyIndicator();
     private DatabaseHandler dbHandler;
     private String staffName;
 
     public OrderForm(String staffName) {
         this.staffName = staffName;
         this.dbHandler = new DatabaseHandler();
-        // DatabaseHandler has a static method loadMenuItems() instead of instance method getAllMenuItems()
-        this.menuItems = DatabaseHandler.loadMenuItems();
+        // Menu items come from the shared in-memory catalog
+        this.menuItems = MenuCatalog.getAllItems();
         // Order constructor requires parameters, can't use default constructor
         this.currentOrder = new Order(Utils.generateOrderId(), "", 1, staffName);
 
@@ -124,6 +127,7 @@ public class OrderForm extends JPanel {
         JPanel totalPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         totalLabel = new JLabel("Total: $0.00");
         totalLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        totalPanel.add(busyIndicator);
         totalPanel.add(totalLabel);
 
         JPanel bottomPanel = new JPanel(new BorderLayout());
@@ -173,14 +177,7 @@ public class OrderForm extends JPanel {
         }
 
         String menuItemId = (String) menuItemsTableModel.getValueAt(selectedRow, 0);
-        MenuItem selectedItem = null;
-
-        for (MenuItem item : menuItems) {
-            if (item.getId().equals(menuItemId)) {
-                selectedItem = item;
-                break;
-            }
-        }
+        MenuItem selectedItem = MenuCatalog.getItem(menuItemId);
 
         if (selectedItem != null) {
             int requestedQuantity = (int) quantitySpinner.getValue();
@@ -259,7 +256,7 @@ public class OrderForm extends JPanel {
     private void updateCartTable() {
         cartTableModel.setRowCount(0);
         for (OrderItem item : currentOrder.getOrderItems()) {
-            double itemTotal = item.getPrice() * item.getQuantity();
+            double itemTotal = item.getTotal();
             Object[] rowData = {
                     item.getItemName(),
                     item.getQuantity(),
@@ -288,69 +285,45 @@ public class OrderForm extends JPanel {
         }
 
         // Validate stock availability before placing order
-        List<MenuItem> currentMenuItems = DatabaseHandler.loadMenuItems();
-        boolean stockAvailable = true;
-        StringBuilder unavailableItems = new StringBuilder();
-
-        for (OrderItem orderItem : currentOrder.getOrderItems()) {
-            boolean found = false;
-            for (MenuItem menuItem : currentMenuItems) {
-                if (orderItem.getItemId().equals(menuItem.getId())) {
-                    if (menuItem.getStock() < orderItem.getQuantity()) {
-                        stockAvailable = false;
-                        unavailableItems.append(orderItem.getItemName())
-                                .append(" (ordered: ")
-                                .append(orderItem.getQuantity())
-                                .append(", available: ")
-                                .append(menuItem.getStock())
-                                .append(")\n");
-                    }
-                    found = true;
-                    break;
-                }
-            }
-
-            if (!found) {
-                stockAvailable = false;
-                unavailableItems.append(orderItem.getItemName())
-                        .append(" (not available)\n");
-            }
-        }
-
-        if (!stockAvailable) {
+        List<String> shortages = OrderService.findShortages(currentOrder);
+        if (!shortages.isEmpty()) {
             JOptionPane.showMessageDialog(this,
-                    "Cannot place order due to insufficient stock:\n" + unavailableItems.toString() +
-                            "\nPlease adjust your order.",
+                    "Cannot place order due to insufficient stock:\n" + String.join("\n", shortages) +
+                            "\n\nPlease adjust your order.",
                     "Insufficient Stock", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
         currentOrder.setCustomerName(customerName);
         currentOrder.setTableNumber((int) tableNumberSpinner.getValue());
-        currentOrder.setStatus("PENDING");
-
-        try {
-            // Load existing orders
-            List<Order> orders = DatabaseHandler.loadOrders();
-
-            // Add current order
-            orders.add(currentOrder);
 
-            // Save all orders
-            DatabaseHandler.saveOrders(orders);
-
-            // Update stock
-            DatabaseHandler.updateStockForOrder(currentOrder);
+        // Take the stock and append the order to the orders journal in the background;
+        // the buttons stay disabled until it is done so the cart cannot change under it
+        Order order = currentOrder;
+        setOrderButtonsEnabled(false);
+        BackgroundTasks.run(busyIndicator, "Placing order", progress -> {
+            OrderService.placeOrder(order);
+            return order;
+        }, placed -> {
+            setOrderButtonsEnabled(true);
 
             // Refresh menu items list after stock deduction
-            menuItems = DatabaseHandler.loadMenuItems();
+            menuItems = MenuCatalog.getAllItems();
             loadMenuItems();
 
-            JOptionPane.showMessageDialog(this, "Order placed successfully!\nOrder ID: " + currentOrder.getOrderId(), "Success", JOptionPane.INFORMATION_MESSAGE);
+            JOptionPane.showMessageDialog(this, "Order placed successfully!\nOrder ID: " + placed.getOrderId(), "Success", JOptionPane.INFORMATION_MESSAGE);
             clearOrder();
-        } catch (Exception ex) {
+        }, ex -> {
+            setOrderButtonsEnabled(true);
             JOptionPane.showMessageDialog(this, "Error placing order: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        });
+    }
+
+    private void setOrderButtonsEnabled(boolean enabled) {
+        addToCartButton.setEnabled(enabled);
+        removeFromCartButton.setEnabled(enabled);
+        placeOrderButton.setEnabled(enabled);
+        clearOrderButton.setEnabled(enabled);
     }
 
     private void clearOrder() {
@@ -0,0 +1,96 @@
+package ui;
+
+import models.Money;
+import models.Order;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Order history table that formats cells only when they are shown, instead of
+ * copying every order into a row of strings up front.
+ *
+ * Can be limited to the orders of one staff member; the view then keeps only
+ * the positions of the matching orders.
+ */
+public class OrderHistoryTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Order> orders;
+    private final boolean showStaff;
+    private final int[] rows;           // positions in orders, or null for all of them
+    private final int rowCount;
+
+    // Every order, with a Staff column
+    public OrderHistoryTableModel(List<Order> orders) {
+        this.orders = orders;
+        this.showStaff = true;
+        this.rows = null;
+        this.rowCount = orders.size();
+    }
+
+    // Only the orders taken by one staff member, without a Staff column
+    public OrderHistoryTableModel(List<Order> orders, String staffName) {
+        this.orders = orders;
+        this.showStaff = false;
+        int[] matches = new int[16];
+        int count = 0;
+        for (int i = 0; i < orders.size(); i++) {
+            if (staffName.equals(orders.get(i).getStaffName())) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = i;
+            }
+        }
+        this.rows = matches;
+        this.rowCount = count;
+    }
+
+    public Order getOrder(int row) {
+        return orders.get(rows == null ? row : rows[row]);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return showStaff ? 7 : 6;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        switch (column(column)) {
+            case 0: return "Order ID";
+            case 1: return "Customer";
+            case 2: return "Table";
+            case 3: return "Staff";
+            case 4: return "Items";
+            case 5: return "Total";
+            default: return "Status";
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Order order = getOrder(row);
+        switch (column(column)) {
+            case 0: return order.getOrderId();
+            case 1: return order.getCustomerName();
+            case 2: return order.getTableNumber();
+            case 3: return order.getStaffName();
+            case 4: return order.getOrderItems().size() + " items";
+            case 5: return "$" + Money.format(order.calculateTotalCents());
+            default: return order.getStatus();
+        }
+    }
+
+    // Column number as if the Staff column were shown
+    private int column(int column) {
+        return showStaff || column < 3 ? column : column + 1;
+    }
+}
@@ -1,20 +1,23 @@
 package ui;
 
-import com.sun.tools.javac.Main;
 import database.DatabaseHandler;
-import database.Logger;
-import database.ReceiptGenerator;
+import database.MenuCatalog;
+import database.ReceiptStore;
 import database.Utils;
 import models.MenuItem;
 import models.Order;
 import models.OrderItem;
 import models.Staff;
+import service.OrderException;
+import service.OrderService;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class StaffDashboard extends JPanel {
     private JFrame parentFrame;
@@ -30,14 +33,17 @@ public class StaffDashboard extends JPanel {
     private DefaultTableModel cartTableModel;
     private JLabel totalLabel;
 
+    // Shown in the top bar while files are read or written in the background
+    private final BackgroundTasks.BusyIndicator busyIndicator = new BackgroundTasks.BusyIndicator();
+
     public StaffDashboard(JFrame parentFrame, Staff staff, Runnable logoutCallback) {
         this.parentFrame = parentFrame;
         this.staff = staff;
         this.logoutCallback = logoutCallback;
 
-        // Load data
-        this.menuItems = DatabaseHandler.loadMenuItems();
-        this.orders = DatabaseHandler.loadOrders();
+        // Menu comes from the shared catalog; orders are read in the background
+        this.menuItems = MenuCatalog.getAllItems();
+        this.orders = new ArrayList<>();
 
         // Set layout
         setLayout(new BorderLayout());
@@ -49,6 +55,10 @@ public class StaffDashboard extends JPanel {
         welcomeLabel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 0));
         topPanel.add(welcomeLabel, BorderLayout.WEST);
 
+        JPanel busyPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        busyPanel.add(busyIndicator);
+        topPanel.add(busyPanel, BorderLayout.CENTER);
+
         JButton logoutButton = new JButton("Logout");
         logoutButton.addActionListener(e -> logout());
         JPanel buttonPanel = new JPanel();
@@ -63,6 +73,29 @@ public class StaffDashboard extends JPanel {
         tabbedPane.addTab("Order History", createOrderHistoryPanel());
 
         add(tabbedPane, BorderLayout.CENTER);
+
+        loadOrders();
+    }
+
+    // Read the order history off the event thread and fill in its tab when done
+    private void loadOrders() {
+        BackgroundTasks.run(busyIndicator, "Loading orders", progress -> DatabaseHandler.loadOrders(),
+                loaded -> {
+                    // Keep orders processed while the history was still loading
+                    Set<String> loadedIds = new HashSet<>();
+                    for (Order order : loaded) {
+                        loadedIds.add(order.getOrderId());
+                    }
+                    for (Order order : orders) {
+                        if (!loadedIds.contains(order.getOrderId())) {
+                            loaded.add(order);
+                        }
+                    }
+                    orders = loaded;
+                    tabbedPane.setComponentAt(1, createOrderHistoryPanel());
+                },
+                ex -> JOptionPane.showMessageDialog(this, "Could not load orders: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE));
     }
 
     private JPanel createOrderPanel() {
@@ -77,7 +110,7 @@ public class StaffDashboard extends JPanel {
         menuPanel.setBorder(BorderFactory.createTitledBorder("Menu"));
 
         // Category filter
-        List<String> categories = Utils.getAllCategories(menuItems);
+        List<String> categories = Utils.getAllCategories();
         JComboBox<String> categoryComboBox = new JComboBox<>(categories.toArray(new String[0]));
         JPanel filterPanel = new JPanel();
         filterPanel.add(new JLabel("Category:"));
@@ -243,7 +276,7 @@ public class StaffDashboard extends JPanel {
     private void updateMenuTable(DefaultTableModel menuTableModel, String selectedCategory) {
         menuTableModel.setRowCount(0);
 
-        List<MenuItem> filteredItems = Utils.filterMenuByCategory(menuItems, selectedCategory);
+        List<MenuItem> filteredItems = Utils.filterMenuByCategory(selectedCategory);
         for (MenuItem item : filteredItems) {
             menuTableModel.addRow(new Object[]{
                     item.getId(),
@@ -257,30 +290,28 @@ public class StaffDashboard extends JPanel {
 
     private void addToCart(String itemId, String itemName, double price, int quantity) {
         // Check stock availability before adding to cart
-        for (MenuItem item : menuItems) {
-            if (item.getId().equals(itemId)) {
-                int currentQuantityInCart = 0;
-
-                // Check if item already exists in cart and get current quantity
-                for (OrderItem existingItem : currentOrder.getOrderItems()) {
-                    if (existingItem.getItemId().equals(itemId)) {
-                        currentQuantityInCart = existingItem.getQuantity();
-                        break;
-                    }
+        MenuItem item = MenuCatalog.getItem(itemId);
+        if (item != null) {
+            int currentQuantityInCart = 0;
+
+            // Check if item already exists in cart and get current quantity
+            for (OrderItem existingItem : currentOrder.getOrderItems()) {
+                if (existingItem.getItemId().equals(itemId)) {
+                    currentQuantityInCart = existingItem.getQuantity();
+                    break;
                 }
+            }
 
-                // Calculate total quantity after adding
-                int totalQuantity = currentQuantityInCart + quantity;
+            // Calculate total quantity after adding
+            int totalQuantity = currentQuantityInCart + quantity;
 
-                if (item.getStock() < totalQuantity) {
-                    JOptionPane.showMessageDialog(this,
-                            "Cannot add " + quantity + " of " + itemName + " to cart.\n" +
-                                    "Available stock: " + item.getStock() + "\n" +
-                                    "Already in cart: " + currentQuantityInCart,
-                            "Insufficient Stock", JOptionPane.WARNING_MESSAGE);
-                    return;
-                }
-                break;
+            if (item.getStock() < totalQuantity) {
+                JOptionPane.showMessageDialog(this,
+                        "Cannot add " + quantity + " of " + itemName + " to cart.\n" +
+                                "Available stock: " + item.getStock() + "\n" +
+                                "Already in cart: " + currentQuantityInCart,
+                        "Insufficient Stock", JOptionPane.WARNING_MESSAGE);
+                return;
             }
         }
 
@@ -321,7 +352,7 @@ public class StaffDashboard extends JPanel {
         double total = 0;
 
         for (OrderItem item : currentOrder.getOrderItems()) {
-            double itemTotal = item.getPrice() * item.getQuantity();
+            double itemTotal = item.getTotal();
             total += itemTotal;
 
             cartTableModel.addRow(new Object[]{
@@ -352,44 +383,65 @@ public class StaffDashboard extends JPanel {
 
         if (result == JOptionPane.OK_OPTION) {
             double discount = (double) discountSpinner.getValue();
+            Order order = currentOrder;
+
+            // Complete the order in the background: takes stock, saves receipt and order.
+            // The order tab is locked meanwhile so the cart cannot change under it.
+            setEnabledRecursively(tabbedPane.getComponentAt(0), false);
+            BackgroundTasks.run(busyIndicator, "Processing order", progress -> OrderService.completeOrder(order, discount),
+                    receipt -> {
+                        setEnabledRecursively(tabbedPane.getComponentAt(0), true);
+                        orderCompleted(order, receipt);
+                    },
+                    ex -> {
+                        setEnabledRecursively(tabbedPane.getComponentAt(0), true);
+                        if (ex instanceof OrderException) {
+                            JOptionPane.showMessageDialog(this, ex.getMessage(),
+                                    "Order Not Processed", JOptionPane.WARNING_MESSAGE);
+                        } else {
+                            JOptionPane.showMessageDialog(this, "Could not process order: " + ex.getMessage(),
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    });
+        }
+    }
 
-            // Generate receipt
-            String receipt = ReceiptGenerator.generateReceipt(currentOrder, discount);
-
-            // Show receipt
-            JTextArea receiptArea = new JTextArea(receipt);
-            receiptArea.setEditable(false);
-            receiptArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-
-            JScrollPane scrollPane = new JScrollPane(receiptArea);
-            scrollPane.setPreferredSize(new Dimension(400, 500));
+    private void orderCompleted(Order order, String receipt) {
+        showReceipt(receipt, "Receipt");
 
-            JOptionPane.showMessageDialog(this, scrollPane, "Receipt", JOptionPane.PLAIN_MESSAGE);
+        // Pick up the updated stock from the shared catalog
+        menuItems = MenuCatalog.getAllItems();
 
-            // Save receipt
-            DatabaseHandler.saveReceipt(receipt);
+        // Refresh the menu table
+        refreshMenuTable();
 
-            // Set order status to completed
-            currentOrder.setStatus("COMPLETED");
+        // Keep the order for the history tab
+        orders.add(order);
 
-            // Update stock levels for the order
-            DatabaseHandler.updateStockForOrder(currentOrder);
+        // Create new order
+        clearCart();
 
-            // Reload the menu items with updated stock
-            menuItems = DatabaseHandler.loadMenuItems();
+        // Refresh order history tab
+        tabbedPane.setComponentAt(1, createOrderHistoryPanel());
+    }
 
-            // Refresh the menu table
-            refreshMenuTable();
+    private void showReceipt(String receipt, String title) {
+        JTextArea receiptArea = new JTextArea(receipt);
+        receiptArea.setEditable(false);
+        receiptArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
 
-            // Save order
-            orders.add(currentOrder);
-            DatabaseHandler.saveOrders(orders);
+        JScrollPane scrollPane = new JScrollPane(receiptArea);
+        scrollPane.setPreferredSize(new Dimension(400, 500));
 
-            // Create new order
-            clearCart();
+        JOptionPane.showMessageDialog(this, scrollPane, title, JOptionPane.PLAIN_MESSAGE);
+    }
 
-            // Refresh order history tab
-            tabbedPane.setComponentAt(1, createOrderHistoryPanel());
+    private static void setEnabledRecursively(Component component, boolean enabled) {
+        component.setEnabled(enabled);
+        if (component instanceof Container) {
+            for (Component child : ((Container) component).getComponents()) {
+                setEnabledRecursively(child, enabled);
+            }
         }
     }
 
@@ -451,7 +503,7 @@ public class StaffDashboard extends JPanel {
 
                     // Update the table with current data
                     List<MenuItem> filteredItems = selectedCategory.equals("All") ?
-                            menuItems : Utils.filterMenuByCategory(menuItems, selectedCategory);
+                            menuItems : Utils.filterMenuByCategory(selectedCategory);
 
                     for (MenuItem item : filteredItems) {
                         menuTableModel.addRow(new Object[]{
@@ -475,21 +527,10 @@ public class StaffDashboard extends JPanel {
     }
 
     private boolean checkStockAvailability() {
-        List<MenuItem> currentMenuItems = DatabaseHandler.loadMenuItems();
         StringBuilder outOfStockItems = new StringBuilder();
 
-        for (OrderItem orderItem : currentOrder.getOrderItems()) {
-            for (MenuItem menuItem : currentMenuItems) {
-                if (menuItem.getId().equals(orderItem.getItemId())) {
-                    if (menuItem.getStock() < orderItem.getQuantity()) {
-                        outOfStockItems.append("- ").append(menuItem.getName())
-                                .append(" (Available: ").append(menuItem.getStock())
-                                .append(", Ordered: ").append(orderItem.getQuantity())
-                                .append(")\n");
-                    }
-                    break;
-                }
-            }
+        for (String shortage : OrderService.findShortages(currentOrder)) {
+            outOfStockItems.append("- ").append(shortage).append("\n");
         }
 
         if (outOfStockItems.length() > 0) {
@@ -506,37 +547,8 @@ public class StaffDashboard extends JPanel {
     private JPanel createOrderHistoryPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        // Create table model
-        DefaultTableModel tableModel = new DefaultTableModel(
-                new Object[]{"Order ID", "Customer", "Table", "Items", "Total", "Status"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-
-        // Filter orders for current staff
-        List<Order> staffOrders = new ArrayList<>();
-        for (Order order : orders) {
-            if (order.getStaffName().equals(staff.getUsername())) {
-                staffOrders.add(order);
-            }
-        }
-
-        // Populate table model
-        for (Order order : staffOrders) {
-            String itemsStr = order.getOrderItems().size() + " items";
-            double total = order.calculateTotal();
-
-            tableModel.addRow(new Object[]{
-                    order.getOrderId(),
-                    order.getCustomerName(),
-                    order.getTableNumber(),
-                    itemsStr,
-                    String.format("$%.2f", total),
-                    order.getStatus()
-            });
-        }
+        // Orders of the current staff member; cells are formatted when shown
+        OrderHistoryTableModel tableModel = new OrderHistoryTableModel(orders, staff.getUsername());
 
         // Create table
         JTable orderTable = new JTable(tableModel);
@@ -550,14 +562,75 @@ public class StaffDashboard extends JPanel {
         viewDetailsButton.addActionListener(e -> {
             int selectedRow = orderTable.getSelectedRow();
             if (selectedRow != -1) {
-                viewOrderDetails(staffOrders.get(selectedRow));
+                viewOrderDetails(tableModel.getOrder(selectedRow));
             } else {
                 JOptionPane.showMessageDialog(this, "Please select an order",
                         "No Selection", JOptionPane.WARNING_MESSAGE);
             }
         });
 
+        // Reprint the archived receipt of the selected order
+        JButton reprintButton = new JButton("Reprint Receipt");
+        reprintButton.addActionListener(e -> {
+            int selectedRow = orderTable.getSelectedRow();
+            if (selectedRow == -1) {
+                JOptionPane.showMessageDialog(this, "Please select an order",
+                        "No Selection", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            String orderId = tableModel.getOrder(selectedRow).getOrderId();
+            BackgroundTasks.run(busyIndicator, "Loading receipt", progress -> ReceiptStore.reprint(orderId),
+                    receipt -> {
+                        if (receipt != null) {
+                            showReceipt(receipt, "Receipt " + orderId);
+                        } else {
+                            JOptionPane.showMessageDialog(this, "No receipt was archived for order " + orderId,
+                                    "No Receipt", JOptionPane.WARNING_MESSAGE);
+                        }
+                    },
+                    ex -> JOptionPane.showMessageDialog(this, "Could not load receipt: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE));
+        });
+
+        // Cancel the selected order; a placed order gives its stock back
+        JButton cancelButton = new JButton("Cancel Order");
+        cancelButton.addActionListener(e -> {
+            int selectedRow = orderTable.getSelectedRow();
+            if (selectedRow == -1) {
+                JOptionPane.showMessageDialog(this, "Please select an order",
+                        "No Selection", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            Order order = tableModel.getOrder(selectedRow);
+            int confirm = JOptionPane.showConfirmDialog(this,
+                    "Cancel order " + order.getOrderId() + "?",
+                    "Confirm Cancel", JOptionPane.YES_NO_OPTION);
+            if (confirm != JOptionPane.YES_OPTION) {
+                return;
+            }
+            BackgroundTasks.run(busyIndicator, "Cancelling order", progress -> {
+                        OrderService.cancelOrder(order);
+                        return order;
+                    },
+                    cancelled -> {
+                        menuItems = MenuCatalog.getAllItems();
+                        refreshMenuTable();
+                        tabbedPane.setComponentAt(1, createOrderHistoryPanel());
+                    },
+                    ex -> {
+                        if (ex instanceof OrderException) {
+                            JOptionPane.showMessageDialog(this, ex.getMessage(),
+                                    "Order Not Cancelled", JOptionPane.WARNING_MESSAGE);
+                        } else {
+                            JOptionPane.showMessageDialog(this, "Could not cancel order: " + ex.getMessage(),
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    });
+        });
+
         buttonPanel.add(viewDetailsButton);
+        buttonPanel.add(reprintButton);
+        buttonPanel.add(cancelButton);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         return panel;
@@ -581,7 +654,7 @@ public class StaffDashboard extends JPanel {
 
         double orderTotal = 0;
         for (OrderItem item : order.getOrderItems()) {
-            double itemTotal = item.getPrice() * item.getQuantity();
+            double itemTotal = item.getTotal();
             orderTotal += itemTotal;
 
             itemTableModel.addRow(new Object[]{
@@ -610,20 +683,12 @@ public class StaffDashboard extends JPanel {
                 "Confirm Logout", JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            // ✅ Log logout and session duration
-            Logger.logLogout(staff.getUsername());
-
             parentFrame.getContentPane().removeAll();
             parentFrame.setSize(400, 300);
             parentFrame.setLocationRelativeTo(null);
 
-            SwingUtilities.invokeLater(() -> {
-                try {
-                    Main.main(new String[0]);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            });
+            // Main ends the session and logs the logout
+            logoutCallback.run();
         }
     }
 